@@ -2,8 +2,10 @@ package auca.ac.rw.ebook;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class EbookApplication {
 
 	public static void main(String[] args) {
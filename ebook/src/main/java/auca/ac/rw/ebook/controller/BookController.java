@@ -1,20 +1,44 @@
 // BookController.java
 package auca.ac.rw.ebook.controller;
 
+import auca.ac.rw.ebook.dto.BookDetail;
+import auca.ac.rw.ebook.dto.BookSearchCriteria;
+import auca.ac.rw.ebook.dto.CursorPage;
+import auca.ac.rw.ebook.dto.EntityVersion;
+import auca.ac.rw.ebook.dto.StockLine;
 import auca.ac.rw.ebook.model.Book;
+import auca.ac.rw.ebook.service.AlsoBoughtIndex;
+import auca.ac.rw.ebook.service.BookDetailService;
+import auca.ac.rw.ebook.service.BookFileService;
 import auca.ac.rw.ebook.service.BookService;
+import auca.ac.rw.ebook.service.BookSuggestIndex;
+import auca.ac.rw.ebook.service.CoverImageService;
+import auca.ac.rw.ebook.service.NdjsonExporter;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/book")
@@ -23,11 +47,25 @@ public class BookController {
     @Autowired
     private BookService bookService;
     
+    @Autowired
+    private BookFileService bookFileService;
+    
+    @Autowired
+    private CoverImageService coverImageService;
+    
+    @Autowired
+    private BookDetailService bookDetailService;
+    
     // CRUD Endpoints
     @PostMapping(value = "/save", consumes = MediaType.APPLICATION_JSON_VALUE,
                 produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<?> saveBook(@RequestBody Book book) {
-        String response = bookService.saveBook(book);
+        String response;
+        try {
+            response = bookService.saveBook(book);
+        } catch (DataIntegrityViolationException e) {
+            return new ResponseEntity<>("Book not saved: it conflicts with an existing record", HttpStatus.CONFLICT);
+        }
         if (response.equals("Book saved successfully")) {
             return new ResponseEntity<>(response, HttpStatus.CREATED);
         } else {
@@ -35,14 +73,52 @@ public class BookController {
         }
     }
     
+    // Bulk import - JSON array of books, or CSV with a header row. A file that is malformed
+    // part way through still gets a report; only one that cannot be started is rejected.
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_JSON_VALUE,
+                produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> importBooksFromJson(InputStream body) throws IOException {
+        try {
+            return new ResponseEntity<>(bookService.importBooksFromJson(body), HttpStatus.OK);
+        } catch (IllegalArgumentException | JsonProcessingException e) {
+            return new ResponseEntity<>("Invalid import file: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+    
+    @PostMapping(value = "/import", consumes = "text/csv", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> importBooksFromCsv(InputStream body) throws IOException {
+        try {
+            return new ResponseEntity<>(bookService.importBooksFromCsv(body), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>("Invalid import file: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+    
     @GetMapping(value = "/all", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<List<Book>> getAllBooks() {
         List<Book> books = bookService.getAllBooks();
         return new ResponseEntity<>(books, HttpStatus.OK);
     }
     
+    // Streams every book as newline-delimited JSON without building the list in memory
+    @GetMapping(value = "/export", produces = NdjsonExporter.MEDIA_TYPE)
+    public void exportBooks(HttpServletResponse response) throws IOException {
+        response.setContentType(NdjsonExporter.MEDIA_TYPE);
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=\"books.ndjson\"");
+        bookService.exportBooks(response.getOutputStream());
+    }
+    
+    // Conditional GET - a matching If-None-Match is answered from the version lookup alone
     @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<?> getBookById(@PathVariable UUID id) {
+    public ResponseEntity<?> getBookById(@PathVariable UUID id, WebRequest request) {
+        Optional<EntityVersion> version = bookService.getBookVersion(id);
+        if (version.isEmpty()) {
+            return new ResponseEntity<>("Book not found", HttpStatus.NOT_FOUND);
+        }
+        if (request.checkNotModified(version.get().tag(), version.get().lastModifiedMillis())) {
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+        }
         Optional<Book> book = bookService.getBookById(id);
         if (book.isPresent()) {
             return new ResponseEntity<>(book.get(), HttpStatus.OK);
@@ -51,6 +127,28 @@ public class BookController {
         }
     }
     
+    // Book page - book, rating summary, units sold and the newest reviews in one call
+    @GetMapping(value = "/{id}/detail", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getBookDetail(@PathVariable UUID id) {
+        Optional<BookDetail> detail = bookDetailService.getBookDetail(id);
+        if (detail.isPresent()) {
+            return new ResponseEntity<>(detail.get(), HttpStatus.OK);
+        } else {
+            return new ResponseEntity<>("Book not found", HttpStatus.NOT_FOUND);
+        }
+    }
+    
+    // Customers also bought - top books from the same completed orders
+    @GetMapping(value = "/{id}/also-bought", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getAlsoBought(@PathVariable UUID id, @RequestParam(defaultValue = "10") int limit) {
+        Optional<List<Object[]>> books = bookService.getAlsoBought(id, Math.min(limit, AlsoBoughtIndex.MAX_LIMIT));
+        if (books.isPresent()) {
+            return new ResponseEntity<>(books.get(), HttpStatus.OK);
+        } else {
+            return new ResponseEntity<>("Book not found", HttpStatus.NOT_FOUND);
+        }
+    }
+    
     @PutMapping(value = "/update", consumes = MediaType.APPLICATION_JSON_VALUE,
                produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<?> updateBook(@RequestBody Book book) {
@@ -72,6 +170,43 @@ public class BookController {
         }
     }
     
+    // File download - supports Range and If-Range for resumable downloads
+    @GetMapping(value = "/{id}/download")
+    public ResponseEntity<?> downloadBook(@PathVariable UUID id, HttpServletRequest request,
+                                          HttpServletResponse response) throws IOException {
+        Optional<BookFileService.BookFile> file = bookFileService.findBookFile(id);
+        if (file.isEmpty()) {
+            return new ResponseEntity<>("Book file not found", HttpStatus.NOT_FOUND);
+        }
+        bookFileService.send(file.get(), request, response);
+        return null;
+    }
+    
+    // Cover image - thumbnails carry a strong ETag; Spring answers a matching If-None-Match with 304
+    @GetMapping(value = "/{id}/cover")
+    public ResponseEntity<?> getCover(@PathVariable UUID id, @RequestParam(defaultValue = "medium") String size) {
+        Optional<CoverImageService.Size> coverSize = CoverImageService.Size.parse(size);
+        if (coverSize.isEmpty()) {
+            return new ResponseEntity<>("Unknown cover size: " + size, HttpStatus.BAD_REQUEST);
+        }
+        Optional<CoverImageService.Cover> cover = coverImageService.findCover(id, coverSize.get());
+        if (cover.isEmpty()) {
+            return new ResponseEntity<>("Cover not found", HttpStatus.NOT_FOUND);
+        }
+        if (cover.get().etag() == null) {
+            // Thumbnail still rendering - send the original without letting clients keep it
+            return ResponseEntity.ok()
+                    .cacheControl(CacheControl.noCache())
+                    .contentType(MediaType.parseMediaType(cover.get().contentType()))
+                    .body(new FileSystemResource(cover.get().path()));
+        }
+        return ResponseEntity.ok()
+                .eTag(cover.get().etag())
+                .cacheControl(CacheControl.maxAge(1, TimeUnit.DAYS).cachePublic())
+                .contentType(MediaType.parseMediaType(cover.get().contentType()))
+                .body(new FileSystemResource(cover.get().path()));
+    }
+    
     // findBy... Endpoints
     @GetMapping(value = "/title/{title}")
     public ResponseEntity<?> getBookByTitle(@PathVariable String title) {
@@ -136,17 +271,110 @@ public class BookController {
         return new ResponseEntity<>(books, HttpStatus.OK);
     }
     
+    // Keyset pagination - latency does not grow with depth and no COUNT is issued
+    @GetMapping(value = "/all/cursor")
+    public ResponseEntity<?> getAllBooksWithCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        try {
+            CursorPage<Book> books = bookService.getBooksAfter(cursor, Math.min(Math.max(size, 1), 100));
+            return new ResponseEntity<>(books, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>("Invalid cursor", HttpStatus.BAD_REQUEST);
+        }
+    }
+    
+    // Typeahead for the search box
+    @GetMapping(value = "/suggest", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<BookSuggestIndex.Suggestion>> suggest(
+            @RequestParam(defaultValue = "") String q,
+            @RequestParam(defaultValue = "10") int limit) {
+        List<BookSuggestIndex.Suggestion> suggestions = bookService.suggest(q, Math.min(limit, BookSuggestIndex.TOP_K));
+        return new ResponseEntity<>(suggestions, HttpStatus.OK);
+    }
+    
     // Search endpoints
     @GetMapping(value = "/search/advanced")
-    public ResponseEntity<List<Book>> searchBooksAdvanced(
+    public ResponseEntity<Slice<Book>> searchBooksAdvanced(
             @RequestParam(required = false) String keyword,
             @RequestParam(required = false) String author,
+            @RequestParam(required = false) UUID categoryId,
             @RequestParam(required = false) Double minPrice,
-            @RequestParam(required = false) Double maxPrice) {
-        List<Book> books = bookService.searchBooksByTitleOrAuthor(keyword != null ? keyword : "");
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) Boolean inStock,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "title") String sort,
+            @RequestParam(defaultValue = "true") boolean withCount) {
+        BookSearchCriteria criteria = new BookSearchCriteria(keyword, author, categoryId,
+                minPrice != null ? BigDecimal.valueOf(minPrice) : null,
+                maxPrice != null ? BigDecimal.valueOf(maxPrice) : null,
+                inStock);
+        Pageable pageable = PageRequest.of(page, size, Sort.by(sort));
+        Slice<Book> books = bookService.searchBooks(criteria, pageable, withCount);
         return new ResponseEntity<>(books, HttpStatus.OK);
     }
     
+    @GetMapping(value = "/search/facets", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> searchBooksWithFacets(
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) String author,
+            @RequestParam(required = false) UUID categoryId,
+            @RequestParam(required = false) BigDecimal minPrice,
+            @RequestParam(required = false) BigDecimal maxPrice,
+            @RequestParam(required = false) Boolean inStock,
+            @RequestParam(defaultValue = "5,10,20,50") List<BigDecimal> priceBuckets,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "title") String sort) {
+        BookSearchCriteria criteria = new BookSearchCriteria(keyword, author, categoryId, minPrice, maxPrice, inStock);
+        try {
+            Pageable pageable = PageRequest.of(page, size, Sort.by(sort));
+            return new ResponseEntity<>(bookService.searchBooksWithFacets(criteria, priceBuckets, pageable), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+    
+    // Stock endpoints - all lines are reserved or released together
+    @PostMapping(value = "/stock/reserve", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> reserveStock(@RequestBody List<StockLine> lines) {
+        return stockResponse(bookService.reserveStock(lines), "Stock reserved successfully");
+    }
+    
+    @PostMapping(value = "/stock/release", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> releaseStock(@RequestBody List<StockLine> lines) {
+        return stockResponse(bookService.releaseStock(lines), "Stock released successfully");
+    }
+    
+    // Stock leasing for high-demand titles
+    @PutMapping(value = "/{id}/stock/lease")
+    public ResponseEntity<?> enableStockLease(@PathVariable UUID id) {
+        if (bookService.enableStockLease(id)) {
+            return new ResponseEntity<>("Stock leasing enabled", HttpStatus.OK);
+        } else {
+            return new ResponseEntity<>("Book not found", HttpStatus.NOT_FOUND);
+        }
+    }
+    
+    @DeleteMapping(value = "/{id}/stock/lease")
+    public ResponseEntity<?> disableStockLease(@PathVariable UUID id) {
+        int returned = bookService.disableStockLease(id);
+        return new ResponseEntity<>("Stock leasing disabled, " + returned + " units returned", HttpStatus.OK);
+    }
+    
+    private ResponseEntity<?> stockResponse(String response, String success) {
+        if (response.equals(success)) {
+            return new ResponseEntity<>(response, HttpStatus.OK);
+        } else if (response.startsWith("Insufficient stock")) {
+            return new ResponseEntity<>(response, HttpStatus.CONFLICT);
+        } else if (response.startsWith("Book not found")) {
+            return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
+        } else {
+            return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+        }
+    }
+    
     // Statistics endpoints
     @GetMapping(value = "/stats/count")
     public ResponseEntity<Long> getTotalBooksCount() {
@@ -159,4 +387,52 @@ public class BookController {
         Long count = bookService.getAvailableBooksCount();
         return new ResponseEntity<>(count, HttpStatus.OK);
     }
+    
+    @GetMapping(value = "/stats/catalog-cache")
+    public ResponseEntity<Map<String, Object>> getCatalogCacheMetrics() {
+        Map<String, Object> metrics = bookService.getCatalogCacheMetrics();
+        return new ResponseEntity<>(metrics, HttpStatus.OK);
+    }
+    
+    @GetMapping(value = "/stats/book-detail-cache")
+    public ResponseEntity<Map<String, Object>> getBookDetailCacheMetrics() {
+        Map<String, Object> metrics = bookDetailService.getMetrics();
+        return new ResponseEntity<>(metrics, HttpStatus.OK);
+    }
+    
+    @GetMapping(value = "/stats/facets")
+    public ResponseEntity<Map<String, Object>> getFacetMetrics() {
+        Map<String, Object> metrics = bookService.getFacetMetrics();
+        return new ResponseEntity<>(metrics, HttpStatus.OK);
+    }
+    
+    @GetMapping(value = "/stats/also-bought")
+    public ResponseEntity<Map<String, Object>> getAlsoBoughtMetrics() {
+        Map<String, Object> metrics = bookService.getAlsoBoughtMetrics();
+        return new ResponseEntity<>(metrics, HttpStatus.OK);
+    }
+    
+    @GetMapping(value = "/stats/existence-filter")
+    public ResponseEntity<Map<String, Object>> getExistenceFilterMetrics() {
+        Map<String, Object> metrics = bookService.getExistenceFilterMetrics();
+        return new ResponseEntity<>(metrics, HttpStatus.OK);
+    }
+    
+    @GetMapping(value = "/stats/covers")
+    public ResponseEntity<Map<String, Object>> getCoverMetrics() {
+        Map<String, Object> metrics = coverImageService.getMetrics();
+        return new ResponseEntity<>(metrics, HttpStatus.OK);
+    }
+    
+    @GetMapping(value = "/stats/downloads")
+    public ResponseEntity<Map<String, Object>> getDownloadMetrics() {
+        Map<String, Object> metrics = bookFileService.getMetrics();
+        return new ResponseEntity<>(metrics, HttpStatus.OK);
+    }
+    
+    @GetMapping(value = "/stats/stock-leases")
+    public ResponseEntity<Map<String, Object>> getStockLeaseMetrics() {
+        Map<String, Object> metrics = bookService.getStockLeaseMetrics();
+        return new ResponseEntity<>(metrics, HttpStatus.OK);
+    }
 }
\ No newline at end of file
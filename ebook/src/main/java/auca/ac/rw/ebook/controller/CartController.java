@@ -1,9 +1,15 @@
 // CartController.java
 package auca.ac.rw.ebook.controller;
 
+import auca.ac.rw.ebook.dto.CartContents;
+import auca.ac.rw.ebook.dto.CartItemView;
+import auca.ac.rw.ebook.dto.CartOperation;
+import auca.ac.rw.ebook.dto.CartSummary;
 import auca.ac.rw.ebook.model.Cart;
 import auca.ac.rw.ebook.service.CartService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -11,8 +17,11 @@ import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.TransactionException;
 import org.springframework.web.bind.annotation.*;
+import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -36,8 +45,8 @@ public class CartController {
     }
     
     @GetMapping(value = "/all", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<List<Cart>> getAllCartItems() {
-        List<Cart> cartItems = cartService.getAllCartItems();
+    public ResponseEntity<List<CartItemView>> getAllCartItems() {
+        List<CartItemView> cartItems = cartService.getAllCartItems();
         return new ResponseEntity<>(cartItems, HttpStatus.OK);
     }
     
@@ -74,11 +83,34 @@ public class CartController {
     
     // User-specific endpoints
     @GetMapping(value = "/user/{userId}")
-    public ResponseEntity<List<Cart>> getCartItemsByUserId(@PathVariable UUID userId) {
-        List<Cart> cartItems = cartService.getCartItemsByUserId(userId);
+    public ResponseEntity<List<CartItemView>> getCartItemsByUserId(@PathVariable UUID userId) {
+        List<CartItemView> cartItems = cartService.getCartItemsByUserId(userId);
         return new ResponseEntity<>(cartItems, HttpStatus.OK);
     }
     
+    // Offline sync - all operations are applied and written together, then the cart is returned
+    @PatchMapping(value = "/user/{userId}", consumes = MediaType.APPLICATION_JSON_VALUE,
+                  produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> syncCart(@PathVariable UUID userId, @RequestBody List<CartOperation> operations) {
+        String response;
+        try {
+            response = cartService.syncCart(userId, operations);
+        } catch (DataIntegrityViolationException e) {
+            // A book or the user was deleted while the sync was written; the cart is as it was
+            return new ResponseEntity<>("Cart not synced: a book in it or the user no longer exists", HttpStatus.CONFLICT);
+        } catch (DataAccessException | TransactionException e) {
+            return new ResponseEntity<>("Cart not synced: the cart could not be saved, try again", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        if (response.equals("Cart synced successfully")) {
+            CartContents contents = cartService.getCartContents(userId);
+            return new ResponseEntity<>(contents, HttpStatus.OK);
+        } else if (response.endsWith("not found")) {
+            return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
+        } else {
+            return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+        }
+    }
+    
     @DeleteMapping(value = "/user/{userId}/clear")
     public ResponseEntity<?> clearUserCart(@PathVariable UUID userId) {
         String response = cartService.clearUserCart(userId);
@@ -115,17 +147,23 @@ public class CartController {
     
     // Sorting and Pagination Endpoints
     @GetMapping(value = "/user/{userId}/page")
-    public ResponseEntity<Page<Cart>> getCartItemsByUserIdWithPagination(
+    public ResponseEntity<Page<CartItemView>> getCartItemsByUserIdWithPagination(
             @PathVariable UUID userId,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "added_at") String sort) {
         Pageable pageable = PageRequest.of(page, size, Sort.by(sort).descending());
-        Page<Cart> cartItems = cartService.getCartItemsByUserIdWithPagination(userId, pageable);
+        Page<CartItemView> cartItems = cartService.getCartItemsByUserIdWithPagination(userId, pageable);
         return new ResponseEntity<>(cartItems, HttpStatus.OK);
     }
     
     // Statistics and calculations
+    @GetMapping(value = "/user/{userId}/summary")
+    public ResponseEntity<CartSummary> getCartSummary(@PathVariable UUID userId) {
+        CartSummary summary = cartService.getCartSummary(userId);
+        return new ResponseEntity<>(summary, HttpStatus.OK);
+    }
+    
     @GetMapping(value = "/user/{userId}/total-items")
     public ResponseEntity<Integer> getTotalItemsInCart(@PathVariable UUID userId) {
         Integer totalItems = cartService.getTotalItemsInCart(userId);
@@ -133,14 +171,20 @@ public class CartController {
     }
     
     @GetMapping(value = "/user/{userId}/total-price")
-    public ResponseEntity<Double> calculateCartTotal(@PathVariable UUID userId) {
-        Double cartTotal = cartService.calculateCartTotal(userId);
+    public ResponseEntity<BigDecimal> calculateCartTotal(@PathVariable UUID userId) {
+        BigDecimal cartTotal = cartService.calculateCartTotal(userId);
         return new ResponseEntity<>(cartTotal, HttpStatus.OK);
     }
     
     @GetMapping(value = "/user/{userId}/sorted")
-    public ResponseEntity<List<Cart>> getUserCartSortedByDate(@PathVariable UUID userId) {
-        List<Cart> cartItems = cartService.getUserCartSortedByDate(userId);
+    public ResponseEntity<List<CartItemView>> getUserCartSortedByDate(@PathVariable UUID userId) {
+        List<CartItemView> cartItems = cartService.getUserCartSortedByDate(userId);
         return new ResponseEntity<>(cartItems, HttpStatus.OK);
     }
+    
+    @GetMapping(value = "/stats/store")
+    public ResponseEntity<Map<String, Object>> getCartStoreMetrics() {
+        Map<String, Object> metrics = cartService.getCartStoreMetrics();
+        return new ResponseEntity<>(metrics, HttpStatus.OK);
+    }
 }
\ No newline at end of file
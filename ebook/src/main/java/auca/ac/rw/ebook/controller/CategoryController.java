@@ -1,6 +1,8 @@
 // CategoryController.java
 package auca.ac.rw.ebook.controller;
 
+import auca.ac.rw.ebook.dto.CategoryBookCount;
+import auca.ac.rw.ebook.dto.EntityVersion;
 import auca.ac.rw.ebook.model.Category;
 import auca.ac.rw.ebook.service.CategoryService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,6 +10,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -31,8 +34,13 @@ public class CategoryController {
         }
     }
     
+    // Conditional GET - a matching If-None-Match is answered from the version lookup alone
     @GetMapping(value = "/all", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<List<Category>> getAllCategories() {
+    public ResponseEntity<List<Category>> getAllCategories(WebRequest request) {
+        EntityVersion version = categoryService.getAllCategoriesVersion();
+        if (request.checkNotModified(version.tag(), version.lastModifiedMillis())) {
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+        }
         List<Category> categories = categoryService.getAllCategories();
         return new ResponseEntity<>(categories, HttpStatus.OK);
     }
@@ -86,10 +94,16 @@ public class CategoryController {
         return new ResponseEntity<>(exists, HttpStatus.OK);
     }
     
-    // Additional endpoints
+    // Additional endpoints - answered from the live counts of the catalog snapshot
     @GetMapping(value = "/{id}/has-books")
     public ResponseEntity<Boolean> checkCategoryHasBooks(@PathVariable UUID id) {
-        // This would require a custom service method
-        return new ResponseEntity<>(HttpStatus.NOT_IMPLEMENTED);
+        Boolean hasBooks = categoryService.checkCategoryHasBooks(id);
+        return new ResponseEntity<>(hasBooks, HttpStatus.OK);
+    }
+    
+    @GetMapping(value = "/book-counts", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<CategoryBookCount>> getCategoryBookCounts() {
+        List<CategoryBookCount> counts = categoryService.getCategoryBookCounts();
+        return new ResponseEntity<>(counts, HttpStatus.OK);
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package auca.ac.rw.ebook.controller;
 
+import auca.ac.rw.ebook.dto.EntityVersion;
 import auca.ac.rw.ebook.model.Location;
 import auca.ac.rw.ebook.model.ELocationType;
 import auca.ac.rw.ebook.service.LocationService;
@@ -12,6 +13,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -84,8 +86,13 @@ public class LocationController {
     }
     
     // Rwandan Hierarchy Endpoints
+    // Conditional GET - a matching If-None-Match is answered from the version lookup alone
     @GetMapping(value = "/provinces")
-    public ResponseEntity<List<Location>> getAllProvinces() {
+    public ResponseEntity<List<Location>> getAllProvinces(WebRequest request) {
+        EntityVersion version = locationService.getProvincesVersion();
+        if (request.checkNotModified(version.tag(), version.lastModifiedMillis())) {
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+        }
         List<Location> provinces = locationService.getProvinces();
         return new ResponseEntity<>(provinces, HttpStatus.OK);
     }
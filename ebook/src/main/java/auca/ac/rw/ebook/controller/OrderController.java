@@ -1,9 +1,13 @@
 // OrderController.java
 package auca.ac.rw.ebook.controller;
 
+import auca.ac.rw.ebook.dto.CursorPage;
+import auca.ac.rw.ebook.dto.OrderView;
 import auca.ac.rw.ebook.model.Order;
 import auca.ac.rw.ebook.model.EOrderStatus;
 import auca.ac.rw.ebook.service.OrderService;
+import auca.ac.rw.ebook.service.NdjsonExporter;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -13,7 +17,9 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -43,11 +49,20 @@ public class OrderController {
     }
     
     @GetMapping(value = "/all", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<List<Order>> getAllOrders() {
-        List<Order> orders = orderService.getAllOrders();
+    public ResponseEntity<List<OrderView>> getAllOrders() {
+        List<OrderView> orders = orderService.getAllOrders();
         return new ResponseEntity<>(orders, HttpStatus.OK);
     }
     
+    // Streams every order as newline-delimited JSON without building the list in memory
+    @GetMapping(value = "/export", produces = NdjsonExporter.MEDIA_TYPE)
+    public void exportOrders(HttpServletResponse response) throws IOException {
+        response.setContentType(NdjsonExporter.MEDIA_TYPE);
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=\"orders.ndjson\"");
+        orderService.exportOrders(response.getOutputStream());
+    }
+    
     @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<?> getOrderById(@PathVariable UUID id) {
         Optional<Order> order = orderService.getOrderById(id);
@@ -86,25 +101,25 @@ public class OrderController {
     
     // findBy... Endpoints
     @GetMapping(value = "/user/{userId}")
-    public ResponseEntity<List<Order>> getOrdersByUserId(@PathVariable UUID userId) {
-        List<Order> orders = orderService.getOrdersByUserId(userId);
+    public ResponseEntity<List<OrderView>> getOrdersByUserId(@PathVariable UUID userId) {
+        List<OrderView> orders = orderService.getOrdersByUserId(userId);
         return new ResponseEntity<>(orders, HttpStatus.OK);
     }
     
     @GetMapping(value = "/status/{status}")
-    public ResponseEntity<List<Order>> getOrdersByStatus(@PathVariable EOrderStatus status) {
-        List<Order> orders = orderService.getOrdersByStatus(status);
+    public ResponseEntity<List<OrderView>> getOrdersByStatus(@PathVariable EOrderStatus status) {
+        List<OrderView> orders = orderService.getOrdersByStatus(status);
         return new ResponseEntity<>(orders, HttpStatus.OK);
     }
     
     @GetMapping(value = "/date-range")
-    public ResponseEntity<List<Order>> getOrdersByDateRange(
+    public ResponseEntity<List<OrderView>> getOrdersByDateRange(
             @RequestParam String startDate,
             @RequestParam String endDate) {
         try {
             LocalDateTime start = LocalDateTime.parse(startDate);
             LocalDateTime end = LocalDateTime.parse(endDate);
-            List<Order> orders = orderService.getOrdersByDateRange(start, end);
+            List<OrderView> orders = orderService.getOrdersByDateRange(start, end);
             return new ResponseEntity<>(orders, HttpStatus.OK);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
@@ -112,8 +127,8 @@ public class OrderController {
     }
     
     @GetMapping(value = "/amount-greater-than/{amount}")
-    public ResponseEntity<List<Order>> getOrdersByAmountGreaterThan(@PathVariable Double amount) {
-        List<Order> orders = orderService.getOrdersByTotalAmountGreaterThan(amount);
+    public ResponseEntity<List<OrderView>> getOrdersByAmountGreaterThan(@PathVariable Double amount) {
+        List<OrderView> orders = orderService.getOrdersByTotalAmountGreaterThan(amount);
         return new ResponseEntity<>(orders, HttpStatus.OK);
     }
     
@@ -132,29 +147,29 @@ public class OrderController {
     
     // Sorting and Pagination Endpoints
     @GetMapping(value = "/user/{userId}/page")
-    public ResponseEntity<Page<Order>> getOrdersByUserIdWithPagination(
+    public ResponseEntity<Page<OrderView>> getOrdersByUserIdWithPagination(
             @PathVariable UUID userId,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "order_date") String sort) {
         Pageable pageable = PageRequest.of(page, size, Sort.by(sort).descending());
-        Page<Order> orders = orderService.getOrdersByUserIdWithPagination(userId, pageable);
+        Page<OrderView> orders = orderService.getOrdersByUserIdWithPagination(userId, pageable);
         return new ResponseEntity<>(orders, HttpStatus.OK);
     }
     
     @GetMapping(value = "/status/{status}/page")
-    public ResponseEntity<Page<Order>> getOrdersByStatusWithPagination(
+    public ResponseEntity<Page<OrderView>> getOrdersByStatusWithPagination(
             @PathVariable EOrderStatus status,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "order_date") String sort) {
         Pageable pageable = PageRequest.of(page, size, Sort.by(sort).descending());
-        Page<Order> orders = orderService.getOrdersByStatusWithPagination(status, pageable);
+        Page<OrderView> orders = orderService.getOrdersByStatusWithPagination(status, pageable);
         return new ResponseEntity<>(orders, HttpStatus.OK);
     }
     
     @GetMapping(value = "/date-range/page")
-    public ResponseEntity<Page<Order>> getOrdersByDateRangeWithPagination(
+    public ResponseEntity<Page<OrderView>> getOrdersByDateRangeWithPagination(
             @RequestParam String startDate,
             @RequestParam String endDate,
             @RequestParam(defaultValue = "0") int page,
@@ -164,7 +179,7 @@ public class OrderController {
             LocalDateTime start = LocalDateTime.parse(startDate);
             LocalDateTime end = LocalDateTime.parse(endDate);
             Pageable pageable = PageRequest.of(page, size, Sort.by(sort).descending());
-            Page<Order> orders = orderService.getOrdersByDateRangeWithPagination(start, end, pageable);
+            Page<OrderView> orders = orderService.getOrdersByDateRangeWithPagination(start, end, pageable);
             return new ResponseEntity<>(orders, HttpStatus.OK);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
@@ -172,15 +187,28 @@ public class OrderController {
     }
     
     @GetMapping(value = "/all/page")
-    public ResponseEntity<Page<Order>> getAllOrdersWithPagination(
+    public ResponseEntity<Page<OrderView>> getAllOrdersWithPagination(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "order_date") String sort) {
         Pageable pageable = PageRequest.of(page, size, Sort.by(sort).descending());
-        Page<Order> orders = orderService.getAllOrdersWithPagination(pageable);
+        Page<OrderView> orders = orderService.getAllOrdersWithPagination(pageable);
         return new ResponseEntity<>(orders, HttpStatus.OK);
     }
     
+    // Keyset pagination - latency does not grow with depth and no COUNT is issued
+    @GetMapping(value = "/all/cursor")
+    public ResponseEntity<?> getAllOrdersWithCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        try {
+            CursorPage<OrderView> orders = orderService.getOrdersAfter(cursor, Math.min(Math.max(size, 1), 100));
+            return new ResponseEntity<>(orders, HttpStatus.OK);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return new ResponseEntity<>("Invalid cursor", HttpStatus.BAD_REQUEST);
+        }
+    }
+    
     // Business logic Endpoints
     @PutMapping(value = "/{orderId}/status/{newStatus}")
     public ResponseEntity<?> updateOrderStatus(
@@ -230,22 +258,22 @@ public class OrderController {
     
     // Midterm Requirement: Orders by province - FIXED parameter name
     @GetMapping(value = "/province/{provinceName}")
-    public ResponseEntity<List<Order>> getOrdersByProvince(@PathVariable String provinceName) {
-        List<Order> orders = orderService.getOrdersByProvince(provinceName);
+    public ResponseEntity<List<OrderView>> getOrdersByProvince(@PathVariable String provinceName) {
+        List<OrderView> orders = orderService.getOrdersByProvince(provinceName);
         return new ResponseEntity<>(orders, HttpStatus.OK);
     }
     
     @GetMapping(value = "/user/{userId}/sorted")
-    public ResponseEntity<List<Order>> getUserOrdersSortedByDate(@PathVariable UUID userId) {
-        List<Order> orders = orderService.getUserOrdersSortedByDate(userId);
+    public ResponseEntity<List<OrderView>> getUserOrdersSortedByDate(@PathVariable UUID userId) {
+        List<OrderView> orders = orderService.getUserOrdersSortedByDate(userId);
         return new ResponseEntity<>(orders, HttpStatus.OK);
     }
     
     @GetMapping(value = "/pending/older-than")
-    public ResponseEntity<List<Order>> getPendingOrdersOlderThan(@RequestParam String date) {
+    public ResponseEntity<List<OrderView>> getPendingOrdersOlderThan(@RequestParam String date) {
         try {
             LocalDateTime olderThanDate = LocalDateTime.parse(date);
-            List<Order> orders = orderService.getPendingOrdersOlderThan(olderThanDate);
+            List<OrderView> orders = orderService.getPendingOrdersOlderThan(olderThanDate);
             return new ResponseEntity<>(orders, HttpStatus.OK);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
@@ -2,6 +2,7 @@
 package auca.ac.rw.ebook.controller;
 
 import auca.ac.rw.ebook.model.OrderDetail;
+import auca.ac.rw.ebook.service.BestSellerLeaderboard;
 import auca.ac.rw.ebook.service.OrderDetailService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -9,6 +10,7 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -153,10 +155,26 @@ public class OrderDetailController {
         return new ResponseEntity<>(orderDetails, HttpStatus.OK);
     }
     
+    // window is all, 7d or 30d; at most BestSellerLeaderboard.MAX_LIMIT rows
     @GetMapping(value = "/best-selling")
-    public ResponseEntity<List<Object[]>> getBestSellingBooks() {
-        List<Object[]> bestSellers = orderDetailService.getBestSellingBooks();
-        return new ResponseEntity<>(bestSellers, HttpStatus.OK);
+    public ResponseEntity<?> getBestSellingBooks(
+            @RequestParam(defaultValue = "all") String window,
+            @RequestParam(defaultValue = "10") int limit) {
+        if (limit < 1) {
+            return new ResponseEntity<>("limit must be at least 1", HttpStatus.BAD_REQUEST);
+        }
+        try {
+            List<Object[]> bestSellers = orderDetailService.getBestSellingBooks(BestSellerLeaderboard.Window.fromKey(window), limit);
+            return new ResponseEntity<>(bestSellers, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+    
+    @GetMapping(value = "/stats/best-sellers")
+    public ResponseEntity<Map<String, Object>> getBestSellerMetrics() {
+        Map<String, Object> metrics = orderDetailService.getBestSellerMetrics();
+        return new ResponseEntity<>(metrics, HttpStatus.OK);
     }
     
     @GetMapping(value = "/book/{bookId}/total-sold")
@@ -1,9 +1,13 @@
 // PaymentController.java
 package auca.ac.rw.ebook.controller;
 
+import auca.ac.rw.ebook.dto.CursorPage;
+import auca.ac.rw.ebook.dto.PaymentView;
 import auca.ac.rw.ebook.model.Payment;
 import auca.ac.rw.ebook.model.EPaymentStatus;
 import auca.ac.rw.ebook.service.PaymentService;
+import auca.ac.rw.ebook.service.NdjsonExporter;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -13,7 +17,9 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -38,11 +44,20 @@ public class PaymentController {
     }
     
     @GetMapping(value = "/all", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<List<Payment>> getAllPayments() {
-        List<Payment> payments = paymentService.getAllPayments();
+    public ResponseEntity<List<PaymentView>> getAllPayments() {
+        List<PaymentView> payments = paymentService.getAllPayments();
         return new ResponseEntity<>(payments, HttpStatus.OK);
     }
     
+    // Streams every payment as newline-delimited JSON without building the list in memory
+    @GetMapping(value = "/export", produces = NdjsonExporter.MEDIA_TYPE)
+    public void exportPayments(HttpServletResponse response) throws IOException {
+        response.setContentType(NdjsonExporter.MEDIA_TYPE);
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=\"payments.ndjson\"");
+        paymentService.exportPayments(response.getOutputStream());
+    }
+    
     @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<?> getPaymentById(@PathVariable UUID id) {
         Optional<Payment> payment = paymentService.getPaymentById(id);
@@ -76,14 +91,14 @@ public class PaymentController {
     
     // findBy... Endpoints
     @GetMapping(value = "/user/{userId}")
-    public ResponseEntity<List<Payment>> getPaymentsByUserId(@PathVariable UUID userId) {
-        List<Payment> payments = paymentService.getPaymentsByUserId(userId);
+    public ResponseEntity<List<PaymentView>> getPaymentsByUserId(@PathVariable UUID userId) {
+        List<PaymentView> payments = paymentService.getPaymentsByUserId(userId);
         return new ResponseEntity<>(payments, HttpStatus.OK);
     }
     
     @GetMapping(value = "/status/{status}")
-    public ResponseEntity<List<Payment>> getPaymentsByStatus(@PathVariable EPaymentStatus status) {
-        List<Payment> payments = paymentService.getPaymentsByStatus(status);
+    public ResponseEntity<List<PaymentView>> getPaymentsByStatus(@PathVariable EPaymentStatus status) {
+        List<PaymentView> payments = paymentService.getPaymentsByStatus(status);
         return new ResponseEntity<>(payments, HttpStatus.OK);
     }
     
@@ -106,16 +121,30 @@ public class PaymentController {
     
     // Sorting and Pagination Endpoints
     @GetMapping(value = "/user/{userId}/page")
-    public ResponseEntity<Page<Payment>> getPaymentsByUserIdWithPagination(
+    public ResponseEntity<Page<PaymentView>> getPaymentsByUserIdWithPagination(
             @PathVariable UUID userId,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "payment_date") String sort) {
         Pageable pageable = PageRequest.of(page, size, Sort.by(sort).descending());
-        Page<Payment> payments = paymentService.getPaymentsByUserIdWithPagination(userId, pageable);
+        Page<PaymentView> payments = paymentService.getPaymentsByUserIdWithPagination(userId, pageable);
         return new ResponseEntity<>(payments, HttpStatus.OK);
     }
     
+    // Keyset pagination - latency does not grow with depth and no COUNT is issued
+    @GetMapping(value = "/user/{userId}/cursor")
+    public ResponseEntity<?> getPaymentsByUserIdWithCursor(
+            @PathVariable UUID userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        try {
+            CursorPage<PaymentView> payments = paymentService.getPaymentsByUserIdAfter(userId, cursor, Math.min(Math.max(size, 1), 100));
+            return new ResponseEntity<>(payments, HttpStatus.OK);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return new ResponseEntity<>("Invalid cursor", HttpStatus.BAD_REQUEST);
+        }
+    }
+    
     // Business logic Endpoints
     @PutMapping(value = "/{paymentId}/process")
     public ResponseEntity<?> processPayment(@PathVariable UUID paymentId) {
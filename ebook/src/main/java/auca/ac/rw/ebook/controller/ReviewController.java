@@ -1,6 +1,8 @@
 // ReviewController.java - COMPLETE FIXED VERSION
 package auca.ac.rw.ebook.controller;
 
+import auca.ac.rw.ebook.dto.CursorPage;
+import auca.ac.rw.ebook.dto.ReviewView;
 import auca.ac.rw.ebook.model.Review;
 import auca.ac.rw.ebook.service.ReviewService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,8 +10,11 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -36,7 +41,7 @@ public class ReviewController {
     
     // Get all reviews
     @GetMapping("/all")
-    public List<Review> getAllReviews() {
+    public List<ReviewView> getAllReviews() {
         return reviewService.getAllReviews();
     }
     
@@ -60,25 +65,25 @@ public class ReviewController {
     
     // Get reviews by user ID
     @GetMapping("/user/{userId}")
-    public List<Review> getReviewsByUserId(@PathVariable UUID userId) {
+    public List<ReviewView> getReviewsByUserId(@PathVariable UUID userId) {
         return reviewService.getReviewsByUserId(userId);
     }
     
     // Get reviews by book ID
     @GetMapping("/book/{bookId}")
-    public List<Review> getReviewsByBookId(@PathVariable UUID bookId) {
+    public List<ReviewView> getReviewsByBookId(@PathVariable UUID bookId) {
         return reviewService.getReviewsByBookId(bookId);
     }
     
     // Get reviews by rating
     @GetMapping("/rating/{rating}")
-    public List<Review> getReviewsByRating(@PathVariable Integer rating) {
+    public List<ReviewView> getReviewsByRating(@PathVariable Integer rating) {
         return reviewService.getReviewsByRating(rating);
     }
     
     // Get reviews by minimum rating
     @GetMapping("/min-rating/{minRating}")
-    public List<Review> getReviewsByMinimumRating(@PathVariable Integer minRating) {
+    public List<ReviewView> getReviewsByMinimumRating(@PathVariable Integer minRating) {
         return reviewService.getReviewsByMinimumRating(minRating);
     }
     
@@ -102,7 +107,7 @@ public class ReviewController {
     
     // Pagination endpoints
     @GetMapping("/user/{userId}/page")
-    public Page<Review> getReviewsByUserIdWithPagination(
+    public Page<ReviewView> getReviewsByUserIdWithPagination(
             @PathVariable UUID userId,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
@@ -115,7 +120,7 @@ public class ReviewController {
     }
     
     @GetMapping("/book/{bookId}/page")
-    public Page<Review> getReviewsByBookIdWithPagination(
+    public Page<ReviewView> getReviewsByBookIdWithPagination(
             @PathVariable UUID bookId,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
@@ -128,7 +133,7 @@ public class ReviewController {
     }
     
     @GetMapping("/all/page")
-    public Page<Review> getAllReviewsWithPagination(
+    public Page<ReviewView> getAllReviewsWithPagination(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "created_at") String sortBy,
@@ -139,6 +144,18 @@ public class ReviewController {
         return reviewService.getAllReviewsWithPagination(pageable);
     }
     
+    // Keyset pagination - latency does not grow with depth and no COUNT is issued
+    @GetMapping("/all/cursor")
+    public CursorPage<ReviewView> getAllReviewsWithCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        try {
+            return reviewService.getReviewsAfter(cursor, Math.min(Math.max(size, 1), 100));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+    
     // Business logic endpoints
     @GetMapping("/book/{bookId}/average-rating")
     public Double getAverageRatingForBook(@PathVariable UUID bookId) {
@@ -146,7 +163,7 @@ public class ReviewController {
     }
     
     @GetMapping("/book/{bookId}/sorted")
-    public List<Review> getBookReviewsSorted(@PathVariable UUID bookId) {
+    public List<ReviewView> getBookReviewsSorted(@PathVariable UUID bookId) {
         return reviewService.getBookReviewsSorted(bookId);
     }
     
@@ -1,10 +1,13 @@
 // UserController.java
 package auca.ac.rw.ebook.controller;
 
+import auca.ac.rw.ebook.model.Book;
 import auca.ac.rw.ebook.model.User;
 import auca.ac.rw.ebook.model.EUserRole;
+import auca.ac.rw.ebook.service.RecommendationEngine;
 import auca.ac.rw.ebook.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -16,6 +19,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -30,7 +34,13 @@ public class UserController {
     @PostMapping(value = "/save", consumes = MediaType.APPLICATION_JSON_VALUE,
                 produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<?> saveUser(@RequestBody User user) {
-        String response = userService.saveUser(user);
+        String response;
+        try {
+            response = userService.saveUser(user);
+        } catch (DataIntegrityViolationException e) {
+            // Usually another request saved the same email between the check and the insert
+            return new ResponseEntity<>("User not saved: it conflicts with an existing record", HttpStatus.CONFLICT);
+        }
         if (response.equals("User saved successfully")) {
             return new ResponseEntity<>(response, HttpStatus.CREATED);
         } else {
@@ -46,10 +56,14 @@ public class UserController {
             @RequestParam(required = false) UUID locationId) {
         
         String response;
-        if (locationId != null) {
-            response = userService.saveUserWithLocation(user, locationId);
-        } else {
-            response = userService.saveUser(user);
+        try {
+            if (locationId != null) {
+                response = userService.saveUserWithLocation(user, locationId);
+            } else {
+                response = userService.saveUser(user);
+            }
+        } catch (DataIntegrityViolationException e) {
+            return new ResponseEntity<>("User not saved: it conflicts with an existing record", HttpStatus.CONFLICT);
         }
         
         if (response.equals("User saved successfully")) {
@@ -259,6 +273,14 @@ public class UserController {
         }
     }
     
+    // Recommended for you - falls back to best sellers for users without ratings
+    @GetMapping(value = "/{userId}/recommendations", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<Book>> getRecommendations(@PathVariable UUID userId,
+                                                         @RequestParam(defaultValue = "10") int limit) {
+        List<Book> books = userService.getRecommendations(userId, Math.min(limit, RecommendationEngine.MAX_LIMIT));
+        return new ResponseEntity<>(books, HttpStatus.OK);
+    }
+    
     // Statistics endpoints
     @GetMapping(value = "/stats/count")
     public ResponseEntity<Long> getTotalUsersCount() {
@@ -266,6 +288,18 @@ public class UserController {
         return new ResponseEntity<>(count, HttpStatus.OK);
     }
     
+    @GetMapping(value = "/stats/recommendations")
+    public ResponseEntity<Map<String, Object>> getRecommendationMetrics() {
+        Map<String, Object> metrics = userService.getRecommendationMetrics();
+        return new ResponseEntity<>(metrics, HttpStatus.OK);
+    }
+    
+    @GetMapping(value = "/stats/existence-filter")
+    public ResponseEntity<Map<String, Object>> getExistenceFilterMetrics() {
+        Map<String, Object> metrics = userService.getExistenceFilterMetrics();
+        return new ResponseEntity<>(metrics, HttpStatus.OK);
+    }
+    
     @GetMapping(value = "/stats/role/{role}/count")
     public ResponseEntity<Long> getUsersCountByRole(@PathVariable EUserRole role) {
         Long count = userService.getUsersCountByRole(role);
@@ -0,0 +1,41 @@
+// BookDetail.java
+package auca.ac.rw.ebook.dto;
+
+import auca.ac.rw.ebook.model.Book;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Everything the book page needs in one response; ratingHistogram is keyed by star rating 5..1
+public record BookDetail(
+        Book book,
+        double averageRating,
+        long reviewCount,
+        Map<Integer, Long> ratingHistogram,
+        long unitsSold,
+        List<ReviewSummary> reviews,
+        boolean hasMoreReviews) {
+
+    // Only the reviewer's id and name are exposed, never the full user
+    public record ReviewSummary(
+            UUID reviewId,
+            UUID userId,
+            String userName,
+            Integer rating,
+            String comment,
+            LocalDateTime createdAt) {}
+
+    // Units sold and reviews come from the database; the book and its rating summary from the catalog
+    public static BookDetail of(Book book, long unitsSold, List<ReviewSummary> reviews) {
+        Map<Integer, Long> histogram = new LinkedHashMap<>();
+        for (int rating = 5; rating >= 1; rating--) {
+            histogram.put(rating, (long) book.getRatingCount(rating));
+        }
+        // Rounded to one decimal like ReviewService.calculateAverageRatingForBook
+        double averageRating = book.getAverage_rating() != null ? Math.round(book.getAverage_rating() * 10.0) / 10.0 : 0.0;
+        long reviewCount = book.getRating_count();
+        return new BookDetail(book, averageRating, reviewCount, histogram, unitsSold, reviews, reviewCount > reviews.size());
+    }
+}
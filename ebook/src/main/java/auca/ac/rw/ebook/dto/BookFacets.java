@@ -0,0 +1,21 @@
+// BookFacets.java
+package auca.ac.rw.ebook.dto;
+
+import auca.ac.rw.ebook.model.Book;
+import java.util.List;
+
+// One page of search results plus the facet counts shown next to them.
+// Each facet is counted with every filter applied except its own, so the counts
+// tell the client how many results it would get by switching that filter.
+public record BookFacets(
+        List<Book> content,
+        int page,
+        int size,
+        long totalElements,
+        List<FacetCount> categories,
+        List<FacetCount> priceRanges,
+        List<FacetCount> availability) {
+
+    // value is what to pass back as the filter (category id, "min-max" price range, true/false)
+    public record FacetCount(String value, String label, long count) {}
+}
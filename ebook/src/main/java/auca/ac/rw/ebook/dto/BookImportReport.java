@@ -0,0 +1,21 @@
+// BookImportReport.java
+package auca.ac.rw.ebook.dto;
+
+import java.util.List;
+
+public record BookImportReport(int total, int imported, int duplicates, int invalid, int failed,
+                               long elapsedMillis, List<BookImportResult> rows) {
+
+    public static BookImportReport of(List<BookImportResult> rows, long elapsedMillis) {
+        int[] counts = new int[BookImportResult.Status.values().length];
+        for (BookImportResult row : rows) {
+            counts[row.status().ordinal()]++;
+        }
+        return new BookImportReport(rows.size(),
+                counts[BookImportResult.Status.IMPORTED.ordinal()],
+                counts[BookImportResult.Status.DUPLICATE.ordinal()],
+                counts[BookImportResult.Status.INVALID.ordinal()],
+                counts[BookImportResult.Status.FAILED.ordinal()],
+                elapsedMillis, rows);
+    }
+}
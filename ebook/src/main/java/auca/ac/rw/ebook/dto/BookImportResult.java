@@ -0,0 +1,12 @@
+// BookImportResult.java
+package auca.ac.rw.ebook.dto;
+
+import java.util.UUID;
+
+// Outcome of one input row; row numbers start at 1 and skip the CSV header
+public record BookImportResult(int row, Status status, UUID bookId, String message) {
+
+    public enum Status {
+        IMPORTED, DUPLICATE, INVALID, FAILED
+    }
+}
@@ -0,0 +1,18 @@
+// BookImportRow.java
+package auca.ac.rw.ebook.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.math.BigDecimal;
+import java.util.UUID;
+
+// One book in a bulk import; the category is given by id or by name
+public record BookImportRow(
+        String title,
+        String author,
+        BigDecimal price,
+        @JsonProperty("stock_quantity") Integer stockQuantity,
+        @JsonProperty("category_id") UUID categoryId,
+        @JsonProperty("category_name") String categoryName,
+        @JsonProperty("cover_image") String coverImage,
+        @JsonProperty("file_url") String fileUrl) {
+}
@@ -0,0 +1,9 @@
+// BookSale.java
+package auca.ac.rw.ebook.dto;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// One order line as the best-seller leaderboard sees it; soldAt is the order date
+public record BookSale(UUID detailId, UUID bookId, int quantity, LocalDateTime soldAt) {
+}
@@ -0,0 +1,15 @@
+// BookSearchCriteria.java
+package auca.ac.rw.ebook.dto;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+// Filters accepted by /api/book/search/advanced; every field is optional
+public record BookSearchCriteria(
+        String keyword,
+        String author,
+        UUID categoryId,
+        BigDecimal minPrice,
+        BigDecimal maxPrice,
+        Boolean inStock) {
+}
@@ -0,0 +1,15 @@
+// BookSummary.java
+package auca.ac.rw.ebook.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.math.BigDecimal;
+import java.util.UUID;
+
+// The book as embedded in list rows - no category, stock or rating summary
+public record BookSummary(@JsonProperty("book_id") UUID bookId, String title, String author, BigDecimal price) {
+
+    // Null for rows whose book was left-joined and missing
+    public static BookSummary of(UUID bookId, String title, String author, BigDecimal price) {
+        return bookId != null ? new BookSummary(bookId, title, author, price) : null;
+    }
+}
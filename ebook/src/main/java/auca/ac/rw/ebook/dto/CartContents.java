@@ -0,0 +1,12 @@
+// CartContents.java
+package auca.ac.rw.ebook.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.math.BigDecimal;
+import java.util.List;
+
+// A user's cart with its totals, all taken from the same state of the cart
+public record CartContents(List<CartItemView> items,
+                           @JsonProperty("total_items") int totalItems,
+                           @JsonProperty("total_price") BigDecimal totalPrice) {
+}
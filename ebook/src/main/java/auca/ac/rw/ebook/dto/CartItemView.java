@@ -0,0 +1,23 @@
+// CartItemView.java
+package auca.ac.rw.ebook.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// A cart line as returned by the list endpoints, read with one constructor query
+public record CartItemView(@JsonProperty("cart_id") UUID cartId,
+                           UserSummary user,
+                           BookSummary book,
+                           Integer quantity,
+                           @JsonProperty("added_at") LocalDateTime addedAt) {
+
+    // Flat column list used by the CartRepository view queries
+    public CartItemView(UUID cartId, Integer quantity, LocalDateTime addedAt,
+                        UUID userId, String fullName,
+                        UUID bookId, String title, String author, BigDecimal price) {
+        this(cartId, UserSummary.of(userId, fullName), BookSummary.of(bookId, title, author, price),
+             quantity, addedAt);
+    }
+}
@@ -0,0 +1,9 @@
+// CartLine.java
+package auca.ac.rw.ebook.dto;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// One cart row as held by the cart store and written by its flush
+public record CartLine(UUID cartId, UUID userId, UUID bookId, int quantity, LocalDateTime addedAt) {
+}
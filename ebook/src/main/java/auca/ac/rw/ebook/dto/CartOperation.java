@@ -0,0 +1,15 @@
+// CartOperation.java
+package auca.ac.rw.ebook.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.UUID;
+
+// One change in a cart sync. set creates the line if needed, a quantity of 0 removes it.
+public record CartOperation(Type op, @JsonProperty("book_id") UUID bookId, Integer quantity) {
+
+    public enum Type {
+        @JsonProperty("add") ADD,
+        @JsonProperty("set") SET,
+        @JsonProperty("remove") REMOVE
+    }
+}
@@ -0,0 +1,10 @@
+// CartSummary.java
+package auca.ac.rw.ebook.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.math.BigDecimal;
+
+// Item count and total of a user's cart, as shown in the header badge
+public record CartSummary(@JsonProperty("total_items") int totalItems,
+                          @JsonProperty("total_price") BigDecimal totalPrice) {
+}
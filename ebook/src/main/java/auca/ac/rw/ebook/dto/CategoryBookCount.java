@@ -0,0 +1,12 @@
+// CategoryBookCount.java
+package auca.ac.rw.ebook.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.UUID;
+
+// Live book counts of one category, read from the catalog snapshot
+public record CategoryBookCount(@JsonProperty("category_id") UUID categoryId,
+                                @JsonProperty("category_name") String categoryName,
+                                int books,
+                                @JsonProperty("in_stock") int inStock) {
+}
@@ -0,0 +1,17 @@
+// CursorPage.java
+package auca.ac.rw.ebook.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+// One page of a keyset listing; pass nextCursor back as ?cursor= to get the following page
+public record CursorPage<T>(List<T> content, int size, String nextCursor, boolean hasNext) {
+
+    // rows holds up to size + 1 elements; the extra row only tells whether another page exists
+    public static <T> CursorPage<T> of(List<T> rows, int size, Function<T, PageCursor> cursorOf) {
+        boolean hasNext = rows.size() > size;
+        List<T> content = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = hasNext ? cursorOf.apply(content.get(content.size() - 1)).encode() : null;
+        return new CursorPage<>(content, content.size(), nextCursor, hasNext);
+    }
+}
@@ -0,0 +1,37 @@
+// EntityVersion.java
+package auca.ac.rw.ebook.dto;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+// ETag and Last-Modified for conditional GETs, built from updated_at stamps by the
+// repository version queries. The tag changes whenever the JSON body can change.
+public record EntityVersion(String tag, LocalDateTime lastModified) {
+
+    // One row plus the row it embeds in its JSON, e.g. a book and its category
+    public EntityVersion(LocalDateTime updatedAt, LocalDateTime embeddedUpdatedAt) {
+        this(micros(updatedAt) + "." + micros(embeddedUpdatedAt), latest(updatedAt, embeddedUpdatedAt));
+    }
+
+    // A whole list: the count catches deletes, the newest stamp inserts and updates
+    public EntityVersion(Long count, LocalDateTime newest) {
+        this(count + "." + micros(newest), newest);
+    }
+
+    // -1 tells WebRequest.checkNotModified there is no Last-Modified
+    public long lastModifiedMillis() {
+        return lastModified != null ? lastModified.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : -1;
+    }
+
+    private static long micros(LocalDateTime stamp) {
+        return stamp != null ? stamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + stamp.getNano() / 1_000 : 0;
+    }
+
+    private static LocalDateTime latest(LocalDateTime first, LocalDateTime second) {
+        if (first == null || (second != null && second.isAfter(first))) {
+            return second;
+        }
+        return first;
+    }
+}
@@ -0,0 +1,8 @@
+// LeasedStockLine.java
+package auca.ac.rw.ebook.dto;
+
+import java.util.UUID;
+
+// Units handed out from a node's stock lease, recorded as a sale against that lease
+public record LeasedStockLine(UUID leaseId, UUID bookId, int quantity) {
+}
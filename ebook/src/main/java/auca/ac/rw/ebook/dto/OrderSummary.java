@@ -0,0 +1,20 @@
+// OrderSummary.java
+package auca.ac.rw.ebook.dto;
+
+import auca.ac.rw.ebook.model.EOrderStatus;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// The order as embedded in payment rows - its user is already on the payment
+public record OrderSummary(@JsonProperty("order_id") UUID orderId,
+                           @JsonProperty("order_date") LocalDateTime orderDate,
+                           EOrderStatus status,
+                           @JsonProperty("total_amount") BigDecimal totalAmount) {
+
+    // Null for rows whose order was left-joined and missing
+    public static OrderSummary of(UUID orderId, LocalDateTime orderDate, EOrderStatus status, BigDecimal totalAmount) {
+        return orderId != null ? new OrderSummary(orderId, orderDate, status, totalAmount) : null;
+    }
+}
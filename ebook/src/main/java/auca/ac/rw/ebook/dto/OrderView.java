@@ -0,0 +1,22 @@
+// OrderView.java
+package auca.ac.rw.ebook.dto;
+
+import auca.ac.rw.ebook.model.EOrderStatus;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// An order as returned by the list endpoints, read with one constructor query
+public record OrderView(@JsonProperty("order_id") UUID orderId,
+                        UserSummary user,
+                        @JsonProperty("order_date") LocalDateTime orderDate,
+                        EOrderStatus status,
+                        @JsonProperty("total_amount") BigDecimal totalAmount) {
+
+    // Flat column list used by the OrderRepository view queries
+    public OrderView(UUID orderId, LocalDateTime orderDate, EOrderStatus status, BigDecimal totalAmount,
+                     UUID userId, String fullName) {
+        this(orderId, UserSummary.of(userId, fullName), orderDate, status, totalAmount);
+    }
+}
@@ -0,0 +1,40 @@
+// PageCursor.java
+package auca.ac.rw.ebook.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+// Position of the last row of a keyset page: the sort key plus the row id as tie-breaker.
+// Clients only see the opaque Base64 token produced by encode(). An empty date key stands for
+// a row without a date; those rows are listed after all dated ones.
+public record PageCursor(String sortKey, UUID id) {
+
+    public static PageCursor of(String sortKey, UUID id) {
+        return new PageCursor(sortKey, id);
+    }
+
+    public static PageCursor of(LocalDateTime sortKey, UUID id) {
+        return new PageCursor(sortKey != null ? sortKey.toString() : "", id);
+    }
+
+    public String encode() {
+        String raw = id + "|" + sortKey;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Throws IllegalArgumentException for tokens that were not produced by encode()
+    public static PageCursor decode(String token) {
+        String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        int separator = raw.indexOf('|');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return new PageCursor(raw.substring(separator + 1), UUID.fromString(raw.substring(0, separator)));
+    }
+
+    public LocalDateTime sortKeyAsDateTime() {
+        return sortKey.isEmpty() ? null : LocalDateTime.parse(sortKey);
+    }
+}
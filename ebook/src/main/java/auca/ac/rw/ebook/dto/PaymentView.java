@@ -0,0 +1,29 @@
+// PaymentView.java
+package auca.ac.rw.ebook.dto;
+
+import auca.ac.rw.ebook.model.EOrderStatus;
+import auca.ac.rw.ebook.model.EPaymentMethod;
+import auca.ac.rw.ebook.model.EPaymentStatus;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// A payment as returned by the list endpoints, read with one constructor query
+public record PaymentView(@JsonProperty("payment_id") UUID paymentId,
+                          OrderSummary order,
+                          UserSummary user,
+                          EPaymentMethod method,
+                          BigDecimal amount,
+                          EPaymentStatus status,
+                          @JsonProperty("payment_date") LocalDateTime paymentDate) {
+
+    // Flat column list used by the PaymentRepository view queries
+    public PaymentView(UUID paymentId, EPaymentMethod method, BigDecimal amount, EPaymentStatus status,
+                       LocalDateTime paymentDate,
+                       UUID orderId, LocalDateTime orderDate, EOrderStatus orderStatus, BigDecimal totalAmount,
+                       UUID userId, String fullName) {
+        this(paymentId, OrderSummary.of(orderId, orderDate, orderStatus, totalAmount),
+             UserSummary.of(userId, fullName), method, amount, status, paymentDate);
+    }
+}
@@ -0,0 +1,8 @@
+// ReviewRating.java
+package auca.ac.rw.ebook.dto;
+
+import java.util.UUID;
+
+// The part of a review that feeds the book's rating summary
+public record ReviewRating(UUID bookId, Integer rating) {
+}
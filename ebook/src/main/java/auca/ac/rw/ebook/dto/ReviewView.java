@@ -0,0 +1,24 @@
+// ReviewView.java
+package auca.ac.rw.ebook.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// A review as returned by the list endpoints, read with one constructor query
+public record ReviewView(@JsonProperty("review_id") UUID reviewId,
+                         UserSummary user,
+                         BookSummary book,
+                         Integer rating,
+                         String comment,
+                         @JsonProperty("created_at") LocalDateTime createdAt) {
+
+    // Flat column list used by the ReviewRepository view queries
+    public ReviewView(UUID reviewId, Integer rating, String comment, LocalDateTime createdAt,
+                      UUID userId, String fullName,
+                      UUID bookId, String title, String author, BigDecimal price) {
+        this(reviewId, UserSummary.of(userId, fullName), BookSummary.of(bookId, title, author, price),
+             rating, comment, createdAt);
+    }
+}
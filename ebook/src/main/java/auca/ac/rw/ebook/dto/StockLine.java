@@ -0,0 +1,9 @@
+// StockLine.java
+package auca.ac.rw.ebook.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.UUID;
+
+// One line of a stock reservation or release
+public record StockLine(@JsonProperty("book_id") UUID bookId, int quantity) {
+}
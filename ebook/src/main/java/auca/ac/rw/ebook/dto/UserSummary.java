@@ -0,0 +1,15 @@
+// UserSummary.java
+package auca.ac.rw.ebook.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.UUID;
+
+// The user as embedded in list rows - no password, contact details or location
+public record UserSummary(@JsonProperty("user_id") UUID userId,
+                          @JsonProperty("full_name") String fullName) {
+
+    // Null for rows whose user was left-joined and missing
+    public static UserSummary of(UUID userId, String fullName) {
+        return userId != null ? new UserSummary(userId, fullName) : null;
+    }
+}
@@ -2,14 +2,24 @@
 package auca.ac.rw.ebook.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.UpdateTimestamp;
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 @Entity
-@Table(name = "books")
+@Table(name = "books", indexes = {
+    @Index(name = "idx_books_author", columnList = "author"),
+    @Index(name = "idx_books_price", columnList = "price"),
+    @Index(name = "idx_books_category", columnList = "category_id"),
+    @Index(name = "idx_books_title_id", columnList = "title, book_id"),
+    @Index(name = "idx_books_average_rating", columnList = "average_rating"),
+    @Index(name = "idx_books_updated_at", columnList = "updated_at")
+})
 public class Book {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
@@ -33,6 +43,34 @@ public class Book {
     private String cover_image;
     private String file_url;
 
+    // Rating summary - kept in step with the reviews table by ReviewService using plain SQL,
+    // so the entity never writes these columns
+    @Column(insertable = false, updatable = false, nullable = false, columnDefinition = "integer not null default 0")
+    private Integer rating_count = 0;
+
+    @JsonIgnore
+    @Column(insertable = false, updatable = false, nullable = false, columnDefinition = "bigint not null default 0")
+    private Long rating_sum = 0L;
+
+    @Column(insertable = false, updatable = false, nullable = false, columnDefinition = "integer not null default 0")
+    private Integer rating_1 = 0;
+
+    @Column(insertable = false, updatable = false, nullable = false, columnDefinition = "integer not null default 0")
+    private Integer rating_2 = 0;
+
+    @Column(insertable = false, updatable = false, nullable = false, columnDefinition = "integer not null default 0")
+    private Integer rating_3 = 0;
+
+    @Column(insertable = false, updatable = false, nullable = false, columnDefinition = "integer not null default 0")
+    private Integer rating_4 = 0;
+
+    @Column(insertable = false, updatable = false, nullable = false, columnDefinition = "integer not null default 0")
+    private Integer rating_5 = 0;
+
+    // null while the book has no ratings
+    @Column(insertable = false, updatable = false)
+    private Double average_rating;
+
     // ONE-TO-MANY: One Book can be in multiple Cart items
     @JsonIgnore
     @OneToMany(mappedBy = "book", cascade = CascadeType.ALL)
@@ -48,6 +86,13 @@ public class Book {
     @OneToMany(mappedBy = "book", cascade = CascadeType.ALL)
     private List<Review> reviews;
 
+    // Bumped on every write, including the plain-SQL stock and rating updates; drives the ETag
+    @JsonIgnore
+    @UpdateTimestamp
+    @ColumnDefault("now()")
+    @Column(nullable = false)
+    private LocalDateTime updated_at;
+
     // Getters and setters
     public UUID getBook_id() {
         return book_id;
@@ -113,6 +158,30 @@ public class Book {
         this.file_url = file_url;
     }
 
+    public Integer getRating_count() {
+        return rating_count;
+    }
+
+    public Long getRating_sum() {
+        return rating_sum;
+    }
+
+    public Double getAverage_rating() {
+        return average_rating;
+    }
+
+    // Number of reviews with the given star rating, 1 to 5
+    public int getRatingCount(int rating) {
+        return switch (rating) {
+            case 1 -> rating_1;
+            case 2 -> rating_2;
+            case 3 -> rating_3;
+            case 4 -> rating_4;
+            case 5 -> rating_5;
+            default -> 0;
+        };
+    }
+
     public List<Cart> getCartItems() {
         return cartItems;
     }
@@ -136,4 +205,35 @@ public class Book {
     public void setReviews(List<Review> reviews) {
         this.reviews = reviews;
     }
+
+    public LocalDateTime getUpdated_at() {
+        return updated_at;
+    }
+
+    public void setUpdated_at(LocalDateTime updated_at) {
+        this.updated_at = updated_at;
+    }
+
+    // Detached copy for the in-memory read models; the collections are left out
+    public Book copy(Category category) {
+        Book copy = new Book();
+        copy.book_id = book_id;
+        copy.title = title;
+        copy.author = author;
+        copy.category = category;
+        copy.price = price;
+        copy.stock_quantity = stock_quantity;
+        copy.cover_image = cover_image;
+        copy.file_url = file_url;
+        copy.rating_count = rating_count;
+        copy.rating_sum = rating_sum;
+        copy.rating_1 = rating_1;
+        copy.rating_2 = rating_2;
+        copy.rating_3 = rating_3;
+        copy.rating_4 = rating_4;
+        copy.rating_5 = rating_5;
+        copy.average_rating = average_rating;
+        copy.updated_at = updated_at;
+        return copy;
+    }
 }
\ No newline at end of file
@@ -8,7 +8,10 @@ import java.util.UUID;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 @Entity
-@Table(name = "cart")
+// One line per (user, book): the cart store and the add-to-cart upsert rely on uk_cart_user_book
+@Table(name = "cart", indexes = {
+    @Index(name = "uk_cart_user_book", columnList = "user_id, book_id", unique = true)
+})
 public class Cart {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
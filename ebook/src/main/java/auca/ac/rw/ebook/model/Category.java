@@ -2,6 +2,9 @@
 package auca.ac.rw.ebook.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.UpdateTimestamp;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
@@ -22,6 +25,13 @@ public class Category {
     @OneToMany(mappedBy = "category", cascade = CascadeType.ALL)
     private List<Book> books;
 
+    // Bumped on every write; drives the ETag of the category list
+    @JsonIgnore
+    @UpdateTimestamp
+    @ColumnDefault("now()")
+    @Column(nullable = false)
+    private LocalDateTime updated_at;
+
     // Getters and setters
     public UUID getCategory_id() {
         return category_id;
@@ -46,4 +56,21 @@ public class Category {
     public void setBooks(List<Book> books) {
         this.books = books;
     }
+
+    public LocalDateTime getUpdated_at() {
+        return updated_at;
+    }
+
+    public void setUpdated_at(LocalDateTime updated_at) {
+        this.updated_at = updated_at;
+    }
+
+    // Detached copy for the in-memory read models; the books are left out
+    public Category copy() {
+        Category copy = new Category();
+        copy.category_id = category_id;
+        copy.category_name = category_name;
+        copy.updated_at = updated_at;
+        return copy;
+    }
 }
\ No newline at end of file
@@ -1,7 +1,10 @@
 package auca.ac.rw.ebook.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.UpdateTimestamp;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
@@ -37,6 +40,13 @@ public class Location {
     @OneToMany(mappedBy = "location", cascade = CascadeType.ALL)
     private List<User> users;
 
+    // Bumped on every write; drives the ETag of the province list
+    @JsonIgnore
+    @UpdateTimestamp
+    @ColumnDefault("now()")
+    @Column(nullable = false)
+    private LocalDateTime updated_at;
+
     // Getters and setters
     public UUID getLocation_id() {
         return location_id;
@@ -93,4 +103,12 @@ public class Location {
     public void setUsers(List<User> users) {
         this.users = users;
     }
+
+    public LocalDateTime getUpdated_at() {
+        return updated_at;
+    }
+
+    public void setUpdated_at(LocalDateTime updated_at) {
+        this.updated_at = updated_at;
+    }
 }
\ No newline at end of file
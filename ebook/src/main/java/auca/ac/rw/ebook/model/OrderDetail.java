@@ -6,7 +6,10 @@ import java.math.BigDecimal;
 import java.util.UUID;
 
 @Entity
-@Table(name = "order_details")
+@Table(name = "order_details", indexes = {
+    @Index(name = "idx_order_details_book", columnList = "book_id"),
+    @Index(name = "idx_order_details_order", columnList = "order_id")
+})
 public class OrderDetail {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
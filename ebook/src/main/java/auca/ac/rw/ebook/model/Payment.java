@@ -7,7 +7,9 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "payments")
+@Table(name = "payments", indexes = {
+    @Index(name = "idx_payments_user_date_id", columnList = "user_id, payment_date, payment_id")
+})
 public class Payment {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
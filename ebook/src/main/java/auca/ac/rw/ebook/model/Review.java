@@ -6,7 +6,10 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "reviews")
+@Table(name = "reviews", indexes = {
+    @Index(name = "idx_reviews_created_id", columnList = "created_at, review_id"),
+    @Index(name = "idx_reviews_book_created", columnList = "book_id, created_at")
+})
 public class Review {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
@@ -0,0 +1,71 @@
+// StockLease.java
+package auca.ac.rw.ebook.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Entity
+// Units a node has moved out of books.stock_quantity and not yet given back. Written by
+// StockLeaseManager in the statement that takes the block, so a crashed node's units can be
+// reclaimed once its lease expires.
+@Table(name = "stock_leases", indexes = {
+    @Index(name = "idx_stock_leases_expires_at", columnList = "expires_at")
+})
+public class StockLease {
+    @Id
+    private UUID lease_id;
+
+    @Column(nullable = false)
+    private String node_id;
+
+    @Column(nullable = false)
+    private UUID book_id;
+
+    @Column(nullable = false)
+    private Integer units;
+
+    @Column(nullable = false)
+    private LocalDateTime expires_at;
+
+    // Getters and setters
+    public UUID getLease_id() {
+        return lease_id;
+    }
+
+    public void setLease_id(UUID lease_id) {
+        this.lease_id = lease_id;
+    }
+
+    public String getNode_id() {
+        return node_id;
+    }
+
+    public void setNode_id(String node_id) {
+        this.node_id = node_id;
+    }
+
+    public UUID getBook_id() {
+        return book_id;
+    }
+
+    public void setBook_id(UUID book_id) {
+        this.book_id = book_id;
+    }
+
+    public Integer getUnits() {
+        return units;
+    }
+
+    public void setUnits(Integer units) {
+        this.units = units;
+    }
+
+    public LocalDateTime getExpires_at() {
+        return expires_at;
+    }
+
+    public void setExpires_at(LocalDateTime expires_at) {
+        this.expires_at = expires_at;
+    }
+}
@@ -0,0 +1,35 @@
+// StockLeaseBook.java
+package auca.ac.rw.ebook.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Entity
+// Books served from stock leases. Every node loads this table at startup and on each sweep,
+// so enabling or disabling leasing on one node reaches all of them and survives a restart.
+@Table(name = "stock_lease_books")
+public class StockLeaseBook {
+    @Id
+    private UUID book_id;
+
+    @Column(nullable = false)
+    private LocalDateTime enabled_at;
+
+    // Getters and setters
+    public UUID getBook_id() {
+        return book_id;
+    }
+
+    public void setBook_id(UUID book_id) {
+        this.book_id = book_id;
+    }
+
+    public LocalDateTime getEnabled_at() {
+        return enabled_at;
+    }
+
+    public void setEnabled_at(LocalDateTime enabled_at) {
+        this.enabled_at = enabled_at;
+    }
+}
@@ -0,0 +1,48 @@
+// StockLeaseSale.java
+package auca.ac.rw.ebook.model;
+
+import jakarta.persistence.*;
+import java.util.UUID;
+
+@Entity
+// Units sold out of a stock lease, inserted by the buyer's transaction. What a lease still
+// holds is its units minus these rows, so nothing sold is given back when it is returned.
+@Table(name = "stock_lease_sales", indexes = {
+    @Index(name = "idx_stock_lease_sales_lease_id", columnList = "lease_id")
+})
+public class StockLeaseSale {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID sale_id;
+
+    @Column(nullable = false)
+    private UUID lease_id;
+
+    @Column(nullable = false)
+    private Integer units;
+
+    // Getters and setters
+    public UUID getSale_id() {
+        return sale_id;
+    }
+
+    public void setSale_id(UUID sale_id) {
+        this.sale_id = sale_id;
+    }
+
+    public UUID getLease_id() {
+        return lease_id;
+    }
+
+    public void setLease_id(UUID lease_id) {
+        this.lease_id = lease_id;
+    }
+
+    public Integer getUnits() {
+        return units;
+    }
+
+    public void setUnits(Integer units) {
+        this.units = units;
+    }
+}
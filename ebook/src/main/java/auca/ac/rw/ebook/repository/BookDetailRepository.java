@@ -0,0 +1,16 @@
+// BookDetailRepository.java
+package auca.ac.rw.ebook.repository;
+
+import auca.ac.rw.ebook.dto.BookDetail;
+import java.util.List;
+import java.util.UUID;
+
+// Custom fragment of BookRepository for the book page aggregate
+public interface BookDetailRepository {
+
+    record SalesAndReviews(long unitsSold, List<BookDetail.ReviewSummary> reviews) {}
+
+    // Units sold and the newest reviews in one statement. The rating summary is not
+    // part of it because it is kept on the book itself.
+    SalesAndReviews loadSalesAndReviews(UUID bookId, int reviewPageSize);
+}
@@ -0,0 +1,49 @@
+// BookDetailRepositoryImpl.java
+package auca.ac.rw.ebook.repository;
+
+import auca.ac.rw.ebook.dto.BookDetail;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public class BookDetailRepositoryImpl implements BookDetailRepository {
+
+    // The sales CTE always yields exactly one row; the page is joined onto it so
+    // a book without reviews still comes back as a single row with null review columns
+    private static final String DETAIL_SQL =
+            "WITH sales AS (" +
+            "  SELECT COALESCE(SUM(quantity), 0) AS units_sold FROM order_details WHERE book_id = ?), " +
+            "first_page AS (" +
+            "  SELECT r.review_id, r.user_id, u.full_name, r.rating, r.comment, r.created_at" +
+            "  FROM reviews r LEFT JOIN users u ON u.user_id = r.user_id" +
+            "  WHERE r.book_id = ? ORDER BY r.created_at DESC NULLS LAST, r.review_id DESC LIMIT ?) " +
+            "SELECT s.units_sold, p.* FROM sales s LEFT JOIN first_page p ON TRUE " +
+            "ORDER BY p.created_at DESC NULLS LAST, p.review_id DESC";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public SalesAndReviews loadSalesAndReviews(UUID bookId, int reviewPageSize) {
+        long[] unitsSold = new long[1];
+        List<BookDetail.ReviewSummary> reviews = new ArrayList<>(reviewPageSize);
+        jdbcTemplate.query(DETAIL_SQL, rs -> {
+            unitsSold[0] = rs.getLong("units_sold");
+            UUID reviewId = rs.getObject("review_id", UUID.class);
+            if (reviewId != null) {
+                Timestamp createdAt = rs.getTimestamp("created_at");
+                reviews.add(new BookDetail.ReviewSummary(
+                        reviewId,
+                        rs.getObject("user_id", UUID.class),
+                        rs.getString("full_name"),
+                        rs.getObject("rating", Integer.class),
+                        rs.getString("comment"),
+                        createdAt != null ? createdAt.toLocalDateTime() : null));
+            }
+        }, bookId, bookId, reviewPageSize);
+        return new SalesAndReviews(unitsSold[0], List.copyOf(reviews));
+    }
+}
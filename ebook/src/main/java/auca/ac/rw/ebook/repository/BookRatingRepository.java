@@ -0,0 +1,15 @@
+// BookRatingRepository.java
+package auca.ac.rw.ebook.repository;
+
+import java.util.UUID;
+
+// Custom fragment of BookRepository for the per-book rating summary columns
+public interface BookRatingRepository {
+
+    // One atomic UPDATE that moves a single review out of removedRating and into addedRating.
+    // Either side may be null: a new review has no removed rating, a deleted one no added rating.
+    void applyRatingChange(UUID bookId, Integer removedRating, Integer addedRating);
+
+    // Recomputes every summary from the reviews table and returns how many books were corrected
+    int reconcileRatingSummaries();
+}
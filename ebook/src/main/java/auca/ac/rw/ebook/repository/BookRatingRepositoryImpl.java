@@ -0,0 +1,80 @@
+// BookRatingRepositoryImpl.java
+package auca.ac.rw.ebook.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import java.util.UUID;
+
+public class BookRatingRepositoryImpl implements BookRatingRepository {
+
+    // Every right-hand side reads the old row, so the average uses the same count and sum as the deltas
+    private static final String APPLY_SQL =
+            "UPDATE books SET rating_count = rating_count + ?, rating_sum = rating_sum + ?, " +
+            "rating_1 = rating_1 + ?, rating_2 = rating_2 + ?, rating_3 = rating_3 + ?, " +
+            "rating_4 = rating_4 + ?, rating_5 = rating_5 + ?, " +
+            "average_rating = CASE WHEN rating_count + ? > 0 " +
+            "THEN (rating_sum + ?)::float8 / (rating_count + ?) END, updated_at = now() " +
+            "WHERE book_id = ?";
+
+    // Only rows that disagree with the reviews table are written
+    private static final String RECONCILE_SQL =
+            "UPDATE books b SET rating_count = s.rating_count, rating_sum = s.rating_sum, " +
+            "rating_1 = s.rating_1, rating_2 = s.rating_2, rating_3 = s.rating_3, " +
+            "rating_4 = s.rating_4, rating_5 = s.rating_5, average_rating = s.average_rating, updated_at = now() " +
+            "FROM (SELECT bk.book_id, COUNT(r.rating) AS rating_count, COALESCE(SUM(r.rating), 0) AS rating_sum, " +
+            "      COUNT(*) FILTER (WHERE r.rating = 1) AS rating_1, COUNT(*) FILTER (WHERE r.rating = 2) AS rating_2, " +
+            "      COUNT(*) FILTER (WHERE r.rating = 3) AS rating_3, COUNT(*) FILTER (WHERE r.rating = 4) AS rating_4, " +
+            "      COUNT(*) FILTER (WHERE r.rating = 5) AS rating_5, " +
+            "      CASE WHEN COUNT(r.rating) > 0 THEN COALESCE(SUM(r.rating), 0)::float8 / COUNT(r.rating) END AS average_rating " +
+            "      FROM books bk LEFT JOIN reviews r ON r.book_id = bk.book_id AND r.rating BETWEEN 1 AND 5 " +
+            "      GROUP BY bk.book_id) s " +
+            "WHERE b.book_id = s.book_id AND (b.rating_count, b.rating_sum, b.rating_1, b.rating_2, b.rating_3, " +
+            "b.rating_4, b.rating_5, b.average_rating) IS DISTINCT FROM (s.rating_count, s.rating_sum, s.rating_1, " +
+            "s.rating_2, s.rating_3, s.rating_4, s.rating_5, s.average_rating)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Runs in the caller's transaction. Pending review changes are flushed first and the
+    // persistence context is cleared afterwards so later reads of the book see the new summary.
+    @Override
+    public void applyRatingChange(UUID bookId, Integer removedRating, Integer addedRating) {
+        int[] buckets = new int[6];
+        int count = 0;
+        int sum = 0;
+        // Ratings outside 1..5 are not part of the summary, matching reconcileRatingSummaries
+        if (isCounted(removedRating)) {
+            buckets[removedRating]--;
+            count--;
+            sum -= removedRating;
+        }
+        if (isCounted(addedRating)) {
+            buckets[addedRating]++;
+            count++;
+            sum += addedRating;
+        }
+        if (count == 0 && sum == 0) {
+            return;
+        }
+        entityManager.flush();
+        jdbcTemplate.update(APPLY_SQL, count, sum,
+                buckets[1], buckets[2], buckets[3], buckets[4], buckets[5],
+                count, sum, count, bookId);
+        entityManager.clear();
+    }
+
+    @Override
+    public int reconcileRatingSummaries() {
+        return jdbcTemplate.update(RECONCILE_SQL);
+    }
+
+    // Helper methods
+    private static boolean isCounted(Integer rating) {
+        return rating != null && rating >= 1 && rating <= 5;
+    }
+}
@@ -1,16 +1,25 @@
 package auca.ac.rw.ebook.repository;
 
+import auca.ac.rw.ebook.dto.EntityVersion;
 import auca.ac.rw.ebook.model.Book;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
-public interface BookRepository extends JpaRepository<Book, UUID> {
+public interface BookRepository extends JpaRepository<Book, UUID>, JpaSpecificationExecutor<Book>, BookSearchRepository,
+        BookStockRepository, BookDetailRepository, BookRatingRepository {
     
     // findBy... queries - FIXED: Using @Query for snake_case columns
     Optional<Book> findByTitle(String title);
@@ -45,6 +54,48 @@ public interface BookRepository extends JpaRepository<Book, UUID> {
     
     Page<Book> findAll(Pageable pageable);
     
+    // Bulk import duplicate check - one query per chunk instead of existsByTitleAndAuthor per row
+    @Query("SELECT b.title, b.author FROM Book b WHERE b.title IN :titles")
+    List<Object[]> findTitleAndAuthorByTitleIn(@Param("titles") Collection<String> titles);
+    
+    // Keyset pagination ordered by (title, book_id)
+    @Query("SELECT b FROM Book b LEFT JOIN FETCH b.category ORDER BY b.title, b.book_id")
+    List<Book> findFirstByTitleKeyset(Limit limit);
+    
+    @Query("SELECT b FROM Book b LEFT JOIN FETCH b.category WHERE (b.title, b.book_id) > (:title, :bookId) ORDER BY b.title, b.book_id")
+    List<Book> findNextByTitleKeyset(@Param("title") String title, @Param("bookId") UUID bookId, Limit limit);
+    
+    // Streaming export - read in fetch-size batches instead of one List
+    @QueryHints({
+        @QueryHint(name = "org.hibernate.fetchSize", value = "500"),
+        @QueryHint(name = "org.hibernate.readOnly", value = "true")
+    })
+    @Query("SELECT b FROM Book b LEFT JOIN FETCH b.category ORDER BY b.title, b.book_id")
+    Stream<Book> streamAllForExport();
+    
+    // Existence filter rebuild - keys only, read in fetch-size batches
+    @QueryHints({
+        @QueryHint(name = "org.hibernate.fetchSize", value = "5000"),
+        @QueryHint(name = "org.hibernate.readOnly", value = "true")
+    })
+    @Query("SELECT b.title, b.author FROM Book b")
+    Stream<Object[]> streamTitlesAndAuthors();
+    
+    // Catalog snapshot loading - fetch categories in the same statement
+    @Query("SELECT b FROM Book b LEFT JOIN FETCH b.category")
+    List<Book> findAllWithCategory();
+    
+    @Query("SELECT b FROM Book b LEFT JOIN FETCH b.category WHERE b.book_id = :bookId")
+    Optional<Book> findByIdWithCategory(@Param("bookId") UUID bookId);
+    
+    // Catalog snapshot refresh - rows written since the last one, served by idx_books_updated_at
+    @Query("SELECT b FROM Book b LEFT JOIN FETCH b.category WHERE b.updated_at > :since")
+    List<Book> findUpdatedSinceWithCategory(@Param("since") LocalDateTime since);
+    
+    // Conditional GET - the book's JSON embeds its category, so both stamps go into the version
+    @Query("SELECT new auca.ac.rw.ebook.dto.EntityVersion(b.updated_at, c.updated_at) FROM Book b LEFT JOIN b.category c WHERE b.book_id = :bookId")
+    Optional<EntityVersion> findVersionById(@Param("bookId") UUID bookId);
+    
     // Custom search queries
     @Query("SELECT b FROM Book b WHERE LOWER(b.title) LIKE LOWER(CONCAT('%', :keyword, '%')) OR LOWER(b.author) LIKE LOWER(CONCAT('%', :keyword, '%'))")
     List<Book> searchByTitleOrAuthor(@Param("keyword") String keyword);
@@ -52,6 +103,13 @@ public interface BookRepository extends JpaRepository<Book, UUID> {
     @Query("SELECT b FROM Book b WHERE b.stock_quantity > 0")
     List<Book> findAvailableBooks();
     
+    // Rating summary queries - read the columns ReviewService maintains, never the reviews table
+    @Query("SELECT b, b.average_rating FROM Book b LEFT JOIN FETCH b.category WHERE b.average_rating >= :minRating ORDER BY b.average_rating DESC")
+    List<Object[]> findBooksWithAverageRatingAbove(@Param("minRating") Double minRating);
+    
+    @Query("SELECT b, CAST(b.rating_count AS Long) FROM Book b LEFT JOIN FETCH b.category WHERE b.rating_count > 0 ORDER BY b.rating_count DESC")
+    List<Object[]> findMostReviewedBooks();
+    
     // Statistics queries
     @Query("SELECT COUNT(b) FROM Book b")
     Long countTotalBooks();
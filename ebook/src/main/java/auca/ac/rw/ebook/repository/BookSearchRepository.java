@@ -0,0 +1,15 @@
+// BookSearchRepository.java
+package auca.ac.rw.ebook.repository;
+
+import auca.ac.rw.ebook.model.Book;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+
+// Custom fragment of BookRepository for filtered catalog search
+public interface BookSearchRepository {
+
+    // Returns a Page (with total count) when withCount is true, otherwise a Slice that
+    // only knows whether a next page exists and skips the COUNT query entirely
+    Slice<Book> searchBooks(Specification<Book> specification, Pageable pageable, boolean withCount);
+}
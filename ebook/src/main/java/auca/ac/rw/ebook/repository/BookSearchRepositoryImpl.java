@@ -0,0 +1,81 @@
+// BookSearchRepositoryImpl.java
+package auca.ac.rw.ebook.repository;
+
+import auca.ac.rw.ebook.model.Book;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BookSearchRepositoryImpl implements BookSearchRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Slice<Book> searchBooks(Specification<Book> specification, Pageable pageable, boolean withCount) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        // One statement: filters, category fetch join, ordering and limit
+        CriteriaQuery<Book> query = cb.createQuery(Book.class);
+        Root<Book> root = query.from(Book.class);
+        root.fetch("category", JoinType.LEFT);
+        Predicate predicate = toPredicate(specification, root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        List<Order> orders = new ArrayList<>(QueryUtils.toOrders(pageable.getSort(), root, cb));
+        orders.add(cb.asc(root.get("book_id")));
+        query.select(root).orderBy(orders);
+
+        TypedQuery<Book> typedQuery = entityManager.createQuery(query);
+        if (pageable.isUnpaged()) {
+            List<Book> books = typedQuery.getResultList();
+            return new PageImpl<>(books, pageable, books.size());
+        }
+        typedQuery.setFirstResult((int) pageable.getOffset());
+        // Fetch one extra row to know whether another page follows
+        typedQuery.setMaxResults(pageable.getPageSize() + (withCount ? 0 : 1));
+        List<Book> books = typedQuery.getResultList();
+
+        if (!withCount) {
+            boolean hasNext = books.size() > pageable.getPageSize();
+            return new SliceImpl<>(hasNext ? books.subList(0, pageable.getPageSize()) : books, pageable, hasNext);
+        }
+        return new PageImpl<>(books, pageable, count(specification, pageable, books.size()));
+    }
+
+    private long count(Specification<Book> specification, Pageable pageable, int pageSize) {
+        // The total is already known when the first page is not full
+        if (pageable.getOffset() == 0 && pageSize < pageable.getPageSize()) {
+            return pageSize;
+        }
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Book> root = query.from(Book.class);
+        Predicate predicate = toPredicate(specification, root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.select(cb.count(root));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    private Predicate toPredicate(Specification<Book> specification, Root<Book> root,
+                                  CriteriaQuery<?> query, CriteriaBuilder cb) {
+        return specification != null ? specification.toPredicate(root, query, cb) : null;
+    }
+}
@@ -0,0 +1,87 @@
+// BookSpecifications.java
+package auca.ac.rw.ebook.repository;
+
+import auca.ac.rw.ebook.dto.BookSearchCriteria;
+import auca.ac.rw.ebook.model.Book;
+import org.springframework.data.jpa.domain.Specification;
+import java.math.BigDecimal;
+import java.util.Locale;
+import java.util.UUID;
+
+// Composable filters for BookRepository; null arguments yield no restriction
+public final class BookSpecifications {
+
+    private BookSpecifications() {
+    }
+
+    public static Specification<Book> matching(BookSearchCriteria criteria) {
+        return Specification.allOf(
+                keyword(criteria.keyword()),
+                author(criteria.author()),
+                inCategory(criteria.categoryId()),
+                priceAtLeast(criteria.minPrice()),
+                priceAtMost(criteria.maxPrice()),
+                inStock(criteria.inStock()));
+    }
+
+    public static Specification<Book> keyword(String keyword) {
+        if (isBlank(keyword)) {
+            return null;
+        }
+        String pattern = containsPattern(keyword);
+        return (root, query, cb) -> cb.or(
+                cb.like(cb.lower(root.get("title")), pattern, '\\'),
+                cb.like(cb.lower(root.get("author")), pattern, '\\'));
+    }
+
+    public static Specification<Book> author(String author) {
+        if (isBlank(author)) {
+            return null;
+        }
+        String pattern = containsPattern(author);
+        return (root, query, cb) -> cb.like(cb.lower(root.get("author")), pattern, '\\');
+    }
+
+    public static Specification<Book> inCategory(UUID categoryId) {
+        if (categoryId == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.equal(root.get("category").get("category_id"), categoryId);
+    }
+
+    public static Specification<Book> priceAtLeast(BigDecimal minPrice) {
+        if (minPrice == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("price"), minPrice);
+    }
+
+    public static Specification<Book> priceAtMost(BigDecimal maxPrice) {
+        if (maxPrice == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("price"), maxPrice);
+    }
+
+    public static Specification<Book> inStock(Boolean inStock) {
+        if (inStock == null) {
+            return null;
+        }
+        return (root, query, cb) -> inStock
+                ? cb.greaterThan(root.get("stock_quantity"), 0)
+                : cb.or(cb.isNull(root.get("stock_quantity")), cb.lessThanOrEqualTo(root.get("stock_quantity"), 0));
+    }
+
+    // Helper methods
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    private static String containsPattern(String value) {
+        String escaped = value.trim().toLowerCase(Locale.ROOT)
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        return "%" + escaped + "%";
+    }
+}
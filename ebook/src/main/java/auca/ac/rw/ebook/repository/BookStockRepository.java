@@ -0,0 +1,20 @@
+// BookStockRepository.java
+package auca.ac.rw.ebook.repository;
+
+import auca.ac.rw.ebook.dto.LeasedStockLine;
+import auca.ac.rw.ebook.dto.StockLine;
+import java.util.List;
+
+// Custom fragment of BookRepository for stock changes that must not read-modify-write
+public interface BookStockRepository {
+
+    // One conditional UPDATE per line, sent as a single JDBC batch. Returns the update count
+    // per line; 0 means the book is missing or has less stock than requested.
+    int[] reserveStock(List<StockLine> lines);
+
+    int[] releaseStock(List<StockLine> lines);
+    
+    // Records units handed out from stock leases, one insert per line in a single batch.
+    // 0 means the lease was returned in the meantime and its units are back in the row.
+    int[] recordLeaseSales(List<LeasedStockLine> lines);
+}
@@ -0,0 +1,85 @@
+// BookStockRepositoryImpl.java
+package auca.ac.rw.ebook.repository;
+
+import auca.ac.rw.ebook.dto.LeasedStockLine;
+import auca.ac.rw.ebook.dto.StockLine;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+public class BookStockRepositoryImpl implements BookStockRepository {
+
+    private static final String RESERVE_SQL =
+            "UPDATE books SET stock_quantity = stock_quantity - ?, updated_at = now() WHERE book_id = ? AND stock_quantity >= ?";
+
+    private static final String RELEASE_SQL =
+            "UPDATE books SET stock_quantity = stock_quantity + ?, updated_at = now() WHERE book_id = ?";
+
+    // FOR KEY SHARE keeps the lease from being returned until the sale commits, without
+    // blocking other buyers or a refill of the same lease
+    private static final String LEASE_SALE_SQL =
+            "WITH lease AS (SELECT lease_id FROM stock_leases WHERE lease_id = ? FOR KEY SHARE) " +
+            "INSERT INTO stock_lease_sales (sale_id, lease_id, units) SELECT gen_random_uuid(), lease_id, ? FROM lease";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int[] reserveStock(List<StockLine> lines) {
+        return batch(RESERVE_SQL, lines, true);
+    }
+
+    @Override
+    public int[] releaseStock(List<StockLine> lines) {
+        return batch(RELEASE_SQL, lines, false);
+    }
+
+    @Override
+    public int[] recordLeaseSales(List<LeasedStockLine> lines) {
+        return jdbcTemplate.batchUpdate(LEASE_SALE_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                LeasedStockLine line = lines.get(i);
+                statement.setObject(1, line.leaseId());
+                statement.setInt(2, line.quantity());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return lines.size();
+            }
+        });
+    }
+
+    // Runs in the caller's transaction. Pending entity changes are flushed first and the
+    // persistence context is cleared afterwards so later reads see the new stock.
+    private int[] batch(String sql, List<StockLine> lines, boolean guarded) {
+        entityManager.flush();
+        int[] counts = jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                StockLine line = lines.get(i);
+                statement.setInt(1, line.quantity());
+                statement.setObject(2, line.bookId());
+                if (guarded) {
+                    statement.setInt(3, line.quantity());
+                }
+            }
+
+            @Override
+            public int getBatchSize() {
+                return lines.size();
+            }
+        });
+        entityManager.clear();
+        return counts;
+    }
+}
@@ -1,8 +1,11 @@
 package auca.ac.rw.ebook.repository;
 
+import auca.ac.rw.ebook.dto.CartItemView;
+import auca.ac.rw.ebook.dto.CartLine;
 import auca.ac.rw.ebook.model.Cart;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -10,12 +13,32 @@ import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
-public interface CartRepository extends JpaRepository<Cart, UUID> {
+public interface CartRepository extends JpaRepository<Cart, UUID>, CartWriteRepository {
+    
+    // List endpoints read CartItemViews - one statement, no entity graph, no user passwords
+    String VIEW_QUERY = "SELECT new auca.ac.rw.ebook.dto.CartItemView(c.cart_id, c.quantity, c.added_at, " +
+            "u.user_id, u.full_name, b.book_id, b.title, b.author, b.price) " +
+            "FROM Cart c LEFT JOIN c.user u LEFT JOIN c.book b";
     
     // findBy... queries - FIXED: Using @Query for snake_case columns
     @Query("SELECT c FROM Cart c WHERE c.user.user_id = :userId")
     List<Cart> findByUserId(@Param("userId") UUID userId);
     
+    @Query(VIEW_QUERY)
+    List<CartItemView> findAllViews();
+    
+    // The cart store loads a user's lines by ids only - titles and prices come from the catalog snapshot
+    @Query("SELECT new auca.ac.rw.ebook.dto.CartLine(c.cart_id, c.user.user_id, c.book.book_id, c.quantity, c.added_at) " +
+           "FROM Cart c WHERE c.user.user_id = :userId ORDER BY c.added_at")
+    List<CartLine> findLinesByUserId(@Param("userId") UUID userId);
+    
+    @Query("SELECT new auca.ac.rw.ebook.dto.CartLine(c.cart_id, c.user.user_id, c.book.book_id, c.quantity, c.added_at) " +
+           "FROM Cart c WHERE c.cart_id = :cartId")
+    Optional<CartLine> findLineById(@Param("cartId") UUID cartId);
+    
+    @Query(VIEW_QUERY + " WHERE u.user_id = :userId")
+    List<CartItemView> findViewsByUserId(@Param("userId") UUID userId);
+    
     @Query("SELECT c FROM Cart c WHERE c.user.user_id = :userId AND c.book.book_id = :bookId")
     Optional<Cart> findByUserIdAndBookId(@Param("userId") UUID userId, @Param("bookId") UUID bookId);
     
@@ -30,24 +53,28 @@ public interface CartRepository extends JpaRepository<Cart, UUID> {
     Boolean existsByUserId(@Param("userId") UUID userId);
     
     // Sorting and Pagination
-    @Query("SELECT c FROM Cart c WHERE c.user.user_id = :userId")
-    Page<Cart> findByUserId(@Param("userId") UUID userId, Pageable pageable);
+    @Query(value = VIEW_QUERY + " WHERE u.user_id = :userId",
+           countQuery = "SELECT COUNT(c) FROM Cart c WHERE c.user.user_id = :userId")
+    Page<CartItemView> findViewsByUserId(@Param("userId") UUID userId, Pageable pageable);
     
     Page<Cart> findAll(Pageable pageable);
     
     // Custom queries
-    @Query("SELECT c FROM Cart c WHERE c.user.user_id = :userId ORDER BY c.added_at DESC")
-    List<Cart> findUserCartByDateDesc(@Param("userId") UUID userId);
-    
-    @Query("SELECT SUM(c.quantity) FROM Cart c WHERE c.user.user_id = :userId")
-    Integer countTotalItemsInCart(@Param("userId") UUID userId);
-    
-    @Query("SELECT SUM(c.quantity * b.price) FROM Cart c JOIN c.book b WHERE c.user.user_id = :userId")
-    Double calculateCartTotal(@Param("userId") UUID userId);
+    @Query(VIEW_QUERY + " WHERE u.user_id = :userId ORDER BY c.added_at DESC")
+    List<CartItemView> findUserCartByDateDesc(@Param("userId") UUID userId);
     
     @Query("SELECT c FROM Cart c WHERE c.user.user_id = :userId AND c.quantity > :minQuantity")
     List<Cart> findUserCartItemsWithMinimumQuantity(@Param("userId") UUID userId, @Param("minQuantity") Integer minQuantity);
     
+    // Add to cart in one round trip - inserts the line or adds to the quantity of the one there.
+    // Needs uk_cart_user_book; returns true when the line was inserted.
+    @Transactional
+    @Query(value = "INSERT INTO cart (cart_id, user_id, book_id, quantity, added_at) " +
+                   "VALUES (gen_random_uuid(), :userId, :bookId, :quantity, now()) " +
+                   "ON CONFLICT (user_id, book_id) DO UPDATE SET quantity = cart.quantity + EXCLUDED.quantity " +
+                   "RETURNING xmax = 0", nativeQuery = true)
+    Boolean addToCart(@Param("userId") UUID userId, @Param("bookId") UUID bookId, @Param("quantity") int quantity);
+    
     // Delete operations
     @Query("DELETE FROM Cart c WHERE c.user.user_id = :userId AND c.book.book_id = :bookId")
     void deleteByUserIdAndBookId(@Param("userId") UUID userId, @Param("bookId") UUID bookId);
@@ -0,0 +1,22 @@
+// CartWriteRepository.java
+package auca.ac.rw.ebook.repository;
+
+import auca.ac.rw.ebook.dto.CartLine;
+import java.util.List;
+
+// Custom fragment of CartRepository for the cart store's write-behind flush.
+// Lines are matched on (user_id, book_id); each call sends one JDBC batch.
+public interface CartWriteRepository {
+
+    int[] removeLines(List<CartLine> lines);
+
+    // Inserts the lines or overwrites the quantity of the rows there
+    int[] setLines(List<CartLine> lines);
+
+    // Inserts the lines or adds their quantity to the rows there
+    int[] addLines(List<CartLine> lines);
+
+    // Merges rows that repeat a (user, book) into the oldest one and makes sure
+    // uk_cart_user_book exists. Returns the number of rows merged away.
+    int enforceOneLinePerBook();
+}
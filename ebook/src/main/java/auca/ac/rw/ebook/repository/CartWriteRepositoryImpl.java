@@ -0,0 +1,80 @@
+// CartWriteRepositoryImpl.java
+package auca.ac.rw.ebook.repository;
+
+import auca.ac.rw.ebook.dto.CartLine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CartWriteRepositoryImpl implements CartWriteRepository {
+
+    private static final String REMOVE_SQL = "DELETE FROM cart WHERE user_id = ? AND book_id = ?";
+
+    // added_at is only written by the insert, quantity changes do not move a line in the cart
+    private static final String SET_SQL =
+            "INSERT INTO cart (cart_id, user_id, book_id, quantity, added_at) VALUES (?, ?, ?, ?, ?) " +
+            "ON CONFLICT (user_id, book_id) DO UPDATE SET quantity = EXCLUDED.quantity";
+
+    private static final String ADD_SQL =
+            "INSERT INTO cart (cart_id, user_id, book_id, quantity, added_at) VALUES (?, ?, ?, ?, ?) " +
+            "ON CONFLICT (user_id, book_id) DO UPDATE SET quantity = cart.quantity + EXCLUDED.quantity";
+
+    // Rows with a null user or book are not covered by the index and left alone
+    private static final String MERGE_DUPLICATES_SQL =
+            "WITH merged AS (SELECT user_id, book_id, SUM(quantity) AS quantity, " +
+            "      (ARRAY_AGG(cart_id ORDER BY added_at NULLS LAST, cart_id))[1] AS kept " +
+            "      FROM cart WHERE user_id IS NOT NULL AND book_id IS NOT NULL " +
+            "      GROUP BY user_id, book_id HAVING COUNT(*) > 1), " +
+            "updated AS (UPDATE cart c SET quantity = m.quantity FROM merged m WHERE c.cart_id = m.kept) " +
+            "DELETE FROM cart c USING merged m " +
+            "WHERE c.user_id = m.user_id AND c.book_id = m.book_id AND c.cart_id <> m.kept";
+
+    private static final String UNIQUE_INDEX_SQL =
+            "CREATE UNIQUE INDEX IF NOT EXISTS uk_cart_user_book ON cart (user_id, book_id)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // All of these run in the caller's transaction
+    @Override
+    public int[] removeLines(List<CartLine> lines) {
+        List<Object[]> args = new ArrayList<>(lines.size());
+        for (CartLine line : lines) {
+            args.add(new Object[] { line.userId(), line.bookId() });
+        }
+        return batch(REMOVE_SQL, args);
+    }
+
+    @Override
+    public int[] setLines(List<CartLine> lines) {
+        return batch(SET_SQL, insertArgs(lines));
+    }
+
+    @Override
+    public int[] addLines(List<CartLine> lines) {
+        return batch(ADD_SQL, insertArgs(lines));
+    }
+
+    @Override
+    public int enforceOneLinePerBook() {
+        int merged = jdbcTemplate.update(MERGE_DUPLICATES_SQL);
+        jdbcTemplate.execute(UNIQUE_INDEX_SQL);
+        return merged;
+    }
+
+    // Helper methods
+    private int[] batch(String sql, List<Object[]> args) {
+        return args.isEmpty() ? new int[0] : jdbcTemplate.batchUpdate(sql, args);
+    }
+
+    private static List<Object[]> insertArgs(List<CartLine> lines) {
+        List<Object[]> args = new ArrayList<>(lines.size());
+        for (CartLine line : lines) {
+            args.add(new Object[] { line.cartId(), line.userId(), line.bookId(), line.quantity(),
+                    line.addedAt() != null ? Timestamp.valueOf(line.addedAt()) : null });
+        }
+        return args;
+    }
+}
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -23,6 +24,10 @@ public interface CategoryRepository extends JpaRepository<Category, UUID> {
     @Query("SELECT CASE WHEN COUNT(c) > 0 THEN true ELSE false END FROM Category c WHERE c.category_name = :categoryName")
     Boolean existsByCategoryName(@Param("categoryName") String categoryName);
     
+    // Bulk import - names are passed lower-cased
+    @Query("SELECT c FROM Category c WHERE LOWER(c.category_name) IN :names")
+    List<Category> findByCategoryNameInIgnoreCase(@Param("names") Collection<String> names);
+    
     // Sorting and Pagination
     @Query("SELECT c FROM Category c WHERE c.category_name LIKE %:name%")
     Page<Category> findByCategoryNameContaining(@Param("name") String name, Pageable pageable);
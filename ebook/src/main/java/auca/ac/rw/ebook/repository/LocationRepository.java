@@ -1,5 +1,6 @@
 package auca.ac.rw.ebook.repository;
 
+import auca.ac.rw.ebook.dto.EntityVersion;
 import auca.ac.rw.ebook.model.Location;
 import auca.ac.rw.ebook.model.ELocationType;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -38,6 +39,10 @@ public interface LocationRepository extends JpaRepository<Location, UUID> {
     @Query("SELECT l FROM Location l WHERE l.type = 'PROVINCE'")
     List<Location> findAllProvinces();
     
+    // Conditional GET of findAllProvinces
+    @Query("SELECT new auca.ac.rw.ebook.dto.EntityVersion(COUNT(l), MAX(l.updated_at)) FROM Location l WHERE l.type = 'PROVINCE'")
+    EntityVersion findProvincesVersion();
+    
     @Query("SELECT l FROM Location l WHERE l.type = 'DISTRICT' AND l.parent.code = :provinceCode")
     List<Location> findDistrictsByProvinceCode(@Param("provinceCode") String provinceCode);
     
@@ -0,0 +1,21 @@
+// OrderBasketRepository.java
+package auca.ac.rw.ebook.repository;
+
+import auca.ac.rw.ebook.model.EOrderStatus;
+import java.util.Collection;
+import java.util.UUID;
+
+// Custom fragment of OrderDetailRepository for reading order lines as baskets
+public interface OrderBasketRepository {
+
+    interface BasketLineHandler {
+        void line(UUID orderId, UUID bookId);
+    }
+
+    // Streams (order, book) for every line of an order in one of the statuses. Rows arrive
+    // grouped by order, so a basket is a run of consecutive calls.
+    void forEachBasketLine(Collection<EOrderStatus> statuses, BasketLineHandler handler);
+
+    // The same, limited to the given orders
+    void forEachBasketLine(Collection<EOrderStatus> statuses, Collection<UUID> orderIds, BasketLineHandler handler);
+}
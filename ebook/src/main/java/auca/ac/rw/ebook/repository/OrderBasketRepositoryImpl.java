@@ -0,0 +1,52 @@
+// OrderBasketRepositoryImpl.java
+package auca.ac.rw.ebook.repository;
+
+import auca.ac.rw.ebook.model.EOrderStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.annotation.Transactional;
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.UUID;
+
+public class OrderBasketRepositoryImpl implements OrderBasketRepository {
+
+    private static final String BASKET_LINES_SQL =
+            "SELECT od.order_id, od.book_id FROM order_details od JOIN orders o ON o.order_id = od.order_id " +
+            "WHERE od.book_id IS NOT NULL AND o.status = ANY (?) ORDER BY od.order_id";
+
+    private static final String ORDER_BASKET_LINES_SQL =
+            "SELECT od.order_id, od.book_id FROM order_details od JOIN orders o ON o.order_id = od.order_id " +
+            "WHERE od.book_id IS NOT NULL AND o.status = ANY (?) AND od.order_id = ANY (?) ORDER BY od.order_id";
+
+    private static final int FETCH_SIZE = 10_000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Read-only transaction so the driver streams with the fetch size instead of buffering every row
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachBasketLine(Collection<EOrderStatus> statuses, BasketLineHandler handler) {
+        Object[] names = statuses.stream().map(Enum::name).toArray();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(BASKET_LINES_SQL);
+            statement.setArray(1, connection.createArrayOf("varchar", names));
+            statement.setFetchSize(FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) rs -> handler.line(rs.getObject(1, UUID.class), rs.getObject(2, UUID.class)));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachBasketLine(Collection<EOrderStatus> statuses, Collection<UUID> orderIds, BasketLineHandler handler) {
+        Object[] names = statuses.stream().map(Enum::name).toArray();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(ORDER_BASKET_LINES_SQL);
+            statement.setArray(1, connection.createArrayOf("varchar", names));
+            statement.setArray(2, connection.createArrayOf("uuid", orderIds.toArray()));
+            return statement;
+        }, (RowCallbackHandler) rs -> handler.line(rs.getObject(1, UUID.class), rs.getObject(2, UUID.class)));
+    }
+}
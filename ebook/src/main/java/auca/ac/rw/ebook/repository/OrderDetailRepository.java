@@ -1,13 +1,16 @@
 package auca.ac.rw.ebook.repository;
 
+import auca.ac.rw.ebook.dto.BookSale;
 import auca.ac.rw.ebook.model.OrderDetail;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
-public interface OrderDetailRepository extends JpaRepository<OrderDetail, UUID> {
+public interface OrderDetailRepository extends JpaRepository<OrderDetail, UUID>, OrderBasketRepository {
     
     // findBy... queries - FIXED: Using @Query for snake_case columns
     @Query("SELECT od FROM OrderDetail od WHERE od.order.order_id = :orderId")
@@ -30,13 +33,28 @@ public interface OrderDetailRepository extends JpaRepository<OrderDetail, UUID>
     @Query("SELECT SUM(od.quantity * od.price) FROM OrderDetail od WHERE od.order.order_id = :orderId")
     Double calculateOrderTotal(@Param("orderId") UUID orderId);
     
-    @Query("SELECT od.book, SUM(od.quantity) as totalSold FROM OrderDetail od GROUP BY od.book ORDER BY totalSold DESC")
-    List<Object[]> findBestSellingBooks();
+    // Leaderboard maintenance - order lines reduced to book, quantity and order date
+    @Query("SELECT new auca.ac.rw.ebook.dto.BookSale(od.detail_id, od.book.book_id, od.quantity, o.order_date) FROM OrderDetail od LEFT JOIN od.order o " +
+           "WHERE od.detail_id IN :detailIds AND od.book IS NOT NULL AND od.quantity IS NOT NULL")
+    List<BookSale> findSalesByDetailIdIn(@Param("detailIds") Collection<UUID> detailIds);
+    
+    @Query("SELECT new auca.ac.rw.ebook.dto.BookSale(od.detail_id, od.book.book_id, od.quantity, o.order_date) FROM OrderDetail od JOIN od.order o " +
+           "WHERE o.order_id = :orderId AND od.book IS NOT NULL AND od.quantity IS NOT NULL")
+    List<BookSale> findSalesByOrderId(@Param("orderId") UUID orderId);
+    
+    // Distinct books of one order, applied to the also-bought matrix when its status changes
+    @Query("SELECT DISTINCT od.book.book_id FROM OrderDetail od WHERE od.order.order_id = :orderId AND od.book IS NOT NULL")
+    List<UUID> findBookIdsByOrderId(@Param("orderId") UUID orderId);
+    
+    // Units per book and order day since the given date, for seeding the sliding windows
+    @Query("SELECT od.book.book_id, CAST(o.order_date AS LocalDate), SUM(od.quantity) FROM OrderDetail od JOIN od.order o " +
+           "WHERE od.book IS NOT NULL AND o.order_date >= :since GROUP BY od.book.book_id, CAST(o.order_date AS LocalDate)")
+    List<Object[]> findUnitsSoldPerBookAndDaySince(@Param("since") LocalDateTime since);
     
     @Query("SELECT od FROM OrderDetail od WHERE od.order.user.user_id = :userId")
     List<OrderDetail> findOrderDetailsByUserId(@Param("userId") UUID userId);
     
     // Statistics
-    @Query("SELECT SUM(od.quantity) FROM OrderDetail od WHERE od.book.book_id = :bookId")
-    Integer getTotalQuantitySoldForBook(@Param("bookId") UUID bookId);
+    @Query("SELECT od.book.book_id, SUM(od.quantity) FROM OrderDetail od WHERE od.book IS NOT NULL GROUP BY od.book.book_id")
+    List<Object[]> findUnitsSoldPerBook();
 }
\ No newline at end of file
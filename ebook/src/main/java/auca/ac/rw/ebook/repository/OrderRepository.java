@@ -1,34 +1,61 @@
 package auca.ac.rw.ebook.repository;
 
+import auca.ac.rw.ebook.dto.OrderView;
 import auca.ac.rw.ebook.model.Order;
 import auca.ac.rw.ebook.model.EOrderStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface OrderRepository extends JpaRepository<Order, UUID> {
     
+    // List endpoints read OrderViews - one statement, no entity graph, no user passwords
+    String VIEW_QUERY = "SELECT new auca.ac.rw.ebook.dto.OrderView(o.order_id, o.order_date, o.status, o.total_amount, " +
+            "u.user_id, u.full_name) FROM Order o LEFT JOIN o.user u";
+    
     // findBy... queries - FIXED: Using @Query for snake_case columns
     @Query("SELECT o FROM Order o WHERE o.user.user_id = :userId")
     List<Order> findByUserId(@Param("userId") UUID userId);
     
-    List<Order> findByStatus(EOrderStatus status);
+    @Query(VIEW_QUERY)
+    List<OrderView> findAllViews();
+    
+    @Query(VIEW_QUERY + " WHERE u.user_id = :userId")
+    List<OrderView> findViewsByUserId(@Param("userId") UUID userId);
+    
+    @Query(VIEW_QUERY + " WHERE o.status = :status")
+    List<OrderView> findViewsByStatus(@Param("status") EOrderStatus status);
     
-    @Query("SELECT o FROM Order o WHERE o.order_date BETWEEN :startDate AND :endDate")
-    List<Order> findByOrderDateBetween(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
+    @Query(VIEW_QUERY + " WHERE o.order_date BETWEEN :startDate AND :endDate")
+    List<OrderView> findViewsByOrderDateBetween(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
     
-    @Query("SELECT o FROM Order o WHERE o.total_amount > :amount")
-    List<Order> findByTotalAmountGreaterThan(@Param("amount") Double amount);
+    @Query(VIEW_QUERY + " WHERE o.total_amount > :amount")
+    List<OrderView> findViewsByTotalAmountGreaterThan(@Param("amount") Double amount);
     
     @Query("SELECT o FROM Order o WHERE o.user.user_id = :userId AND o.status = :status")
     Optional<Order> findByUserIdAndStatus(@Param("userId") UUID userId, @Param("status") EOrderStatus status);
     
+    // Status only, without loading the order; null when the order does not exist
+    @Query("SELECT o.status FROM Order o WHERE o.order_id = :orderId")
+    EOrderStatus findStatusById(@Param("orderId") UUID orderId);
+    
+    // Locks the order row so concurrent status changes apply one at a time; empty when the order does not exist
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o.order_id FROM Order o WHERE o.order_id = :orderId")
+    Optional<UUID> lockById(@Param("orderId") UUID orderId);
+    
     // existsBy... queries
     @Query("SELECT CASE WHEN COUNT(o) > 0 THEN true ELSE false END FROM Order o WHERE o.user.user_id = :userId AND o.status = :status")
     Boolean existsByUserIdAndStatus(@Param("userId") UUID userId, @Param("status") EOrderStatus status);
@@ -37,22 +64,47 @@ public interface OrderRepository extends JpaRepository<Order, UUID> {
     Boolean existsByUserId(@Param("userId") UUID userId);
     
     // Sorting and Pagination
-    @Query("SELECT o FROM Order o WHERE o.user.user_id = :userId")
-    Page<Order> findByUserId(@Param("userId") UUID userId, Pageable pageable);
+    @Query(value = VIEW_QUERY + " WHERE u.user_id = :userId",
+           countQuery = "SELECT COUNT(o) FROM Order o WHERE o.user.user_id = :userId")
+    Page<OrderView> findViewsByUserId(@Param("userId") UUID userId, Pageable pageable);
+    
+    @Query(value = VIEW_QUERY + " WHERE o.status = :status",
+           countQuery = "SELECT COUNT(o) FROM Order o WHERE o.status = :status")
+    Page<OrderView> findViewsByStatus(@Param("status") EOrderStatus status, Pageable pageable);
+    
+    @Query(value = VIEW_QUERY + " WHERE o.order_date BETWEEN :startDate AND :endDate",
+           countQuery = "SELECT COUNT(o) FROM Order o WHERE o.order_date BETWEEN :startDate AND :endDate")
+    Page<OrderView> findViewsByOrderDateBetween(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate, Pageable pageable);
+    
+    @Query(value = VIEW_QUERY, countQuery = "SELECT COUNT(o) FROM Order o")
+    Page<OrderView> findAllViews(Pageable pageable);
+    
+    // Keyset pagination ordered by (order_date, order_id) descending; orders without a date
+    // are paged separately by order_id and come last
+    @Query(VIEW_QUERY + " WHERE o.order_date IS NOT NULL ORDER BY o.order_date DESC, o.order_id DESC")
+    List<OrderView> findFirstByDateKeyset(Limit limit);
+    
+    @Query(VIEW_QUERY + " WHERE (o.order_date, o.order_id) < (:orderDate, :orderId) ORDER BY o.order_date DESC, o.order_id DESC")
+    List<OrderView> findNextByDateKeyset(@Param("orderDate") LocalDateTime orderDate, @Param("orderId") UUID orderId, Limit limit);
     
-    Page<Order> findByStatus(EOrderStatus status, Pageable pageable);
+    @Query(VIEW_QUERY + " WHERE o.order_date IS NULL ORDER BY o.order_id DESC")
+    List<OrderView> findFirstUndatedKeyset(Limit limit);
     
-    @Query("SELECT o FROM Order o WHERE o.order_date BETWEEN :startDate AND :endDate")
-    Page<Order> findByOrderDateBetween(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate, Pageable pageable);
+    @Query(VIEW_QUERY + " WHERE o.order_date IS NULL AND o.order_id < :orderId ORDER BY o.order_id DESC")
+    List<OrderView> findNextUndatedKeyset(@Param("orderId") UUID orderId, Limit limit);
     
-    Page<Order> findAll(Pageable pageable);
+    // Streaming export - read in fetch-size batches instead of one List, as the same views
+    // the list endpoints return, so no user entity (or password) is loaded
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    @Query(VIEW_QUERY + " ORDER BY o.order_date DESC, o.order_id DESC")
+    Stream<OrderView> streamAllForExport();
     
     // Custom queries
-    @Query("SELECT o FROM Order o WHERE o.user.user_id = :userId ORDER BY o.order_date DESC")
-    List<Order> findUserOrdersByDateDesc(@Param("userId") UUID userId);
+    @Query(VIEW_QUERY + " WHERE u.user_id = :userId ORDER BY o.order_date DESC")
+    List<OrderView> findUserOrdersByDateDesc(@Param("userId") UUID userId);
     
-    @Query("SELECT o FROM Order o WHERE o.status = 'PENDING' AND o.order_date < :date")
-    List<Order> findPendingOrdersOlderThan(@Param("date") LocalDateTime date);
+    @Query(VIEW_QUERY + " WHERE o.status = 'PENDING' AND o.order_date < :date")
+    List<OrderView> findPendingOrdersOlderThan(@Param("date") LocalDateTime date);
     
     @Query("SELECT SUM(o.total_amount) FROM Order o WHERE o.status = 'COMPLETED' AND o.order_date BETWEEN :startDate AND :endDate")
     Double calculateRevenueBetweenDates(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
@@ -61,8 +113,9 @@ public interface OrderRepository extends JpaRepository<Order, UUID> {
     Long countOrdersByStatus(@Param("status") EOrderStatus status);
     
     // FIXED: Corrected province query to traverse the location hierarchy
-    @Query("SELECT o FROM Order o JOIN o.user u JOIN u.location v JOIN v.parent c JOIN c.parent s JOIN s.parent d JOIN d.parent p WHERE p.name = :provinceName")
-    List<Order> findOrdersByProvince(@Param("provinceName") String provinceName);
+    @Query("SELECT new auca.ac.rw.ebook.dto.OrderView(o.order_id, o.order_date, o.status, o.total_amount, u.user_id, u.full_name) " +
+           "FROM Order o JOIN o.user u JOIN u.location v JOIN v.parent c JOIN c.parent s JOIN s.parent d JOIN d.parent p WHERE p.name = :provinceName")
+    List<OrderView> findOrdersByProvince(@Param("provinceName") String provinceName);
     
     // Statistics
     @Query("SELECT COUNT(o) FROM Order o")
@@ -1,25 +1,40 @@
 package auca.ac.rw.ebook.repository;
 
+import auca.ac.rw.ebook.dto.PaymentView;
 import auca.ac.rw.ebook.model.Payment;
 import auca.ac.rw.ebook.model.EPaymentStatus;
 import auca.ac.rw.ebook.model.EPaymentMethod;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface PaymentRepository extends JpaRepository<Payment, UUID> {
     
+    // List endpoints read PaymentViews - one statement, no entity graph, no user passwords
+    String VIEW_QUERY = "SELECT new auca.ac.rw.ebook.dto.PaymentView(p.payment_id, p.method, p.amount, p.status, p.payment_date, " +
+            "o.order_id, o.order_date, o.status, o.total_amount, u.user_id, u.full_name) " +
+            "FROM Payment p LEFT JOIN p.order o LEFT JOIN p.user u";
+    
     // findBy... queries - FIXED: Using @Query for snake_case columns
-    @Query("SELECT p FROM Payment p WHERE p.user.user_id = :userId")
-    List<Payment> findByUserId(@Param("userId") UUID userId);
+    @Query(VIEW_QUERY)
+    List<PaymentView> findAllViews();
+    
+    @Query(VIEW_QUERY + " WHERE u.user_id = :userId")
+    List<PaymentView> findViewsByUserId(@Param("userId") UUID userId);
+    
+    @Query(VIEW_QUERY + " WHERE p.status = :status")
+    List<PaymentView> findViewsByStatus(@Param("status") EPaymentStatus status);
     
-    List<Payment> findByStatus(EPaymentStatus status);
     List<Payment> findByMethod(EPaymentMethod method);
     
     @Query("SELECT p FROM Payment p WHERE p.payment_date BETWEEN :startDate AND :endDate")
@@ -39,8 +54,9 @@ public interface PaymentRepository extends JpaRepository<Payment, UUID> {
     Boolean existsByUserIdAndStatus(@Param("userId") UUID userId, @Param("status") EPaymentStatus status);
     
     // Sorting and Pagination
-    @Query("SELECT p FROM Payment p WHERE p.user.user_id = :userId")
-    Page<Payment> findByUserId(@Param("userId") UUID userId, Pageable pageable);
+    @Query(value = VIEW_QUERY + " WHERE u.user_id = :userId",
+           countQuery = "SELECT COUNT(p) FROM Payment p WHERE p.user.user_id = :userId")
+    Page<PaymentView> findViewsByUserId(@Param("userId") UUID userId, Pageable pageable);
     
     Page<Payment> findByStatus(EPaymentStatus status, Pageable pageable);
     
@@ -49,6 +65,26 @@ public interface PaymentRepository extends JpaRepository<Payment, UUID> {
     
     Page<Payment> findAll(Pageable pageable);
     
+    // Keyset pagination of a user's payments ordered by (payment_date, payment_id) descending;
+    // payments without a date are paged separately by payment_id and come last
+    @Query(VIEW_QUERY + " WHERE u.user_id = :userId AND p.payment_date IS NOT NULL ORDER BY p.payment_date DESC, p.payment_id DESC")
+    List<PaymentView> findFirstByUserIdKeyset(@Param("userId") UUID userId, Limit limit);
+    
+    @Query(VIEW_QUERY + " WHERE u.user_id = :userId AND (p.payment_date, p.payment_id) < (:paymentDate, :paymentId) ORDER BY p.payment_date DESC, p.payment_id DESC")
+    List<PaymentView> findNextByUserIdKeyset(@Param("userId") UUID userId, @Param("paymentDate") LocalDateTime paymentDate, @Param("paymentId") UUID paymentId, Limit limit);
+    
+    @Query(VIEW_QUERY + " WHERE u.user_id = :userId AND p.payment_date IS NULL ORDER BY p.payment_id DESC")
+    List<PaymentView> findFirstUndatedByUserIdKeyset(@Param("userId") UUID userId, Limit limit);
+    
+    @Query(VIEW_QUERY + " WHERE u.user_id = :userId AND p.payment_date IS NULL AND p.payment_id < :paymentId ORDER BY p.payment_id DESC")
+    List<PaymentView> findNextUndatedByUserIdKeyset(@Param("userId") UUID userId, @Param("paymentId") UUID paymentId, Limit limit);
+    
+    // Streaming export - read in fetch-size batches instead of one List, as the same views
+    // the list endpoints return, so no user entity (or password) is loaded
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    @Query(VIEW_QUERY + " ORDER BY p.payment_date DESC, p.payment_id DESC")
+    Stream<PaymentView> streamAllForExport();
+    
     // Custom queries
     @Query("SELECT p FROM Payment p WHERE p.user.user_id = :userId ORDER BY p.payment_date DESC")
     List<Payment> findUserPaymentsByDateDesc(@Param("userId") UUID userId);
@@ -0,0 +1,15 @@
+// ReviewMatrixRepository.java
+package auca.ac.rw.ebook.repository;
+
+import java.util.UUID;
+
+// Custom fragment of ReviewRepository for reading the user x book rating matrix
+public interface ReviewMatrixRepository {
+
+    interface RatingHandler {
+        void rating(UUID userId, UUID bookId, int rating);
+    }
+
+    // Streams every review that has a user, a book and a rating in 1..5
+    void forEachRating(RatingHandler handler);
+}
@@ -0,0 +1,32 @@
+// ReviewMatrixRepositoryImpl.java
+package auca.ac.rw.ebook.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.annotation.Transactional;
+import java.sql.PreparedStatement;
+import java.util.UUID;
+
+public class ReviewMatrixRepositoryImpl implements ReviewMatrixRepository {
+
+    private static final String RATINGS_SQL =
+            "SELECT user_id, book_id, rating FROM reviews " +
+            "WHERE user_id IS NOT NULL AND book_id IS NOT NULL AND rating BETWEEN 1 AND 5";
+
+    private static final int FETCH_SIZE = 10_000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Read-only transaction so the driver streams with the fetch size instead of buffering every row
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachRating(RatingHandler handler) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(RATINGS_SQL);
+            statement.setFetchSize(FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) rs -> handler.rating(rs.getObject(1, UUID.class), rs.getObject(2, UUID.class), rs.getInt(3)));
+    }
+}
@@ -1,32 +1,61 @@
 package auca.ac.rw.ebook.repository;
 
+import auca.ac.rw.ebook.dto.ReviewRating;
+import auca.ac.rw.ebook.dto.ReviewView;
 import auca.ac.rw.ebook.model.Review;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
-public interface ReviewRepository extends JpaRepository<Review, UUID> {
+public interface ReviewRepository extends JpaRepository<Review, UUID>, ReviewMatrixRepository {
+    
+    // List endpoints read ReviewViews - one statement, no entity graph, no user passwords
+    String VIEW_QUERY = "SELECT new auca.ac.rw.ebook.dto.ReviewView(r.review_id, r.rating, r.comment, r.created_at, " +
+            "u.user_id, u.full_name, b.book_id, b.title, b.author, b.price) " +
+            "FROM Review r LEFT JOIN r.user u LEFT JOIN r.book b";
     
     // findBy... queries - FIXED: Using @Query for snake_case columns
-    @Query("SELECT r FROM Review r WHERE r.user.user_id = :userId")
-    List<Review> findByUserId(@Param("userId") UUID userId);
+    @Query(VIEW_QUERY)
+    List<ReviewView> findAllViews();
+    
+    @Query(VIEW_QUERY + " WHERE u.user_id = :userId")
+    List<ReviewView> findViewsByUserId(@Param("userId") UUID userId);
     
-    @Query("SELECT r FROM Review r WHERE r.book.book_id = :bookId")
-    List<Review> findByBookId(@Param("bookId") UUID bookId);
+    @Query(VIEW_QUERY + " WHERE b.book_id = :bookId")
+    List<ReviewView> findViewsByBookId(@Param("bookId") UUID bookId);
     
-    List<Review> findByRating(Integer rating);
+    @Query(VIEW_QUERY + " WHERE r.rating = :rating")
+    List<ReviewView> findViewsByRating(@Param("rating") Integer rating);
     
-    @Query("SELECT r FROM Review r WHERE r.rating >= :minRating")
-    List<Review> findByRatingGreaterThanEqual(@Param("minRating") Integer minRating);
+    @Query(VIEW_QUERY + " WHERE r.rating >= :minRating")
+    List<ReviewView> findViewsByRatingGreaterThanEqual(@Param("minRating") Integer minRating);
     
     @Query("SELECT r FROM Review r WHERE r.user.user_id = :userId AND r.book.book_id = :bookId")
     Optional<Review> findByUserIdAndBookId(@Param("userId") UUID userId, @Param("bookId") UUID bookId);
     
+    // Locks the review row so concurrent updates and deletes apply their rating changes one at a time
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT new auca.ac.rw.ebook.dto.ReviewRating(r.book.book_id, r.rating) FROM Review r WHERE r.review_id = :reviewId")
+    Optional<ReviewRating> findRatingForUpdate(@Param("reviewId") UUID reviewId);
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT new auca.ac.rw.ebook.dto.ReviewRating(r.book.book_id, r.rating) FROM Review r WHERE r.user.user_id = :userId")
+    List<ReviewRating> findRatingsByUserIdForUpdate(@Param("userId") UUID userId);
+    
+    @Modifying
+    @Query("DELETE FROM Review r WHERE r.review_id = :reviewId")
+    int deleteByReviewId(@Param("reviewId") UUID reviewId);
+    
     // existsBy... queries
     @Query("SELECT CASE WHEN COUNT(r) > 0 THEN true ELSE false END FROM Review r WHERE r.user.user_id = :userId AND r.book.book_id = :bookId")
     Boolean existsByUserIdAndBookId(@Param("userId") UUID userId, @Param("bookId") UUID bookId);
@@ -35,33 +64,34 @@ public interface ReviewRepository extends JpaRepository<Review, UUID> {
     Boolean existsByBookId(@Param("bookId") UUID bookId);
     
     // Sorting and Pagination
-    @Query("SELECT r FROM Review r WHERE r.user.user_id = :userId")
-    Page<Review> findByUserId(@Param("userId") UUID userId, Pageable pageable);
+    @Query(value = VIEW_QUERY + " WHERE u.user_id = :userId",
+           countQuery = "SELECT COUNT(r) FROM Review r WHERE r.user.user_id = :userId")
+    Page<ReviewView> findViewsByUserId(@Param("userId") UUID userId, Pageable pageable);
     
-    @Query("SELECT r FROM Review r WHERE r.book.book_id = :bookId")
-    Page<Review> findByBookId(@Param("bookId") UUID bookId, Pageable pageable);
+    @Query(value = VIEW_QUERY + " WHERE b.book_id = :bookId",
+           countQuery = "SELECT COUNT(r) FROM Review r WHERE r.book.book_id = :bookId")
+    Page<ReviewView> findViewsByBookId(@Param("bookId") UUID bookId, Pageable pageable);
     
     Page<Review> findByRating(Integer rating, Pageable pageable);
     
-    Page<Review> findAll(Pageable pageable);
-    
-    // Custom queries
-    @Query("SELECT r FROM Review r WHERE r.book.book_id = :bookId ORDER BY r.rating DESC, r.created_at DESC")
-    List<Review> findBookReviewsSortedByRatingAndDate(@Param("bookId") UUID bookId);
+    @Query(value = VIEW_QUERY, countQuery = "SELECT COUNT(r) FROM Review r")
+    Page<ReviewView> findAllViews(Pageable pageable);
     
-    @Query("SELECT r.book, AVG(r.rating) as avgRating FROM Review r GROUP BY r.book HAVING AVG(r.rating) >= :minRating ORDER BY avgRating DESC")
-    List<Object[]> findBooksWithAverageRatingAbove(@Param("minRating") Double minRating);
+    // Keyset pagination ordered by (created_at, review_id) descending; reviews without a date
+    // are paged separately by review_id and come last
+    @Query(VIEW_QUERY + " WHERE r.created_at IS NOT NULL ORDER BY r.created_at DESC, r.review_id DESC")
+    List<ReviewView> findFirstByCreatedAtKeyset(Limit limit);
     
-    @Query("SELECT r.book, COUNT(r) as reviewCount FROM Review r GROUP BY r.book ORDER BY reviewCount DESC")
-    List<Object[]> findMostReviewedBooks();
+    @Query(VIEW_QUERY + " WHERE (r.created_at, r.review_id) < (:createdAt, :reviewId) ORDER BY r.created_at DESC, r.review_id DESC")
+    List<ReviewView> findNextByCreatedAtKeyset(@Param("createdAt") LocalDateTime createdAt, @Param("reviewId") UUID reviewId, Limit limit);
     
-    @Query("SELECT AVG(r.rating) FROM Review r WHERE r.book.book_id = :bookId")
-    Double calculateAverageRatingForBook(@Param("bookId") UUID bookId);
+    @Query(VIEW_QUERY + " WHERE r.created_at IS NULL ORDER BY r.review_id DESC")
+    List<ReviewView> findFirstUndatedKeyset(Limit limit);
     
-    @Query("SELECT COUNT(r) FROM Review r WHERE r.book.book_id = :bookId")
-    Long countReviewsForBook(@Param("bookId") UUID bookId);
+    @Query(VIEW_QUERY + " WHERE r.created_at IS NULL AND r.review_id < :reviewId ORDER BY r.review_id DESC")
+    List<ReviewView> findNextUndatedKeyset(@Param("reviewId") UUID reviewId, Limit limit);
     
-    // Statistics
-    @Query("SELECT r.rating, COUNT(r) FROM Review r GROUP BY r.rating ORDER BY r.rating DESC")
-    List<Object[]> countReviewsByRating();
+    // Custom queries
+    @Query(VIEW_QUERY + " WHERE b.book_id = :bookId ORDER BY r.rating DESC, r.created_at DESC")
+    List<ReviewView> findBookReviewsSortedByRatingAndDate(@Param("bookId") UUID bookId);
 }
\ No newline at end of file
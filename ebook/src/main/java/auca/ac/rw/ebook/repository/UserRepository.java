@@ -1,15 +1,19 @@
 package auca.ac.rw.ebook.repository;
 
+import auca.ac.rw.ebook.dto.UserSummary;
 import auca.ac.rw.ebook.model.User;
 import auca.ac.rw.ebook.model.EUserRole;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface UserRepository extends JpaRepository<User, UUID> {
     
@@ -33,6 +37,14 @@ public interface UserRepository extends JpaRepository<User, UUID> {
     @Query("SELECT CASE WHEN COUNT(u) > 0 THEN true ELSE false END FROM User u WHERE u.email = :email AND u.password = :password")
     Boolean existsByEmailAndPassword(@Param("email") String email, @Param("password") String password);
     
+    // Existence filter rebuild - keys only, read in fetch-size batches
+    @QueryHints({
+        @QueryHint(name = "org.hibernate.fetchSize", value = "5000"),
+        @QueryHint(name = "org.hibernate.readOnly", value = "true")
+    })
+    @Query("SELECT u.email, u.phone FROM User u")
+    Stream<Object[]> streamEmailsAndPhones();
+    
     // FIXED: Location-based queries - traverse hierarchy
     @Query("SELECT u FROM User u JOIN u.location v JOIN v.parent c JOIN c.parent s JOIN s.parent d JOIN d.parent p WHERE p.name = :provinceName")
     List<User> findByProvince(@Param("provinceName") String provinceName);
@@ -57,4 +69,7 @@ public interface UserRepository extends JpaRepository<User, UUID> {
     // Custom query to get user with location details
     @Query("SELECT u, l FROM User u JOIN u.location l WHERE u.user_id = :userId")
     Optional<Object[]> findUserWithLocationById(@Param("userId") UUID userId);
+    
+    @Query("SELECT new auca.ac.rw.ebook.dto.UserSummary(u.user_id, u.full_name) FROM User u WHERE u.user_id = :userId")
+    Optional<UserSummary> findSummaryById(@Param("userId") UUID userId);
 }
\ No newline at end of file
@@ -0,0 +1,492 @@
+// AlsoBoughtIndex.java
+package auca.ac.rw.ebook.service;
+
+import auca.ac.rw.ebook.model.EOrderStatus;
+import auca.ac.rw.ebook.repository.OrderDetailRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// "Customers also bought": for every book, how many completed or delivered orders also
+// contained each other book. Books get dense int ids and each row of the sparse
+// co-occurrence matrix is a primitive open-addressing int -> int table, so one directed
+// pair costs 8 bytes of table space at a load factor between 3/8 and 3/4 instead of a
+// boxed map entry. The build lays the baskets out as flat int arrays, inverts them into a
+// book -> baskets index and fills the rows on the fork/join pool; every task owns a
+// disjoint range of rows, so nothing is merged or locked.
+// Order status changes apply one basket incrementally. The periodic rebuild picks up
+// lines written to orders that were already completed and cascaded deletes. It reads in one
+// repeatable-read snapshot; orders whose basket changed meanwhile are tracked by id and
+// corrected from what the snapshot saw of them to their latest basket, so a change the
+// snapshot already contains is not counted twice.
+@Component
+public class AlsoBoughtIndex {
+
+    public static final int MAX_LIMIT = 50;
+
+    public static final Set<EOrderStatus> COUNTED_STATUSES = EnumSet.of(EOrderStatus.COMPLETED, EOrderStatus.DELIVERED);
+
+    public record Entry(UUID bookId, int orders) {}
+
+    @Autowired
+    private OrderDetailRepository orderDetailRepository;
+
+    // Bulk orders would add quadratically many pairs while saying little about taste
+    @Value("${ebook.also-bought.max-basket-size:100}")
+    private int maxBasketSize;
+
+    private Matrix matrix = new Matrix(new HashMap<>(), new ArrayList<>(), new ArrayList<>());
+
+    // Latest counted basket of each order changed while a rebuild is loading, null once removed
+    private Map<UUID, List<UUID>> pending;
+
+    private final TransactionTemplate snapshotTemplate;
+
+    // Metrics
+    private long basketsAdded;
+    private long basketsRemoved;
+    private long rebuilds;
+    private long lastRebuildMillis;
+    private long lastRebuildLines;
+    private long lastRebuildBaskets;
+    private long lastRebuildSkipped;
+
+    private record Matrix(Map<UUID, Integer> ids, List<UUID> books, List<Row> rows) {}
+
+    public static boolean counts(EOrderStatus status) {
+        return status != null && COUNTED_STATUSES.contains(status);
+    }
+
+    // The basket read and the lookup of the changed orders see the same snapshot
+    public AlsoBoughtIndex(PlatformTransactionManager transactionManager) {
+        this.snapshotTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTemplate.setReadOnly(true);
+    }
+
+    // Build
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${ebook.also-bought.rebuild-interval-ms:3600000}",
+               initialDelayString = "${ebook.also-bought.rebuild-interval-ms:3600000}")
+    public void rebuild() {
+        long start = System.nanoTime();
+        synchronized (this) {
+            pending = new HashMap<>();
+        }
+        try {
+            snapshotTemplate.executeWithoutResult(status -> load(start));
+        } finally {
+            synchronized (this) {
+                pending = null;
+            }
+        }
+    }
+
+    private void load(long start) {
+        Baskets baskets = new Baskets(maxBasketSize);
+        orderDetailRepository.forEachBasketLine(COUNTED_STATUSES, baskets::add);
+        baskets.close();
+        Matrix built = baskets.toMatrix();
+        synchronized (this) {
+            // Held across this lookup so no further change slips in before the swap
+            Map<UUID, List<UUID>> seen = new HashMap<>();
+            if (!pending.isEmpty()) {
+                orderDetailRepository.forEachBasketLine(COUNTED_STATUSES, pending.keySet(),
+                        (orderId, bookId) -> seen.computeIfAbsent(orderId, key -> new ArrayList<>()).add(bookId));
+            }
+            matrix = built;
+            seen.values().forEach(bookIds -> apply(bookIds, -1));
+            for (List<UUID> bookIds : pending.values()) {
+                if (bookIds != null) {
+                    apply(bookIds, 1);
+                }
+            }
+            rebuilds++;
+            lastRebuildMillis = (System.nanoTime() - start) / 1_000_000;
+            lastRebuildLines = baskets.lines;
+            lastRebuildBaskets = baskets.count;
+            lastRebuildSkipped = baskets.skipped;
+        }
+    }
+
+    // Incremental maintenance - called after an order entering or leaving a counted status committed
+    public synchronized void addBasket(UUID orderId, Collection<UUID> bookIds) {
+        basketsAdded++;
+        record(orderId, bookIds, 1);
+    }
+
+    public synchronized void removeBasket(UUID orderId, Collection<UUID> bookIds) {
+        basketsRemoved++;
+        record(orderId, bookIds, -1);
+    }
+
+    public synchronized void removeBook(UUID bookId) {
+        Integer id = matrix.ids().get(bookId);
+        if (id != null) {
+            matrix.rows().set(id, null);
+        }
+    }
+
+    // Queries - the most frequent neighbours first, ties by book id
+    public synchronized List<Entry> top(UUID bookId, int limit) {
+        Integer id = matrix.ids().get(bookId);
+        Row row = id != null ? matrix.rows().get(id) : null;
+        if (row == null) {
+            return List.of();
+        }
+        int[] top = row.top();
+        List<Entry> entries = new ArrayList<>(Math.min(limit, top.length));
+        for (int i = 0; i < top.length && entries.size() < limit; i++) {
+            entries.add(new Entry(matrix.books().get(top[i]), row.get(top[i])));
+        }
+        return entries;
+    }
+
+    // Metrics
+    public synchronized Map<String, Object> getMetrics() {
+        long rows = 0;
+        long pairs = 0;
+        long tableBytes = 0;
+        for (Row row : matrix.rows()) {
+            if (row != null) {
+                rows++;
+                pairs += row.size;
+                tableBytes += row.bytes();
+            }
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("books", matrix.books().size());
+        metrics.put("rows", rows);
+        metrics.put("pairs", pairs);
+        metrics.put("tableBytes", tableBytes);
+        metrics.put("basketsAdded", basketsAdded);
+        metrics.put("basketsRemoved", basketsRemoved);
+        metrics.put("rebuilds", rebuilds);
+        metrics.put("lastRebuildMillis", lastRebuildMillis);
+        metrics.put("lastRebuildLines", lastRebuildLines);
+        metrics.put("lastRebuildBaskets", lastRebuildBaskets);
+        metrics.put("lastRebuildSkipped", lastRebuildSkipped);
+        return metrics;
+    }
+
+    // Helper methods - callers hold the monitor
+    private void record(UUID orderId, Collection<UUID> bookIds, int delta) {
+        if (pending != null) {
+            pending.put(orderId, delta > 0 ? List.copyOf(bookIds) : null);
+        }
+        apply(bookIds, delta);
+    }
+
+    private void apply(Collection<UUID> bookIds, int delta) {
+        Set<UUID> distinct = new LinkedHashSet<>(bookIds);
+        if (distinct.size() < 2 || distinct.size() > maxBasketSize) {
+            return;
+        }
+        int[] ids = new int[distinct.size()];
+        int n = 0;
+        for (UUID bookId : distinct) {
+            Integer id = matrix.ids().get(bookId);
+            if (id == null) {
+                if (delta < 0) {
+                    continue;
+                }
+                id = matrix.books().size();
+                matrix.ids().put(bookId, id);
+                matrix.books().add(bookId);
+                matrix.rows().add(null);
+            }
+            ids[n++] = id;
+        }
+        for (int i = 0; i < n; i++) {
+            Row row = matrix.rows().get(ids[i]);
+            if (row == null) {
+                if (delta < 0) {
+                    continue;
+                }
+                row = new Row(n - 1);
+                matrix.rows().set(ids[i], row);
+            }
+            for (int j = 0; j < n; j++) {
+                if (j != i) {
+                    row.add(ids[j], delta);
+                }
+            }
+        }
+    }
+
+    // Order lines of the counted orders as flat arrays: basket b is items[starts[b]..starts[b + 1])
+    private static final class Baskets {
+        private final int maxSize;
+        private final Map<UUID, Integer> ids = new HashMap<>();
+        private final List<UUID> books = new ArrayList<>();
+        private int[] items = new int[1024];
+        private int length;
+        private int[] starts = new int[256];
+        private int count;
+        private UUID order;
+        private long lines;
+        private long skipped;
+
+        Baskets(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        void add(UUID orderId, UUID bookId) {
+            lines++;
+            if (!orderId.equals(order)) {
+                close();
+                order = orderId;
+            }
+            Integer id = ids.get(bookId);
+            if (id == null) {
+                id = books.size();
+                ids.put(bookId, id);
+                books.add(bookId);
+            }
+            if (length == items.length) {
+                items = Arrays.copyOf(items, length * 2);
+            }
+            items[length++] = id;
+        }
+
+        // Ends the open basket, keeping it only with 2 to maxSize distinct books
+        void close() {
+            int start = starts[count];
+            Arrays.sort(items, start, length);
+            int end = start;
+            for (int i = start; i < length; i++) {
+                if (i == start || items[i] != items[i - 1]) {
+                    items[end++] = items[i];
+                }
+            }
+            int size = end - start;
+            if (size < 2 || size > maxSize) {
+                if (size > maxSize) {
+                    skipped++;
+                }
+                length = start;
+                return;
+            }
+            length = end;
+            if (count + 2 > starts.length) {
+                starts = Arrays.copyOf(starts, starts.length * 2);
+            }
+            starts[++count] = length;
+        }
+
+        Matrix toMatrix() {
+            int n = books.size();
+            // Book -> baskets containing it, as a prefix-summed posting list
+            int[] postingStarts = new int[n + 1];
+            for (int i = 0; i < length; i++) {
+                postingStarts[items[i] + 1]++;
+            }
+            for (int b = 0; b < n; b++) {
+                postingStarts[b + 1] += postingStarts[b];
+            }
+            int[] postings = new int[length];
+            int[] fill = Arrays.copyOf(postingStarts, n);
+            for (int basket = 0; basket < count; basket++) {
+                for (int k = starts[basket]; k < starts[basket + 1]; k++) {
+                    postings[fill[items[k]]++] = basket;
+                }
+            }
+            Row[] rows = new Row[n];
+            int grain = Math.max(1, n / (ForkJoinPool.getCommonPoolParallelism() * 16));
+            ForkJoinPool.commonPool().invoke(new RowTask(this, postingStarts, postings, rows, 0, n, grain));
+            return new Matrix(ids, books, new ArrayList<>(Arrays.asList(rows)));
+        }
+    }
+
+    // Fills rows[from..to), splitting the range until it is at most grain books wide
+    private static final class RowTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Baskets baskets;
+        private final int[] postingStarts;
+        private final int[] postings;
+        private final Row[] rows;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        RowTask(Baskets baskets, int[] postingStarts, int[] postings, Row[] rows, int from, int to, int grain) {
+            this.baskets = baskets;
+            this.postingStarts = postingStarts;
+            this.postings = postings;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > grain) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RowTask(baskets, postingStarts, postings, rows, from, middle, grain),
+                          new RowTask(baskets, postingStarts, postings, rows, middle, to, grain));
+                return;
+            }
+            // Dense scratch counters, reset through the touched list after each row
+            int[] counts = new int[rows.length];
+            int[] touched = new int[rows.length];
+            for (int book = from; book < to; book++) {
+                int size = 0;
+                for (int p = postingStarts[book]; p < postingStarts[book + 1]; p++) {
+                    int basket = postings[p];
+                    for (int k = baskets.starts[basket]; k < baskets.starts[basket + 1]; k++) {
+                        int other = baskets.items[k];
+                        if (other != book && counts[other]++ == 0) {
+                            touched[size++] = other;
+                        }
+                    }
+                }
+                if (size == 0) {
+                    continue;
+                }
+                Row row = new Row(size);
+                for (int i = 0; i < size; i++) {
+                    row.add(touched[i], counts[touched[i]]);
+                    counts[touched[i]] = 0;
+                }
+                rows[book] = row;
+            }
+        }
+    }
+
+    // Open-addressing int -> int table with linear probing. Keys are stored as id + 1 so 0
+    // marks an empty slot; deletion shifts entries back instead of leaving tombstones.
+    private static final class Row {
+        private int[] keys;
+        private int[] values;
+        private int size;
+        // Neighbours by count, cached until the row changes
+        private int[] top;
+
+        Row(int expected) {
+            int capacity = 4;
+            while (capacity * 3 < expected * 4) {
+                capacity <<= 1;
+            }
+            keys = new int[capacity];
+            values = new int[capacity];
+        }
+
+        int get(int key) {
+            int mask = keys.length - 1;
+            for (int slot = hash(key) & mask; keys[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == key + 1) {
+                    return values[slot];
+                }
+            }
+            return 0;
+        }
+
+        void add(int key, int delta) {
+            top = null;
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            for (; keys[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == key + 1) {
+                    values[slot] += delta;
+                    if (values[slot] <= 0) {
+                        delete(slot);
+                    }
+                    return;
+                }
+            }
+            if (delta <= 0) {
+                return;
+            }
+            keys[slot] = key + 1;
+            values[slot] = delta;
+            if (++size * 4 > keys.length * 3) {
+                resize(keys.length * 2);
+            }
+        }
+
+        int[] top() {
+            if (top == null) {
+                // Count in the high half, inverted id in the low half: ascending order puts
+                // the best neighbour last and breaks ties towards the smaller id
+                long[] ranked = new long[size];
+                int n = 0;
+                for (int slot = 0; slot < keys.length; slot++) {
+                    if (keys[slot] != 0) {
+                        ranked[n++] = ((long) values[slot] << 32) | (Integer.MAX_VALUE - (keys[slot] - 1));
+                    }
+                }
+                Arrays.sort(ranked);
+                top = new int[Math.min(MAX_LIMIT, n)];
+                for (int i = 0; i < top.length; i++) {
+                    top[i] = Integer.MAX_VALUE - (int) ranked[n - 1 - i];
+                }
+            }
+            return top;
+        }
+
+        long bytes() {
+            return 16L * 4 + 8L * keys.length + (top != null ? 4L * top.length : 0);
+        }
+
+        private void delete(int slot) {
+            int mask = keys.length - 1;
+            int gap = slot;
+            for (int next = (gap + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+                // An entry may move back into the gap unless its home slot lies after the gap
+                int home = hash(keys[next] - 1) & mask;
+                if (((next - home) & mask) >= ((next - gap) & mask)) {
+                    keys[gap] = keys[next];
+                    values[gap] = values[next];
+                    gap = next;
+                }
+            }
+            keys[gap] = 0;
+            values[gap] = 0;
+            size--;
+        }
+
+        private void resize(int capacity) {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new int[capacity];
+            values = new int[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = hash(oldKeys[i] - 1) & mask;
+                    while (keys[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int hash(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,312 @@
+// BestSellerLeaderboard.java
+package auca.ac.rw.ebook.service;
+
+import auca.ac.rw.ebook.dto.BookSale;
+import auca.ac.rw.ebook.repository.OrderDetailRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+// Units sold per book for all time and for the last 7 and 30 days, each kept as a
+// sorted ranking plus a book-id index so one sale is an O(log n) update and the top N
+// is read straight off the front. The sliding windows are fed by per-day buckets that
+// are subtracted again when their day falls out of the window.
+// Seeded from order_details on startup and rebuilt periodically to pick up cascaded
+// deletes (orders removed together with their user, for example). The rebuild reads in one
+// repeatable-read snapshot. Order lines changed while it runs are tracked by id and corrected
+// from what the snapshot saw of them to their latest state, so a change the snapshot already
+// contains is not counted twice and one it missed is not lost.
+@Component
+public class BestSellerLeaderboard {
+
+    public static final int MAX_LIMIT = 100;
+
+    public enum Window {
+        ALL_TIME("all", 0),
+        LAST_7_DAYS("7d", 7),
+        LAST_30_DAYS("30d", 30);
+
+        private final String key;
+        private final int days;
+
+        Window(String key, int days) {
+            this.key = key;
+            this.days = days;
+        }
+
+        public static Window fromKey(String key) {
+            for (Window window : values()) {
+                if (window.key.equals(key.toLowerCase(Locale.ROOT))) {
+                    return window;
+                }
+            }
+            throw new IllegalArgumentException("Unknown window: " + key);
+        }
+    }
+
+    public record Entry(UUID bookId, long units) {}
+
+    @Autowired
+    private OrderDetailRepository orderDetailRepository;
+
+    private final Ranking allTime = new Ranking();
+    private final Ranking lastWeek = new Ranking();
+    private final Ranking lastMonth = new Ranking();
+
+    // Units per book for each of the last 30 days
+    private final Map<LocalDate, Map<UUID, Long>> days = new HashMap<>();
+    private LocalDate today = LocalDate.now();
+
+    // Latest state of each order line changed while a rebuild is loading, null once removed
+    private Map<UUID, BookSale> pending;
+    private Set<UUID> pendingRemovals;
+
+    private final TransactionTemplate snapshotTemplate;
+
+    // Metrics
+    private long salesRecorded;
+    private long rebuilds;
+    private long lastRebuildMillis;
+
+    // Both rebuild reads and the lookup of the changed lines see the same snapshot
+    public BestSellerLeaderboard(PlatformTransactionManager transactionManager) {
+        this.snapshotTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTemplate.setReadOnly(true);
+    }
+
+    // Build
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${ebook.best-sellers.rebuild-interval-ms:3600000}",
+               initialDelayString = "${ebook.best-sellers.rebuild-interval-ms:3600000}")
+    public void rebuild() {
+        long start = System.nanoTime();
+        synchronized (this) {
+            pending = new HashMap<>();
+            pendingRemovals = new HashSet<>();
+        }
+        try {
+            snapshotTemplate.executeWithoutResult(status -> load(start));
+        } finally {
+            synchronized (this) {
+                pending = null;
+                pendingRemovals = null;
+            }
+        }
+    }
+
+    private void load(long start) {
+        LocalDate day = LocalDate.now();
+        List<Object[]> totals = orderDetailRepository.findUnitsSoldPerBook();
+        List<Object[]> perDay = orderDetailRepository.findUnitsSoldPerBookAndDaySince(
+                day.minusDays(Window.LAST_30_DAYS.days - 1).atStartOfDay());
+        synchronized (this) {
+            // Held across this lookup so no further change slips in before the swap
+            List<BookSale> seen = pending.isEmpty()
+                    ? List.of()
+                    : orderDetailRepository.findSalesByDetailIdIn(pending.keySet());
+            allTime.clear();
+            lastWeek.clear();
+            lastMonth.clear();
+            days.clear();
+            today = day;
+            for (Object[] row : totals) {
+                allTime.add((UUID) row[0], ((Number) row[1]).longValue());
+            }
+            for (Object[] row : perDay) {
+                addToWindows((UUID) row[0], ((Number) row[2]).longValue(), (LocalDate) row[1]);
+            }
+            roll();
+            for (BookSale sale : seen) {
+                apply(sale, -sale.quantity());
+            }
+            for (BookSale sale : pending.values()) {
+                if (sale != null) {
+                    apply(sale, sale.quantity());
+                }
+            }
+            pendingRemovals.forEach(this::removeFromRankings);
+            rebuilds++;
+            lastRebuildMillis = (System.nanoTime() - start) / 1_000_000;
+        }
+    }
+
+    // Incremental maintenance - called after order lines were written or deleted
+    public synchronized void recordSales(Collection<BookSale> sales) {
+        roll();
+        for (BookSale sale : sales) {
+            record(sale, sale.quantity());
+            salesRecorded++;
+        }
+    }
+
+    public synchronized void removeSales(Collection<BookSale> sales) {
+        roll();
+        for (BookSale sale : sales) {
+            record(sale, -sale.quantity());
+        }
+    }
+
+    public synchronized void removeBook(UUID bookId) {
+        if (pendingRemovals != null) {
+            pendingRemovals.add(bookId);
+        }
+        removeFromRankings(bookId);
+    }
+
+    // Queries
+    public synchronized List<Entry> top(Window window, int limit) {
+        roll();
+        return ranking(window).top(Math.min(limit, MAX_LIMIT));
+    }
+
+    public synchronized long unitsSold(UUID bookId) {
+        return allTime.get(bookId);
+    }
+
+    // Metrics
+    public synchronized Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("booksAllTime", allTime.size());
+        metrics.put("booksLast7Days", lastWeek.size());
+        metrics.put("booksLast30Days", lastMonth.size());
+        metrics.put("dayBuckets", days.size());
+        metrics.put("salesRecorded", salesRecorded);
+        metrics.put("rebuilds", rebuilds);
+        metrics.put("lastRebuildMillis", lastRebuildMillis);
+        return metrics;
+    }
+
+    // Helper methods - callers hold the monitor
+    private void record(BookSale sale, long units) {
+        if (pending != null) {
+            pending.put(sale.detailId(), units > 0 ? sale : null);
+        }
+        apply(sale, units);
+    }
+
+    private void removeFromRankings(UUID bookId) {
+        allTime.remove(bookId);
+        lastWeek.remove(bookId);
+        lastMonth.remove(bookId);
+        for (Map<UUID, Long> units : days.values()) {
+            units.remove(bookId);
+        }
+    }
+
+    private Ranking ranking(Window window) {
+        return switch (window) {
+            case ALL_TIME -> allTime;
+            case LAST_7_DAYS -> lastWeek;
+            case LAST_30_DAYS -> lastMonth;
+        };
+    }
+
+    private void apply(BookSale sale, long delta) {
+        allTime.add(sale.bookId(), delta);
+        if (sale.soldAt() != null) {
+            addToWindows(sale.bookId(), delta, sale.soldAt().toLocalDate());
+        }
+    }
+
+    private void addToWindows(UUID bookId, long delta, LocalDate day) {
+        long age = ChronoUnit.DAYS.between(day, today);
+        if (age >= Window.LAST_30_DAYS.days) {
+            return;
+        }
+        days.computeIfAbsent(day, key -> new HashMap<>()).merge(bookId, delta, Long::sum);
+        lastMonth.add(bookId, delta);
+        if (age < Window.LAST_7_DAYS.days) {
+            lastWeek.add(bookId, delta);
+        }
+    }
+
+    // Moves the windows forward to the current day, subtracting the buckets that fell out
+    private void roll() {
+        LocalDate now = LocalDate.now();
+        while (today.isBefore(now)) {
+            today = today.plusDays(1);
+            Map<UUID, Long> leftWeek = days.get(today.minusDays(Window.LAST_7_DAYS.days));
+            if (leftWeek != null) {
+                leftWeek.forEach((bookId, units) -> lastWeek.add(bookId, -units));
+            }
+            Map<UUID, Long> leftMonth = days.remove(today.minusDays(Window.LAST_30_DAYS.days));
+            if (leftMonth != null) {
+                leftMonth.forEach((bookId, units) -> lastMonth.add(bookId, -units));
+            }
+        }
+    }
+
+    // Sorted set ordered by units descending, indexed by book id
+    private static final class Ranking {
+        private static final Comparator<Entry> ORDER = Comparator.comparingLong(Entry::units).reversed()
+                .thenComparing(Entry::bookId);
+
+        private final Map<UUID, Long> units = new HashMap<>();
+        private final TreeSet<Entry> order = new TreeSet<>(ORDER);
+
+        void add(UUID bookId, long delta) {
+            Long current = units.get(bookId);
+            long updated = (current != null ? current : 0) + delta;
+            if (current != null) {
+                order.remove(new Entry(bookId, current));
+            }
+            if (updated > 0) {
+                units.put(bookId, updated);
+                order.add(new Entry(bookId, updated));
+            } else {
+                units.remove(bookId);
+            }
+        }
+
+        void remove(UUID bookId) {
+            Long current = units.remove(bookId);
+            if (current != null) {
+                order.remove(new Entry(bookId, current));
+            }
+        }
+
+        long get(UUID bookId) {
+            return units.getOrDefault(bookId, 0L);
+        }
+
+        List<Entry> top(int limit) {
+            List<Entry> top = new ArrayList<>(Math.min(limit, order.size()));
+            Iterator<Entry> entries = order.iterator();
+            while (top.size() < limit && entries.hasNext()) {
+                top.add(entries.next());
+            }
+            return top;
+        }
+
+        int size() {
+            return units.size();
+        }
+
+        void clear() {
+            units.clear();
+            order.clear();
+        }
+    }
+}
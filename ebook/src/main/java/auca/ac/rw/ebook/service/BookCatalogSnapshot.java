@@ -0,0 +1,397 @@
+// BookCatalogSnapshot.java
+package auca.ac.rw.ebook.service;
+
+import auca.ac.rw.ebook.model.Book;
+import auca.ac.rw.ebook.model.Category;
+import auca.ac.rw.ebook.repository.BookRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// In-process copy of the whole catalog used to serve reads without a database round trip.
+// Writers patch single entries under a lock; readers get an immutable list that is
+// rebuilt once after a burst of changes and then shared until the next change.
+// Per-category book and in-stock counts are adjusted under the same lock from the
+// replaced and the new entry, so they always agree with the copy.
+// Entries are detached copies, never the entities handed in: those may still belong to a
+// request's persistence context, where a later change would leak into every reader.
+// The books touched by the most recent versions are kept in a short change log, so derived
+// read models can patch their own copies instead of rebuilding them on every version.
+// Writes this node did not make (other nodes, plain SQL) are picked up by a periodic refresh
+// that re-reads only the rows whose updated_at moved; a row count that no longer matches
+// means rows were deleted elsewhere, and falls back to a full load.
+@Component
+public class BookCatalogSnapshot {
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${ebook.catalog.refresh-overlap-seconds:60}")
+    private long refreshOverlapSeconds;
+
+    private final Object writeLock = new Object();
+
+    // null until the first load from the database
+    private volatile Map<UUID, Book> booksById;
+
+    // Immutable list handed out to readers; null means "rebuild from booksById"
+    private volatile List<Book> view;
+
+    private final AtomicLong version = new AtomicLong();
+
+    // Newest updated_at read from the database. Guarded by writeLock.
+    private LocalDateTime lastSeen;
+
+    // One entry per version, oldest first; bookIds is null for a full load. Guarded by writeLock.
+    private static final int CHANGE_LOG_SIZE = 1024;
+    private final ArrayDeque<Changes> changeLog = new ArrayDeque<>();
+
+    // The books changed after some earlier version, up to and including version
+    public record Changes(long version, Set<UUID> bookIds) {}
+
+    // Replaced as a whole on load; entries are only changed under writeLock
+    private volatile Map<UUID, CategoryCount> categoryCounts = new ConcurrentHashMap<>();
+
+    // Metrics
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong databaseLoads = new AtomicLong();
+    private final AtomicLong viewRebuilds = new AtomicLong();
+    private final AtomicLong patches = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong refreshedBooks = new AtomicLong();
+    private volatile long lastLoadMillis;
+    private volatile long lastViewRebuildMicros;
+    private volatile LocalDateTime lastLoadedAt;
+
+    // Read operations
+    public List<Book> getAllBooks() {
+        hits.incrementAndGet();
+        List<Book> current = view;
+        if (current == null) {
+            current = rebuildView();
+        }
+        return current;
+    }
+
+    public Optional<Book> getBook(UUID bookId) {
+        hits.incrementAndGet();
+        return Optional.ofNullable(books().get(bookId));
+    }
+
+    // Resolves ids in the given order, skipping books that no longer exist
+    public List<Book> getBooks(Collection<UUID> bookIds) {
+        hits.incrementAndGet();
+        Map<UUID, Book> current = books();
+        List<Book> result = new ArrayList<>(bookIds.size());
+        for (UUID bookId : bookIds) {
+            Book book = current.get(bookId);
+            if (book != null) {
+                result.add(book);
+            }
+        }
+        return result;
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    // Null when the log no longer reaches back to since or a full load happened after it
+    public Changes changesSince(long since) {
+        synchronized (writeLock) {
+            long current = version.get();
+            Set<UUID> bookIds = new HashSet<>();
+            if (current == since) {
+                return new Changes(current, bookIds);
+            }
+            Changes oldest = changeLog.peekFirst();
+            if (oldest == null || oldest.version() > since + 1) {
+                return null;
+            }
+            for (Changes changes : changeLog) {
+                if (changes.version() > since) {
+                    if (changes.bookIds() == null) {
+                        return null;
+                    }
+                    bookIds.addAll(changes.bookIds());
+                }
+            }
+            return new Changes(current, bookIds);
+        }
+    }
+
+    public int countBooksInCategory(UUID categoryId) {
+        books();
+        CategoryCount count = categoryCounts.get(categoryId);
+        return count != null ? count.books : 0;
+    }
+
+    public int countInStockBooksInCategory(UUID categoryId) {
+        books();
+        CategoryCount count = categoryCounts.get(categoryId);
+        return count != null ? count.inStock : 0;
+    }
+
+    // Write operations - called by BookService after the database write succeeded
+    public void put(Book written) {
+        synchronized (writeLock) {
+            Book book = copyOf(written);
+            replaced(books().put(book.getBook_id(), book), book);
+            changed(Set.of(book.getBook_id()));
+        }
+    }
+
+    public void putAll(Collection<Book> written) {
+        synchronized (writeLock) {
+            Map<UUID, Book> current = books();
+            Set<UUID> bookIds = new HashSet<>();
+            for (Book book : written) {
+                Book copy = copyOf(book);
+                replaced(current.put(copy.getBook_id(), copy), copy);
+                bookIds.add(copy.getBook_id());
+            }
+            changed(bookIds);
+        }
+    }
+
+    // Points the books of a renamed category at the new row; their counts stay where they are
+    public void categoryChanged(Category category) {
+        synchronized (writeLock) {
+            Category copy = category.copy();
+            Map<UUID, Book> current = books();
+            Set<UUID> bookIds = new HashSet<>();
+            for (Book book : current.values()) {
+                if (book.getCategory() != null && category.getCategory_id().equals(book.getCategory().getCategory_id())) {
+                    current.put(book.getBook_id(), book.copy(copy));
+                    bookIds.add(book.getBook_id());
+                }
+            }
+            if (!bookIds.isEmpty()) {
+                changed(bookIds);
+            }
+        }
+    }
+
+    public void remove(UUID bookId) {
+        synchronized (writeLock) {
+            Book removed = books().remove(bookId);
+            if (removed != null) {
+                replaced(removed, null);
+                changed(Set.of(bookId));
+            }
+        }
+    }
+
+    // Re-reads a book that was just written. The written instance may still be managed and hold
+    // the category exactly as the client sent it (often only an id), so it is detached first.
+    public Optional<Book> refresh(Book written) {
+        if (entityManager.contains(written)) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                entityManager.flush();
+            }
+            entityManager.detach(written);
+        }
+        return refresh(written.getBook_id());
+    }
+
+    // Re-reads one book (with its category) after a write that may have changed it
+    public Optional<Book> refresh(UUID bookId) {
+        Optional<Book> book = bookRepository.findByIdWithCategory(bookId);
+        if (book.isPresent()) {
+            put(book.get());
+        } else {
+            remove(bookId);
+        }
+        return book;
+    }
+
+    public void reload() {
+        synchronized (writeLock) {
+            loadFromDatabase();
+        }
+    }
+
+    // Patches in rows written since the last load or refresh. Rows are read again for an
+    // overlap window, since now() is the transaction start and a slow transaction can commit
+    // rows stamped before ones already seen; entries that are already current are skipped.
+    @Scheduled(initialDelayString = "${ebook.catalog.refresh-interval-ms:5000}",
+               fixedDelayString = "${ebook.catalog.refresh-interval-ms:5000}")
+    public void refreshChanged() {
+        LocalDateTime since;
+        synchronized (writeLock) {
+            if (booksById == null) {
+                return;
+            }
+            since = lastSeen != null ? lastSeen.minusSeconds(refreshOverlapSeconds) : null;
+        }
+        // With nothing loaded yet the row count alone tells whether rows appeared
+        List<Book> rows = since != null ? bookRepository.findUpdatedSinceWithCategory(since) : List.of();
+        long rowCount = bookRepository.countTotalBooks();
+        synchronized (writeLock) {
+            Map<UUID, Book> current = books();
+            Set<UUID> bookIds = new HashSet<>();
+            for (Book row : rows) {
+                seen(row);
+                Book cached = current.get(row.getBook_id());
+                if (cached != null && cached.getUpdated_at() != null
+                        && !cached.getUpdated_at().isBefore(row.getUpdated_at())) {
+                    continue;
+                }
+                Book copy = copyOf(row);
+                replaced(current.put(copy.getBook_id(), copy), copy);
+                bookIds.add(copy.getBook_id());
+            }
+            refreshes.incrementAndGet();
+            if (current.size() != rowCount) {
+                loadFromDatabase();
+            } else if (!bookIds.isEmpty()) {
+                changed(bookIds);
+                refreshedBooks.addAndGet(bookIds.size());
+            }
+        }
+    }
+
+    // Metrics
+    public Map<String, Object> getMetrics() {
+        Map<UUID, Book> current = booksById;
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("size", current != null ? current.size() : 0);
+        metrics.put("version", version.get());
+        metrics.put("hits", hits.get());
+        metrics.put("databaseLoads", databaseLoads.get());
+        metrics.put("lastLoadMillis", lastLoadMillis);
+        metrics.put("lastLoadedAt", lastLoadedAt);
+        metrics.put("patches", patches.get());
+        metrics.put("refreshes", refreshes.get());
+        metrics.put("refreshedBooks", refreshedBooks.get());
+        metrics.put("viewRebuilds", viewRebuilds.get());
+        metrics.put("lastViewRebuildMicros", lastViewRebuildMicros);
+        return metrics;
+    }
+
+    // Helper methods
+    private Map<UUID, Book> books() {
+        Map<UUID, Book> current = booksById;
+        if (current == null) {
+            synchronized (writeLock) {
+                current = booksById;
+                if (current == null) {
+                    current = loadFromDatabase();
+                }
+            }
+        }
+        return current;
+    }
+
+    private Map<UUID, Book> loadFromDatabase() {
+        long start = System.nanoTime();
+        List<Book> books = bookRepository.findAllWithCategory();
+        Map<UUID, Book> loaded = new ConcurrentHashMap<>(Math.max(16, books.size() * 4 / 3));
+        Map<UUID, CategoryCount> counts = new ConcurrentHashMap<>();
+        Map<UUID, Category> categories = new HashMap<>();
+        lastSeen = null;
+        for (Book book : books) {
+            seen(book);
+            Book copy = copyOf(book, categories);
+            loaded.put(copy.getBook_id(), copy);
+            count(counts, copy, 1);
+        }
+        booksById = loaded;
+        categoryCounts = counts;
+        view = null;
+        logChange(version.incrementAndGet(), null);
+        databaseLoads.incrementAndGet();
+        lastLoadMillis = (System.nanoTime() - start) / 1_000_000;
+        lastLoadedAt = LocalDateTime.now();
+        return loaded;
+    }
+
+    private void seen(Book book) {
+        LocalDateTime updatedAt = book.getUpdated_at();
+        if (updatedAt != null && (lastSeen == null || updatedAt.isAfter(lastSeen))) {
+            lastSeen = updatedAt;
+        }
+    }
+
+    private static Book copyOf(Book book) {
+        return book.copy(book.getCategory() != null ? book.getCategory().copy() : null);
+    }
+
+    // Books of one category share one copy of it
+    private static Book copyOf(Book book, Map<UUID, Category> categories) {
+        Category category = book.getCategory();
+        if (category == null || category.getCategory_id() == null) {
+            return copyOf(book);
+        }
+        return book.copy(categories.computeIfAbsent(category.getCategory_id(), id -> category.copy()));
+    }
+
+    private void replaced(Book previous, Book current) {
+        count(categoryCounts, previous, -1);
+        count(categoryCounts, current, 1);
+    }
+
+    private static void count(Map<UUID, CategoryCount> counts, Book book, int delta) {
+        if (book == null || book.getCategory() == null || book.getCategory().getCategory_id() == null) {
+            return;
+        }
+        CategoryCount count = counts.computeIfAbsent(book.getCategory().getCategory_id(), key -> new CategoryCount());
+        count.books += delta;
+        if (book.getStock_quantity() != null && book.getStock_quantity() > 0) {
+            count.inStock += delta;
+        }
+    }
+
+    private void changed(Set<UUID> bookIds) {
+        view = null;
+        logChange(version.incrementAndGet(), bookIds);
+        patches.incrementAndGet();
+    }
+
+    private void logChange(long changedVersion, Set<UUID> bookIds) {
+        changeLog.addLast(new Changes(changedVersion, bookIds));
+        if (changeLog.size() > CHANGE_LOG_SIZE) {
+            changeLog.removeFirst();
+        }
+    }
+
+    private List<Book> rebuildView() {
+        synchronized (writeLock) {
+            List<Book> current = view;
+            if (current == null) {
+                long start = System.nanoTime();
+                current = List.copyOf(books().values());
+                view = current;
+                viewRebuilds.incrementAndGet();
+                lastViewRebuildMicros = (System.nanoTime() - start) / 1_000;
+            }
+            return current;
+        }
+    }
+
+    private static final class CategoryCount {
+        volatile int books;
+        volatile int inStock;
+    }
+}
@@ -0,0 +1,118 @@
+// BookDetailService.java
+package auca.ac.rw.ebook.service;
+
+import auca.ac.rw.ebook.dto.BookDetail;
+import auca.ac.rw.ebook.model.Book;
+import auca.ac.rw.ebook.repository.BookDetailRepository;
+import auca.ac.rw.ebook.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Builds the book page from the catalog snapshot plus one query for sales and reviews.
+// Only that query's result is cached per book; the book and its rating summary always come
+// from the snapshot, so stock, price and rating changes show up without touching this cache.
+// Review and order-detail writes evict the affected books.
+@Service
+public class BookDetailService {
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookCatalogSnapshot catalogSnapshot;
+
+    @Value("${ebook.book-detail.review-page-size:10}")
+    private int reviewPageSize;
+
+    @Value("${ebook.book-detail.cache-size:10000}")
+    private int cacheSize;
+
+    @Value("${ebook.book-detail.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private final Map<UUID, Entry> cache = new ConcurrentHashMap<>();
+
+    // Bumped on every eviction; a load that raced with one is not cached
+    private final AtomicLong evictions = new AtomicLong();
+
+    // Metrics
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private record Entry(BookDetailRepository.SalesAndReviews rows, long loadedAtNanos) {}
+
+    @Transactional(readOnly = true)
+    public Optional<BookDetail> getBookDetail(UUID bookId) {
+        Optional<Book> book = catalogSnapshot.getBook(bookId);
+        if (book.isEmpty()) {
+            return Optional.empty();
+        }
+        Entry entry = cache.get(bookId);
+        if (entry != null && System.nanoTime() - entry.loadedAtNanos() < TimeUnit.SECONDS.toNanos(ttlSeconds)) {
+            hits.incrementAndGet();
+            return Optional.of(BookDetail.of(book.get(), entry.rows().unitsSold(), entry.rows().reviews()));
+        }
+        misses.incrementAndGet();
+        long stamp = evictions.get();
+        BookDetailRepository.SalesAndReviews rows = bookRepository.loadSalesAndReviews(bookId, reviewPageSize);
+        if (stamp == evictions.get()) {
+            if (cache.size() >= cacheSize) {
+                evictOne();
+            }
+            cache.put(bookId, new Entry(rows, System.nanoTime()));
+        }
+        return Optional.of(BookDetail.of(book.get(), rows.unitsSold(), rows.reviews()));
+    }
+
+    // Called after review or order-detail writes. Inside a transaction the entry is
+    // dropped again after commit, so a reader cannot re-cache the old rows in between.
+    public void evict(UUID bookId) {
+        if (bookId == null) {
+            return;
+        }
+        remove(bookId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    remove(bookId);
+                }
+            });
+        }
+    }
+
+    // Metrics
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("size", cache.size());
+        metrics.put("hits", hits.get());
+        metrics.put("misses", misses.get());
+        metrics.put("evictions", evictions.get());
+        return metrics;
+    }
+
+    // Helper methods
+    private void remove(UUID bookId) {
+        evictions.incrementAndGet();
+        cache.remove(bookId);
+    }
+
+    private void evictOne() {
+        Iterator<UUID> keys = cache.keySet().iterator();
+        if (keys.hasNext()) {
+            cache.remove(keys.next());
+        }
+    }
+}
@@ -0,0 +1,399 @@
+// BookFacetIndex.java
+package auca.ac.rw.ebook.service;
+
+import auca.ac.rw.ebook.dto.BookFacets;
+import auca.ac.rw.ebook.dto.BookSearchCriteria;
+import auca.ac.rw.ebook.model.Book;
+import auca.ac.rw.ebook.model.Category;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.UUID;
+
+// Column-oriented copy of the catalog snapshot for faceted search.
+// When the snapshot version moves, the books it reports as changed are patched into a copy of
+// the columns: the arrays are copied as they are and only the changed rows are derived again,
+// new books are appended and removed ones left as empty rows. The columns are rebuilt from
+// scratch only after a full reload, when the change log no longer reaches back far enough, or
+// once a quarter of the rows are empty. One pass over them then filters the books and fills
+// every facet counter. Filters mirror BookSpecifications.
+@Component
+public class BookFacetIndex {
+
+    @Autowired
+    private BookCatalogSnapshot catalogSnapshot;
+
+    private volatile Columns columns;
+
+    // Book id -> row and category id -> ordinal of the latest columns; only used under the monitor
+    private final Map<UUID, Integer> rows = new HashMap<>();
+    private final Map<UUID, Integer> categoryOrdinals = new HashMap<>();
+
+    // Metrics
+    private long rebuilds;
+    private long patches;
+
+    // Never changed below size once published. A patch may append past the size of the columns it
+    // was copied from while still sharing their arrays, since those readers never look that far.
+    private static final class Columns {
+        final long version;
+        int size;
+        int emptyRows;
+        Book[] books;
+        String[] titles;
+        String[] authors;
+        long[] priceCents;
+        boolean[] inStock;
+        int[] categories;
+        UUID[] categoryIds;
+        String[] categoryNames;
+        private boolean copied;
+
+        Columns(long version, int capacity) {
+            this.version = version;
+            books = new Book[capacity];
+            titles = new String[capacity];
+            authors = new String[capacity];
+            priceCents = new long[capacity];
+            inStock = new boolean[capacity];
+            categories = new int[capacity];
+            categoryIds = new UUID[0];
+            categoryNames = new String[0];
+        }
+
+        Columns(long version, Columns previous) {
+            this.version = version;
+            size = previous.size;
+            emptyRows = previous.emptyRows;
+            books = previous.books;
+            titles = previous.titles;
+            authors = previous.authors;
+            priceCents = previous.priceCents;
+            inStock = previous.inStock;
+            categories = previous.categories;
+            categoryIds = previous.categoryIds;
+            categoryNames = previous.categoryNames;
+        }
+
+        int categoryOrdinal(UUID categoryId) {
+            for (int c = 0; c < categoryIds.length; c++) {
+                if (categoryIds[c].equals(categoryId)) {
+                    return c;
+                }
+            }
+            return -2;
+        }
+
+        // Rows below the size of the previous columns are still visible to its readers
+        void copyRows(int capacity) {
+            books = Arrays.copyOf(books, capacity);
+            titles = Arrays.copyOf(titles, capacity);
+            authors = Arrays.copyOf(authors, capacity);
+            priceCents = Arrays.copyOf(priceCents, capacity);
+            inStock = Arrays.copyOf(inStock, capacity);
+            categories = Arrays.copyOf(categories, capacity);
+            copied = true;
+        }
+
+        void set(int row, Book book, int category) {
+            if (!copied) {
+                copyRows(books.length);
+            }
+            fill(row, book, category);
+        }
+
+        int append(Book book, int category) {
+            if (size == books.length) {
+                copyRows(Math.max(16, size + (size >> 1)));
+            }
+            fill(size, book, category);
+            return size++;
+        }
+
+        void clear(int row) {
+            if (!copied) {
+                copyRows(books.length);
+            }
+            books[row] = null;
+            titles[row] = null;
+            authors[row] = null;
+            emptyRows++;
+        }
+
+        private void fill(int row, Book book, int category) {
+            books[row] = book;
+            titles[row] = lower(book.getTitle());
+            authors[row] = lower(book.getAuthor());
+            priceCents[row] = book.getPrice() != null ? cents(book.getPrice(), RoundingMode.HALF_UP) : Long.MIN_VALUE;
+            inStock[row] = book.getStock_quantity() != null && book.getStock_quantity() > 0;
+            categories[row] = category;
+        }
+    }
+
+    // priceBounds are the bucket edges, e.g. 5,10,20 gives 0-5, 5-10, 10-20 and 20+;
+    // a bucket includes its lower edge and excludes its upper one
+    public BookFacets search(BookSearchCriteria criteria, List<BigDecimal> priceBounds, int page, int size, Sort sort) {
+        Columns current = columns();
+        Comparator<Integer> order = comparator(current, sort);
+        int n = current.size;
+
+        String keyword = isBlank(criteria.keyword()) ? null : lower(criteria.keyword().trim());
+        String author = isBlank(criteria.author()) ? null : lower(criteria.author().trim());
+        int category = criteria.categoryId() != null ? current.categoryOrdinal(criteria.categoryId()) : -3;
+        long minCents = criteria.minPrice() != null ? cents(criteria.minPrice(), RoundingMode.CEILING) : Long.MIN_VALUE;
+        long maxCents = criteria.maxPrice() != null ? cents(criteria.maxPrice(), RoundingMode.FLOOR) : Long.MAX_VALUE;
+        Boolean stock = criteria.inStock();
+        long[] bounds = priceBounds.stream()
+                .mapToLong(bound -> cents(bound, RoundingMode.HALF_UP))
+                .sorted().distinct().toArray();
+
+        long[] categoryCounts = new long[current.categoryIds.length + 1];
+        long[] priceCounts = new long[bounds.length + 1];
+        long[] stockCounts = new long[2];
+        int[] matches = new int[Math.min(n, 1024)];
+        int matched = 0;
+
+        // A book only feeds a facet when it passes every other filter, so books
+        // failing two or more of the cheap filters are skipped before the text match
+        for (int i = 0; i < n; i++) {
+            if (current.books[i] == null) {
+                continue;
+            }
+            boolean inCategory = category == -3 || current.categories[i] == category;
+            long price = current.priceCents[i];
+            boolean inPrice = price == Long.MIN_VALUE
+                    ? minCents == Long.MIN_VALUE && maxCents == Long.MAX_VALUE
+                    : price >= minCents && price <= maxCents;
+            boolean inAvailability = stock == null || current.inStock[i] == stock;
+            int failed = (inCategory ? 0 : 1) + (inPrice ? 0 : 1) + (inAvailability ? 0 : 1);
+            if (failed > 1) {
+                continue;
+            }
+            if (keyword != null && !current.titles[i].contains(keyword) && !current.authors[i].contains(keyword)) {
+                continue;
+            }
+            if (author != null && !current.authors[i].contains(author)) {
+                continue;
+            }
+            if (inPrice && inAvailability) {
+                categoryCounts[current.categories[i] + 1]++;
+            }
+            if (inCategory && inAvailability && price != Long.MIN_VALUE) {
+                priceCounts[bucket(bounds, price)]++;
+            }
+            if (inCategory && inPrice) {
+                stockCounts[current.inStock[i] ? 1 : 0]++;
+            }
+            if (failed == 0) {
+                if (matched == matches.length) {
+                    matches = Arrays.copyOf(matches, Math.min(n, matched * 2));
+                }
+                matches[matched++] = i;
+            }
+        }
+
+        return new BookFacets(
+                page(current, matches, matched, order, page, size),
+                page, size, matched,
+                categoryFacet(current, categoryCounts, category),
+                priceFacet(bounds, priceCounts),
+                List.of(new BookFacets.FacetCount("true", "In stock", stockCounts[1]),
+                        new BookFacets.FacetCount("false", "Out of stock", stockCounts[0])));
+    }
+
+    public synchronized Map<String, Object> getMetrics() {
+        Columns current = columns;
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("version", current != null ? current.version : null);
+        metrics.put("rows", current != null ? current.size : 0);
+        metrics.put("emptyRows", current != null ? current.emptyRows : 0);
+        metrics.put("rebuilds", rebuilds);
+        metrics.put("patches", patches);
+        return metrics;
+    }
+
+    // Helper methods
+    private Columns columns() {
+        Columns current = columns;
+        long version = catalogSnapshot.getVersion();
+        if (current == null || current.version != version) {
+            synchronized (this) {
+                current = columns;
+                if (current == null || current.version != version) {
+                    BookCatalogSnapshot.Changes changes = current != null && current.emptyRows * 4 <= current.size
+                            ? catalogSnapshot.changesSince(current.version) : null;
+                    current = changes != null ? patch(current, changes) : rebuild();
+                    columns = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    // Callers hold the monitor. The books are read after the version, so a concurrent change
+    // is patched in once more on the next search.
+    private Columns patch(Columns current, BookCatalogSnapshot.Changes changes) {
+        Columns next = new Columns(changes.version(), current);
+        for (UUID bookId : changes.bookIds()) {
+            Optional<Book> book = catalogSnapshot.getBook(bookId);
+            Integer row = rows.get(bookId);
+            if (book.isEmpty()) {
+                if (row != null) {
+                    next.clear(row);
+                    rows.remove(bookId);
+                }
+            } else if (row != null) {
+                next.set(row, book.get(), categoryOrdinal(next, book.get().getCategory()));
+            } else {
+                rows.put(bookId, next.append(book.get(), categoryOrdinal(next, book.get().getCategory())));
+            }
+        }
+        patches++;
+        return next;
+    }
+
+    private Columns rebuild() {
+        long version = catalogSnapshot.getVersion();
+        List<Book> books = catalogSnapshot.getAllBooks();
+        Columns next = new Columns(version, books.size());
+        rows.clear();
+        categoryOrdinals.clear();
+        for (Book book : books) {
+            rows.put(book.getBook_id(), next.append(book, categoryOrdinal(next, book.getCategory())));
+        }
+        rebuilds++;
+        return next;
+    }
+
+    // Adds categories the columns have not seen yet and picks up renames of known ones
+    private int categoryOrdinal(Columns next, Category category) {
+        if (category == null || category.getCategory_id() == null) {
+            return -1;
+        }
+        Integer ordinal = categoryOrdinals.get(category.getCategory_id());
+        if (ordinal == null) {
+            ordinal = next.categoryIds.length;
+            categoryOrdinals.put(category.getCategory_id(), ordinal);
+            next.categoryIds = Arrays.copyOf(next.categoryIds, ordinal + 1);
+            next.categoryNames = Arrays.copyOf(next.categoryNames, ordinal + 1);
+            next.categoryIds[ordinal] = category.getCategory_id();
+            next.categoryNames[ordinal] = category.getCategory_name();
+        } else if (!Objects.equals(next.categoryNames[ordinal], category.getCategory_name())) {
+            next.categoryNames = next.categoryNames.clone();
+            next.categoryNames[ordinal] = category.getCategory_name();
+        }
+        return ordinal;
+    }
+
+    // Early pages keep only the best from + size rows in a bounded heap instead of sorting every match
+    private List<Book> page(Columns current, int[] matches, int matched, Comparator<Integer> order, int page, int size) {
+        long from = (long) page * size;
+        if (from >= matched) {
+            return List.of();
+        }
+        int to = (int) Math.min(matched, from + size);
+        Integer[] sorted;
+        if (to < matched / 4) {
+            PriorityQueue<Integer> best = new PriorityQueue<>(to + 1, order.reversed());
+            for (int i = 0; i < matched; i++) {
+                if (best.size() < to) {
+                    best.add(matches[i]);
+                } else if (order.compare(matches[i], best.peek()) < 0) {
+                    best.poll();
+                    best.add(matches[i]);
+                }
+            }
+            sorted = best.toArray(new Integer[0]);
+        } else {
+            sorted = new Integer[matched];
+            for (int i = 0; i < matched; i++) {
+                sorted[i] = matches[i];
+            }
+        }
+        Arrays.sort(sorted, order);
+        List<Book> content = new ArrayList<>(to - (int) from);
+        for (int i = (int) from; i < to; i++) {
+            content.add(current.books[sorted[i]]);
+        }
+        return content;
+    }
+
+    private Comparator<Integer> comparator(Columns current, Sort sort) {
+        Comparator<Integer> result = null;
+        for (Sort.Order order : sort) {
+            Comparator<Integer> next = switch (order.getProperty()) {
+                case "title" -> Comparator.comparing(i -> current.books[i].getTitle(), Comparator.nullsLast(Comparator.naturalOrder()));
+                case "author" -> Comparator.comparing(i -> current.books[i].getAuthor(), Comparator.nullsLast(Comparator.naturalOrder()));
+                case "price" -> Comparator.comparingLong(i -> current.priceCents[i]);
+                case "stock_quantity" -> Comparator.comparing(i -> current.books[i].getStock_quantity(), Comparator.nullsFirst(Comparator.naturalOrder()));
+                default -> throw new IllegalArgumentException("Unknown sort property: " + order.getProperty());
+            };
+            if (order.isDescending()) {
+                next = next.reversed();
+            }
+            result = result == null ? next : result.thenComparing(next);
+        }
+        // Ties fall back to the book id so pages stay stable
+        Comparator<Integer> byId = Comparator.comparing(i -> current.books[i].getBook_id());
+        return result == null ? byId : result.thenComparing(byId);
+    }
+
+    private List<BookFacets.FacetCount> categoryFacet(Columns current, long[] counts, int selected) {
+        List<BookFacets.FacetCount> facet = new ArrayList<>();
+        for (int c = 0; c < current.categoryIds.length; c++) {
+            if (counts[c + 1] > 0 || c == selected) {
+                facet.add(new BookFacets.FacetCount(current.categoryIds[c].toString(), current.categoryNames[c], counts[c + 1]));
+            }
+        }
+        facet.sort(Comparator.comparingLong(BookFacets.FacetCount::count).reversed()
+                .thenComparing(BookFacets.FacetCount::label, Comparator.nullsLast(Comparator.naturalOrder())));
+        if (counts[0] > 0) {
+            facet.add(new BookFacets.FacetCount(null, "Uncategorized", counts[0]));
+        }
+        return facet;
+    }
+
+    private List<BookFacets.FacetCount> priceFacet(long[] bounds, long[] counts) {
+        List<BookFacets.FacetCount> facet = new ArrayList<>(counts.length);
+        for (int b = 0; b < counts.length; b++) {
+            String from = b == 0 ? "0" : amount(bounds[b - 1]);
+            String range = b < bounds.length ? from + "-" + amount(bounds[b]) : from + "+";
+            facet.add(new BookFacets.FacetCount(range, range, counts[b]));
+        }
+        return facet;
+    }
+
+    private static int bucket(long[] bounds, long price) {
+        int position = Arrays.binarySearch(bounds, price);
+        return position >= 0 ? position + 1 : -position - 1;
+    }
+
+    private static long cents(BigDecimal amount, RoundingMode rounding) {
+        return amount.movePointRight(2).setScale(0, rounding).longValue();
+    }
+
+    private static String amount(long cents) {
+        return BigDecimal.valueOf(cents, 2).stripTrailingZeros().toPlainString();
+    }
+
+    private static String lower(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+}
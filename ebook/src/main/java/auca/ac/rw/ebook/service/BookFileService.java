@@ -0,0 +1,239 @@
+// BookFileService.java
+package auca.ac.rw.ebook.service;
+
+import auca.ac.rw.ebook.model.Book;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Serves ebook files from the local FileStorage.
+// The body is handed to Tomcat's sendfile support, so the kernel copies the file straight to
+// the socket after the request thread returns. Containers without sendfile fall back to
+// FileChannel.transferTo, which uses a small fixed-size buffer whatever the file size.
+@Service
+public class BookFileService {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final int RECENT_DOWNLOADS = 100;
+
+    @Autowired
+    private BookCatalogSnapshot catalogSnapshot;
+
+    @Autowired
+    private FileStorage fileStorage;
+
+    // Metrics
+    private final AtomicLong downloads = new AtomicLong();
+    private final AtomicLong rangeRequests = new AtomicLong();
+    private final AtomicLong sendfileTransfers = new AtomicLong();
+    private final AtomicLong channelTransfers = new AtomicLong();
+    private final AtomicLong bytesServed = new AtomicLong();
+    private final AtomicLong activeTransfers = new AtomicLong();
+    private final Deque<DownloadRecord> recentDownloads = new ArrayDeque<>();
+
+    // millis is the time the request thread spent on the download; for sendfile that is
+    // only the hand-off, the kernel sends the bytes afterwards. bytesPerSecond is null for
+    // sendfile: Tomcat reports no completion, so the real transfer time is not known here.
+    public record DownloadRecord(UUID bookId, long bytes, long millis, Long bytesPerSecond,
+                                 String mode, boolean partial, LocalDateTime at) {}
+
+    public record BookFile(Book book, Path path, long size, long lastModified) {
+
+        public String etag() {
+            return "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"";
+        }
+    }
+
+    public Optional<BookFile> findBookFile(UUID bookId) {
+        Optional<Book> book = catalogSnapshot.getBook(bookId);
+        Optional<Path> path = book.flatMap(found -> fileStorage.resolve(found.getFile_url()));
+        if (path.isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(new BookFile(book.get(), path.get(), Files.size(path.get()),
+                    Files.getLastModifiedTime(path.get()).toMillis()));
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    // Writes headers and body for GET/HEAD, honouring a single Range and If-Range
+    public void send(BookFile file, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long size = file.size();
+        long start = 0;
+        long end = size - 1;
+        boolean partial = false;
+
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && size > 0 && ifRangeMatches(request, file)) {
+            List<HttpRange> ranges = parseRanges(rangeHeader);
+            if (ranges.size() == 1) {
+                start = ranges.get(0).getRangeStart(size);
+                end = ranges.get(0).getRangeEnd(size);
+                if (start >= size || end < start) {
+                    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                    return;
+                }
+                partial = true;
+            }
+        }
+        long length = size == 0 ? 0 : end - start + 1;
+
+        response.setStatus(partial ? HttpServletResponse.SC_PARTIAL_CONTENT : HttpServletResponse.SC_OK);
+        response.setContentType(MediaTypeFactory.getMediaType(file.path().getFileName().toString())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+        response.setContentLengthLong(length);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, file.etag());
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, file.lastModified());
+        String downloadName = downloadName(file);
+        ContentDisposition.Builder disposition = ContentDisposition.attachment();
+        if (StandardCharsets.US_ASCII.newEncoder().canEncode(downloadName)) {
+            disposition.filename(downloadName);
+        } else {
+            disposition.filename(downloadName, StandardCharsets.UTF_8);
+        }
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, disposition.build().toString());
+        if (partial) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+            rangeRequests.incrementAndGet();
+        }
+        if ("HEAD".equals(request.getMethod()) || length == 0) {
+            return;
+        }
+
+        long startedAt = System.nanoTime();
+        String mode;
+        activeTransfers.incrementAndGet();
+        try {
+            if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+                request.setAttribute(SENDFILE_FILENAME, file.path().toString());
+                request.setAttribute(SENDFILE_START, start);
+                request.setAttribute(SENDFILE_END, end + 1);
+                sendfileTransfers.incrementAndGet();
+                mode = "sendfile";
+            } else {
+                transfer(file.path(), start, length, response);
+                channelTransfers.incrementAndGet();
+                mode = "transferTo";
+            }
+        } finally {
+            activeTransfers.decrementAndGet();
+        }
+        record(file.book().getBook_id(), length, System.nanoTime() - startedAt, mode, partial);
+    }
+
+    // Metrics
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("storageDir", fileStorage.getRoot().toString());
+        metrics.put("downloads", downloads.get());
+        metrics.put("rangeRequests", rangeRequests.get());
+        metrics.put("sendfileTransfers", sendfileTransfers.get());
+        metrics.put("transferToTransfers", channelTransfers.get());
+        metrics.put("bytesServed", bytesServed.get());
+        metrics.put("activeTransfers", activeTransfers.get());
+        synchronized (recentDownloads) {
+            metrics.put("recentDownloads", new ArrayList<>(recentDownloads));
+        }
+        return metrics;
+    }
+
+    // Helper methods
+    private static void transfer(Path path, long start, long length, HttpServletResponse response) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = length;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+
+    // A Range is only honoured when If-Range is absent or still names this version of the file
+    private static boolean ifRangeMatches(HttpServletRequest request, BookFile file) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(file.etag());
+        }
+        try {
+            long date = request.getDateHeader(HttpHeaders.IF_RANGE);
+            return date >= 0 && file.lastModified() / 1000 == date / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    // Malformed ranges are ignored and the whole file is sent
+    private static List<HttpRange> parseRanges(String rangeHeader) {
+        try {
+            return HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
+    }
+
+    private static String downloadName(BookFile file) {
+        String fileName = file.path().getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        String title = file.book().getTitle();
+        if (title == null || title.isBlank()) {
+            return fileName;
+        }
+        return title.replaceAll("[\\\\/:*?\"<>|]", "_") + (dot > 0 ? fileName.substring(dot) : "");
+    }
+
+    private void record(UUID bookId, long bytes, long nanos, String mode, boolean partial) {
+        downloads.incrementAndGet();
+        bytesServed.addAndGet(bytes);
+        long millis = nanos / 1_000_000;
+        // bytes over the hand-off time would report a rate the sendfile transfer never reached
+        Long bytesPerSecond = "sendfile".equals(mode) || nanos == 0 ? null : bytes * 1_000_000_000L / nanos;
+        DownloadRecord entry = new DownloadRecord(bookId, bytes, millis, bytesPerSecond, mode, partial, LocalDateTime.now());
+        synchronized (recentDownloads) {
+            if (recentDownloads.size() == RECENT_DOWNLOADS) {
+                recentDownloads.removeFirst();
+            }
+            recentDownloads.addLast(entry);
+        }
+    }
+}
@@ -0,0 +1,360 @@
+// BookImporter.java
+package auca.ac.rw.ebook.service;
+
+import auca.ac.rw.ebook.dto.BookImportReport;
+import auca.ac.rw.ebook.dto.BookImportResult;
+import auca.ac.rw.ebook.dto.BookImportRow;
+import auca.ac.rw.ebook.model.Book;
+import auca.ac.rw.ebook.model.Category;
+import auca.ac.rw.ebook.repository.BookRepository;
+import auca.ac.rw.ebook.repository.CategoryRepository;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+// Streams a JSON array or CSV file of books and imports it in chunks.
+// Each chunk runs in its own transaction with one duplicate lookup, one category lookup per
+// key type and a batched insert, so the cost per row does not depend on the file size.
+// A file that turns out to be malformed part way through keeps the chunks already committed:
+// the rows read up to that point are imported, the report ends with an INVALID row where
+// reading stopped, and the rest of the file is not read.
+@Component
+public class BookImporter {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private record PendingRow(int number, BookImportRow row) {}
+
+    // onChunkImported receives the books of every committed chunk
+    public BookImportReport importJson(InputStream in, Consumer<List<Book>> onChunkImported) throws IOException {
+        long start = System.nanoTime();
+        List<BookImportResult> results = new ArrayList<>();
+        List<PendingRow> chunk = new ArrayList<>(CHUNK_SIZE);
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("Expected a JSON array of books");
+            }
+            int rowNumber = 0;
+            try {
+                JsonToken token;
+                while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                    JsonNode node = objectMapper.readTree(parser);
+                    rowNumber++;
+                    try {
+                        accept(rowNumber, objectMapper.treeToValue(flattenCategory(node), BookImportRow.class), chunk, results);
+                    } catch (JsonProcessingException e) {
+                        results.add(invalid(rowNumber, "Unreadable row: " + e.getOriginalMessage()));
+                    }
+                    if (chunk.size() == CHUNK_SIZE) {
+                        importChunk(chunk, results, onChunkImported);
+                    }
+                }
+                if (token != JsonToken.END_ARRAY) {
+                    results.add(stopped(rowNumber + 1, "Expected a JSON object, found " + token));
+                }
+            } catch (JsonProcessingException e) {
+                // Malformed JSON; the parser cannot resynchronise, so reading stops here
+                results.add(stopped(rowNumber + 1, e.getOriginalMessage()));
+            }
+        }
+        importChunk(chunk, results, onChunkImported);
+        return report(results, start);
+    }
+
+    // The first line is a header naming the columns, e.g. title,author,price,stock_quantity,category_name
+    public BookImportReport importCsv(InputStream in, Consumer<List<Book>> onChunkImported) throws IOException {
+        long start = System.nanoTime();
+        List<BookImportResult> results = new ArrayList<>();
+        List<PendingRow> chunk = new ArrayList<>(CHUNK_SIZE);
+        try (Reader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            List<String> header = readCsvRecord(reader, 0);
+            if (header == null) {
+                return report(results, start);
+            }
+            Map<String, Integer> columns = new HashMap<>();
+            for (int i = 0; i < header.size(); i++) {
+                columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+            }
+            int rowNumber = 0;
+            List<String> record;
+            while ((record = readCsvRecord(reader, rowNumber + 1)) != null) {
+                if (record.size() == 1 && record.get(0).isBlank()) {
+                    continue;
+                }
+                rowNumber++;
+                try {
+                    accept(rowNumber, toRow(columns, record), chunk, results);
+                } catch (IllegalArgumentException e) {
+                    results.add(invalid(rowNumber, "Unreadable row: " + e.getMessage()));
+                }
+                if (chunk.size() == CHUNK_SIZE) {
+                    importChunk(chunk, results, onChunkImported);
+                }
+            }
+        } catch (MalformedCsvException e) {
+            results.add(stopped(e.row, e.getMessage()));
+        }
+        importChunk(chunk, results, onChunkImported);
+        return report(results, start);
+    }
+
+    // Row checks that need no database access - same rules as BookService.validateBookData
+    private void accept(int rowNumber, BookImportRow row, List<PendingRow> chunk, List<BookImportResult> results) {
+        if (isBlank(row.title()) || isBlank(row.author())) {
+            results.add(invalid(rowNumber, "Title and author are required"));
+        } else if (row.price() == null || row.price().signum() <= 0) {
+            results.add(invalid(rowNumber, "Price must be greater than zero"));
+        } else if (row.categoryId() == null && isBlank(row.categoryName())) {
+            results.add(invalid(rowNumber, "Category is required"));
+        } else {
+            chunk.add(new PendingRow(rowNumber, row));
+        }
+    }
+
+    private void importChunk(List<PendingRow> chunk, List<BookImportResult> results, Consumer<List<Book>> onChunkImported) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        List<Book> imported = new ArrayList<>(chunk.size());
+        try {
+            results.addAll(transactionTemplate.execute(status -> insertChunk(chunk, imported)));
+        } catch (RuntimeException e) {
+            imported.clear();
+            for (PendingRow pending : chunk) {
+                results.add(new BookImportResult(pending.number(), BookImportResult.Status.FAILED, null,
+                        "Chunk rolled back: " + e.getMessage()));
+            }
+        }
+        chunk.clear();
+        if (!imported.isEmpty()) {
+            onChunkImported.accept(imported);
+        }
+    }
+
+    private List<BookImportResult> insertChunk(List<PendingRow> chunk, List<Book> imported) {
+        Set<String> titles = new HashSet<>();
+        Set<UUID> categoryIds = new HashSet<>();
+        Set<String> categoryNames = new HashSet<>();
+        for (PendingRow pending : chunk) {
+            titles.add(pending.row().title());
+            if (pending.row().categoryId() != null) {
+                categoryIds.add(pending.row().categoryId());
+            } else {
+                categoryNames.add(pending.row().categoryName().trim().toLowerCase(Locale.ROOT));
+            }
+        }
+
+        // One round trip each for duplicates and categories
+        Set<String> existing = new HashSet<>();
+        for (Object[] titleAndAuthor : bookRepository.findTitleAndAuthorByTitleIn(titles)) {
+            existing.add(key((String) titleAndAuthor[0], (String) titleAndAuthor[1]));
+        }
+        Map<UUID, Category> categoriesById = new HashMap<>();
+        if (!categoryIds.isEmpty()) {
+            for (Category category : categoryRepository.findAllById(categoryIds)) {
+                categoriesById.put(category.getCategory_id(), category);
+            }
+        }
+        Map<String, Category> categoriesByName = new HashMap<>();
+        if (!categoryNames.isEmpty()) {
+            for (Category category : categoryRepository.findByCategoryNameInIgnoreCase(categoryNames)) {
+                categoriesByName.put(category.getCategory_name().toLowerCase(Locale.ROOT), category);
+            }
+        }
+
+        List<BookImportResult> results = new ArrayList<>(chunk.size());
+        List<Integer> bookRows = new ArrayList<>(chunk.size());
+        for (PendingRow pending : chunk) {
+            BookImportRow row = pending.row();
+            Category category = row.categoryId() != null
+                    ? categoriesById.get(row.categoryId())
+                    : categoriesByName.get(row.categoryName().trim().toLowerCase(Locale.ROOT));
+            if (category == null) {
+                results.add(invalid(pending.number(), "Category not found"));
+            } else if (!existing.add(key(row.title(), row.author()))) {
+                results.add(new BookImportResult(pending.number(), BookImportResult.Status.DUPLICATE, null,
+                        "Book with this title and author already exists"));
+            } else {
+                imported.add(toBook(row, category));
+                bookRows.add(pending.number());
+            }
+        }
+
+        // Ids are generated in memory, so Hibernate can batch the inserts
+        bookRepository.saveAll(imported);
+        entityManager.flush();
+        entityManager.clear();
+        for (int i = 0; i < imported.size(); i++) {
+            results.add(new BookImportResult(bookRows.get(i), BookImportResult.Status.IMPORTED,
+                    imported.get(i).getBook_id(), "Book saved successfully"));
+        }
+        return results;
+    }
+
+    // Helper methods
+    private static Book toBook(BookImportRow row, Category category) {
+        Book book = new Book();
+        book.setTitle(row.title());
+        book.setAuthor(row.author());
+        book.setPrice(row.price());
+        book.setStock_quantity(row.stockQuantity() != null ? row.stockQuantity() : 0);
+        book.setCategory(category);
+        book.setCover_image(row.coverImage());
+        book.setFile_url(row.fileUrl());
+        return book;
+    }
+
+    // Accept the same shape as /api/book/save: "category": {"category_id": ...}
+    private static JsonNode flattenCategory(JsonNode node) {
+        JsonNode category = node.get("category");
+        if (node instanceof ObjectNode object && category != null && category.isObject()) {
+            for (String field : List.of("category_id", "category_name")) {
+                if (!object.has(field) && category.has(field)) {
+                    object.set(field, category.get(field));
+                }
+            }
+            object.remove("category");
+        }
+        return node;
+    }
+
+    private static BookImportRow toRow(Map<String, Integer> columns, List<String> record) {
+        String price = field(columns, record, "price");
+        String stock = field(columns, record, "stock_quantity");
+        String categoryId = field(columns, record, "category_id");
+        return new BookImportRow(
+                field(columns, record, "title"),
+                field(columns, record, "author"),
+                price != null ? new BigDecimal(price) : null,
+                stock != null ? Integer.valueOf(stock) : null,
+                categoryId != null ? UUID.fromString(categoryId) : null,
+                field(columns, record, "category_name"),
+                field(columns, record, "cover_image"),
+                field(columns, record, "file_url"));
+    }
+
+    private static String field(Map<String, Integer> columns, List<String> record, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= record.size()) {
+            return null;
+        }
+        String value = record.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    // A record that cannot be split into fields; nothing after it can be trusted
+    private static final class MalformedCsvException extends IllegalArgumentException {
+        private final int row;
+
+        MalformedCsvException(int row, String message) {
+            super(message);
+            this.row = row;
+        }
+    }
+
+    // RFC 4180 record: quoted fields may contain commas, newlines and doubled quotes
+    private static List<String> readCsvRecord(Reader reader, int rowNumber) throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean read = false;
+        int c;
+        while ((c = reader.read()) != -1) {
+            read = true;
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    int next = reader.read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        if (next != -1) {
+                            reader.reset();
+                        }
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+        }
+        if (!read) {
+            return null;
+        }
+        if (quoted) {
+            throw new MalformedCsvException(rowNumber, "Quoted field not closed before the end of the file");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static BookImportResult invalid(int rowNumber, String message) {
+        return new BookImportResult(rowNumber, BookImportResult.Status.INVALID, null, message);
+    }
+
+    private static BookImportResult stopped(int rowNumber, String reason) {
+        return invalid(rowNumber, "Import stopped, the rest of the file was not read: " + reason);
+    }
+
+    private static BookImportReport report(List<BookImportResult> results, long start) {
+        results.sort(Comparator.comparingInt(BookImportResult::row));
+        return BookImportReport.of(results, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static String key(String title, String author) {
+        return title + '\u0000' + author;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
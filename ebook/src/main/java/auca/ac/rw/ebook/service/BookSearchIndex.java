@@ -0,0 +1,307 @@
+// BookSearchIndex.java
+package auca.ac.rw.ebook.service;
+
+import auca.ac.rw.ebook.model.Book;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Trigram inverted index over book titles and authors.
+// Every indexed book gets an int document id; ids only grow, so posting lists stay sorted
+// and can be intersected with a linear merge. Updates tombstone the old document and
+// append a new one; tombstones are compacted away once they make up a quarter of the index.
+// Matching follows the queries this replaced: title search is case-sensitive like
+// findByTitleContaining, title-or-author search lower-cases both sides like searchByTitleOrAuthor,
+// and neither trims the keyword. Trigrams are always taken from the lower-cased text, which
+// gives a superset of the case-sensitive candidates.
+@Component
+public class BookSearchIndex {
+
+    @Autowired
+    private BookCatalogSnapshot catalogSnapshot;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final List<IndexedBook> documents = new ArrayList<>();
+    private final Map<UUID, Integer> documentIds = new HashMap<>();
+    private final Map<Long, Postings> titlePostings = new HashMap<>();
+    private final Map<Long, Postings> authorPostings = new HashMap<>();
+    private int tombstones;
+    private volatile boolean ready;
+
+    // title and author are lower-cased for matching; originalTitle keeps the case for title search
+    private record IndexedBook(UUID bookId, String originalTitle, String title, String author) {}
+
+    // Build
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        List<Book> books = catalogSnapshot.getAllBooks();
+        lock.writeLock().lock();
+        try {
+            clear();
+            for (Book book : books) {
+                add(book);
+            }
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // Incremental maintenance - called from BookService write methods
+    public void index(Book book) {
+        lock.writeLock().lock();
+        try {
+            delete(book.getBook_id());
+            add(book);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void indexAll(Collection<Book> books) {
+        lock.writeLock().lock();
+        try {
+            for (Book book : books) {
+                delete(book.getBook_id());
+                add(book);
+            }
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public void remove(UUID bookId) {
+        lock.writeLock().lock();
+        try {
+            delete(bookId);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Search - results are ordered by relevance, then by title
+    public List<UUID> searchTitle(String keyword) {
+        return search(keyword, false);
+    }
+
+    public List<UUID> searchTitleOrAuthor(String keyword) {
+        return search(keyword, true);
+    }
+
+    private List<UUID> search(String keyword, boolean includeAuthor) {
+        String text = keyword == null ? "" : keyword;
+        String query = normalize(text);
+        List<Match> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            if (query.length() < 3) {
+                // Too short for a trigram: scan the documents
+                for (IndexedBook document : documents) {
+                    if (document != null) {
+                        addIfMatches(matches, document, text, query, includeAuthor);
+                    }
+                }
+            } else {
+                int[] candidates = candidates(titlePostings, query);
+                if (includeAuthor) {
+                    candidates = union(candidates, candidates(authorPostings, query));
+                }
+                for (int documentId : candidates) {
+                    IndexedBook document = documents.get(documentId);
+                    if (document != null) {
+                        addIfMatches(matches, document, text, query, includeAuthor);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        matches.sort((a, b) -> a.score != b.score
+                ? Integer.compare(a.score, b.score)
+                : a.document.originalTitle().compareTo(b.document.originalTitle()));
+        List<UUID> result = new ArrayList<>(matches.size());
+        for (Match match : matches) {
+            result.add(match.document.bookId());
+        }
+        return result;
+    }
+
+    private record Match(IndexedBook document, int score) {}
+
+    // Trigram candidates are verified against the full keyword so results match LIKE '%keyword%'
+    private void addIfMatches(List<Match> matches, IndexedBook document, String text, String query, boolean includeAuthor) {
+        int score = includeAuthor ? score(document.title(), query, 0) : score(document.originalTitle(), text, 0);
+        if (score < 0 && includeAuthor) {
+            score = score(document.author(), query, 3);
+        }
+        if (score >= 0) {
+            matches.add(new Match(document, score));
+        }
+    }
+
+    private int score(String text, String query, int base) {
+        if (text.equals(query)) {
+            return base;
+        }
+        if (text.startsWith(query)) {
+            return base + 1;
+        }
+        if (text.contains(query)) {
+            return base + 2;
+        }
+        return -1;
+    }
+
+    private int[] candidates(Map<Long, Postings> postings, String query) {
+        int[] result = null;
+        for (long trigram : trigrams(query)) {
+            Postings list = postings.get(trigram);
+            if (list == null) {
+                return new int[0];
+            }
+            result = result == null ? Arrays.copyOf(list.ids, list.size) : intersect(result, list);
+            if (result.length == 0) {
+                break;
+            }
+        }
+        return result != null ? result : new int[0];
+    }
+
+    private static int[] intersect(int[] left, Postings right) {
+        int[] out = new int[Math.min(left.length, right.size)];
+        int i = 0, j = 0, n = 0;
+        while (i < left.length && j < right.size) {
+            if (left[i] < right.ids[j]) {
+                i++;
+            } else if (left[i] > right.ids[j]) {
+                j++;
+            } else {
+                out[n++] = left[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static int[] union(int[] left, int[] right) {
+        int[] out = new int[left.length + right.length];
+        int i = 0, j = 0, n = 0;
+        while (i < left.length || j < right.length) {
+            if (j == right.length || (i < left.length && left[i] < right[j])) {
+                out[n++] = left[i++];
+            } else if (i == left.length || right[j] < left[i]) {
+                out[n++] = right[j++];
+            } else {
+                out[n++] = left[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    // Helper methods - callers hold the write lock
+    private void add(Book book) {
+        if (book.getBook_id() == null) {
+            return;
+        }
+        String title = book.getTitle() == null ? "" : book.getTitle();
+        IndexedBook document = new IndexedBook(book.getBook_id(), title, normalize(title), normalize(book.getAuthor()));
+        int documentId = documents.size();
+        documents.add(document);
+        documentIds.put(document.bookId(), documentId);
+        addPostings(titlePostings, document.title(), documentId);
+        addPostings(authorPostings, document.author(), documentId);
+    }
+
+    private void delete(UUID bookId) {
+        Integer documentId = documentIds.remove(bookId);
+        if (documentId != null) {
+            documents.set(documentId, null);
+            tombstones++;
+        }
+    }
+
+    private void clear() {
+        documents.clear();
+        documentIds.clear();
+        titlePostings.clear();
+        authorPostings.clear();
+        tombstones = 0;
+    }
+
+    private void compactIfNeeded() {
+        if (tombstones > 1024 && tombstones * 4 > documents.size()) {
+            List<IndexedBook> live = new ArrayList<>(documentIds.size());
+            for (IndexedBook document : documents) {
+                if (document != null) {
+                    live.add(document);
+                }
+            }
+            clear();
+            for (IndexedBook document : live) {
+                int documentId = documents.size();
+                documents.add(document);
+                documentIds.put(document.bookId(), documentId);
+                addPostings(titlePostings, document.title(), documentId);
+                addPostings(authorPostings, document.author(), documentId);
+            }
+        }
+    }
+
+    private static void addPostings(Map<Long, Postings> postings, String text, int documentId) {
+        for (long trigram : trigrams(text)) {
+            postings.computeIfAbsent(trigram, key -> new Postings()).add(documentId);
+        }
+    }
+
+    // Three UTF-16 chars packed into one long; duplicates within a text are dropped
+    private static long[] trigrams(String text) {
+        if (text.length() < 3) {
+            return new long[0];
+        }
+        long[] trigrams = new long[text.length() - 2];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+        }
+        return Arrays.stream(trigrams).distinct().toArray();
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    // Growable sorted int array
+    private static final class Postings {
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(int documentId) {
+            if (size > 0 && ids[size - 1] == documentId) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = documentId;
+        }
+    }
+}
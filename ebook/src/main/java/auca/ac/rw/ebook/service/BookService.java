@@ -2,13 +2,36 @@
 package auca.ac.rw.ebook.service;
 
 import auca.ac.rw.ebook.model.Book;
+import auca.ac.rw.ebook.dto.BookFacets;
+import auca.ac.rw.ebook.dto.BookImportReport;
+import auca.ac.rw.ebook.dto.BookSearchCriteria;
+import auca.ac.rw.ebook.dto.CursorPage;
+import auca.ac.rw.ebook.dto.EntityVersion;
+import auca.ac.rw.ebook.dto.PageCursor;
+import auca.ac.rw.ebook.dto.LeasedStockLine;
+import auca.ac.rw.ebook.dto.StockLine;
 import auca.ac.rw.ebook.repository.BookRepository;
+import auca.ac.rw.ebook.repository.BookSpecifications;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.UUID;
 
 @Service
@@ -17,27 +40,81 @@ public class BookService {
     @Autowired
     private BookRepository bookRepository;
     
+    @Autowired
+    private NdjsonExporter ndjsonExporter;
+    
+    @Autowired
+    private BookImporter bookImporter;
+    
+    @Autowired
+    private StockLeaseManager stockLeaseManager;
+    
+    @Autowired
+    private CoverImageService coverImageService;
+    
+    @Autowired
+    private BookSuggestIndex suggestIndex;
+    
+    @Autowired
+    private BookCatalogSnapshot catalogSnapshot;
+    
+    @Autowired
+    private BookSearchIndex searchIndex;
+    
+    @Autowired
+    private BookFacetIndex facetIndex;
+    
+    @Autowired
+    private BookDetailService bookDetailService;
+    
+    @Autowired
+    private BestSellerLeaderboard bestSellerLeaderboard;
+    
+    @Autowired
+    private AlsoBoughtIndex alsoBoughtIndex;
+    
+    @Autowired
+    private ExistenceFilters existenceFilters;
+    
+    @Autowired
+    private CartStore cartStore;
+    
     // CRUD Operations
+    // Checked against the table, not the existence filter: a filter built before a write from
+    // another node would answer a definite "no" for a book that is already there
     public String saveBook(Book book) {
         if (!bookRepository.existsByTitleAndAuthor(book.getTitle(), book.getAuthor())) {
-            bookRepository.save(book);
+            bookChanged(bookRepository.save(book));
             return "Book saved successfully";
         } else {
             return "Book with this title and author already exists";
         }
     }
     
+    // Bulk import - rows are imported in chunks, each chunk in its own transaction
+    public BookImportReport importBooksFromJson(InputStream in) throws IOException {
+        return bookImporter.importJson(in, this::booksImported);
+    }
+    
+    public BookImportReport importBooksFromCsv(InputStream in) throws IOException {
+        return bookImporter.importCsv(in, this::booksImported);
+    }
+    
     public List<Book> getAllBooks() {
-        return bookRepository.findAll();
+        return catalogSnapshot.getAllBooks();
     }
     
     public Optional<Book> getBookById(UUID id) {
         return bookRepository.findById(id);
     }
     
+    public Optional<EntityVersion> getBookVersion(UUID id) {
+        return bookRepository.findVersionById(id);
+    }
+    
     public String updateBook(Book book) {
         if (bookRepository.existsById(book.getBook_id())) {
-            bookRepository.save(book);
+            bookChanged(bookRepository.save(book));
             return "Book updated successfully";
         } else {
             return "Book not found";
@@ -47,6 +124,7 @@ public class BookService {
     public String deleteBook(UUID id) {
         if (bookRepository.existsById(id)) {
             bookRepository.deleteById(id);
+            bookDeleted(id);
             return "Book deleted successfully";
         } else {
             return "Book not found";
@@ -63,7 +141,10 @@ public class BookService {
     }
     
     public List<Book> searchBooksByTitle(String title) {
-        return bookRepository.findByTitleContaining(title);
+        if (!searchIndex.isReady()) {
+            return bookRepository.findByTitleContaining(title);
+        }
+        return catalogSnapshot.getBooks(searchIndex.searchTitle(title));
     }
     
     public List<Book> searchBooksByAuthor(String author) {
@@ -88,11 +169,12 @@ public class BookService {
     
     // existsBy... methods
     public Boolean checkBookExistsByTitle(String title) {
-        return bookRepository.existsByTitle(title);
+        return existenceFilters.exists(ExistenceFilters.KeySpace.TITLE, title, () -> bookRepository.existsByTitle(title));
     }
     
     public Boolean checkBookExistsByTitleAndAuthor(String title, String author) {
-        return bookRepository.existsByTitleAndAuthor(title, author);
+        return existenceFilters.exists(ExistenceFilters.KeySpace.TITLE_AUTHOR, ExistenceFilters.titleAuthor(title, author),
+                () -> bookRepository.existsByTitleAndAuthor(title, author));
     }
     
     public Boolean checkBookExistsByAuthor(String author) {
@@ -116,9 +198,62 @@ public class BookService {
         return bookRepository.findAll(pageable);
     }
     
+    // Streaming export - returns the number of rows written
+    @Transactional(readOnly = true)
+    public long exportBooks(OutputStream out) throws IOException {
+        return ndjsonExporter.export(bookRepository.streamAllForExport(), out);
+    }
+    
+    // Keyset pagination - cursor is null for the first page
+    public CursorPage<Book> getBooksAfter(String cursor, int size) {
+        Limit limit = Limit.of(size + 1);
+        List<Book> rows;
+        if (cursor == null) {
+            rows = bookRepository.findFirstByTitleKeyset(limit);
+        } else {
+            PageCursor after = PageCursor.decode(cursor);
+            rows = bookRepository.findNextByTitleKeyset(after.sortKey(), after.id(), limit);
+        }
+        return CursorPage.of(rows, size, book -> PageCursor.of(book.getTitle(), book.getBook_id()));
+    }
+    
+    // Typeahead - titles, authors and categories ranked by units sold
+    public List<BookSuggestIndex.Suggestion> suggest(String query, int limit) {
+        return suggestIndex.suggest(query, limit);
+    }
+    
+    // Customers also bought - [book, orders containing both] from the in-memory matrix;
+    // empty when the book itself is not in the catalog
+    public Optional<List<Object[]>> getAlsoBought(UUID bookId, int limit) {
+        if (catalogSnapshot.getBook(bookId).isEmpty()) {
+            return Optional.empty();
+        }
+        List<Object[]> result = new ArrayList<>();
+        for (AlsoBoughtIndex.Entry entry : alsoBoughtIndex.top(bookId, AlsoBoughtIndex.MAX_LIMIT)) {
+            if (result.size() == limit) {
+                break;
+            }
+            catalogSnapshot.getBook(entry.bookId()).ifPresent(book -> result.add(new Object[] {book, entry.orders()}));
+        }
+        return Optional.of(result);
+    }
+    
     // Custom search queries
     public List<Book> searchBooksByTitleOrAuthor(String keyword) {
-        return bookRepository.searchByTitleOrAuthor(keyword);
+        if (!searchIndex.isReady()) {
+            return bookRepository.searchByTitleOrAuthor(keyword);
+        }
+        return catalogSnapshot.getBooks(searchIndex.searchTitleOrAuthor(keyword));
+    }
+    
+    // Filtered search - all filters are pushed into a single SQL statement
+    public Slice<Book> searchBooks(BookSearchCriteria criteria, Pageable pageable, boolean withCount) {
+        return bookRepository.searchBooks(BookSpecifications.matching(criteria), pageable, withCount);
+    }
+    
+    // Same filters as searchBooks, plus category, price and availability counts from one pass over the catalog
+    public BookFacets searchBooksWithFacets(BookSearchCriteria criteria, List<BigDecimal> priceBounds, Pageable pageable) {
+        return facetIndex.search(criteria, priceBounds, pageable.getPageNumber(), pageable.getPageSize(), pageable.getSort());
     }
     
     public List<Book> getBooksWithStock() {
@@ -127,31 +262,81 @@ public class BookService {
     
     // Business logic methods
     public String updateBookStock(UUID bookId, Integer newStock) {
-        Optional<Book> bookOpt = bookRepository.findById(bookId);
-        if (bookOpt.isPresent()) {
-            Book book = bookOpt.get();
-            book.setStock_quantity(newStock);
-            bookRepository.save(book);
-            return "Book stock updated successfully";
-        } else {
-            return "Book not found";
+        if (newStock == null || newStock < 0) {
+            return "Invalid stock quantity";
         }
+        return stockLeaseManager.overwriteStock(bookId, newStock) ? "Book stock updated successfully" : "Book not found";
     }
     
+    // Single conditional UPDATE - concurrent callers can never take the stock below zero
+    @Transactional
     public String decreaseBookStock(UUID bookId, Integer quantity) {
-        Optional<Book> bookOpt = bookRepository.findById(bookId);
-        if (bookOpt.isPresent()) {
-            Book book = bookOpt.get();
-            if (book.getStock_quantity() >= quantity) {
-                book.setStock_quantity(book.getStock_quantity() - quantity);
-                bookRepository.save(book);
-                return "Book stock decreased successfully";
-            } else {
-                return "Insufficient stock";
+        if (quantity == null || quantity <= 0) {
+            return "Invalid quantity";
+        }
+        if (takeFromLeases(List.of(new StockLine(bookId, quantity))).isEmpty()) {
+            return "Book stock decreased successfully";
+        }
+        if (bookRepository.reserveStock(List.of(new StockLine(bookId, quantity)))[0] == 0) {
+            return bookRepository.existsById(bookId) ? "Insufficient stock" : "Book not found";
+        }
+        changedInDatabase(List.of(bookId));
+        return "Book stock decreased successfully";
+    }
+    
+    // Reserves every line of an order or none of them
+    @Transactional
+    public String reserveStock(List<StockLine> lines) {
+        Map<UUID, Integer> quantities = mergeStockLines(lines);
+        if (quantities == null) {
+            return "Invalid stock lines";
+        }
+        // Leased titles are served from this node's lease; the rest go to the database
+        List<StockLine> fromDatabase = takeFromLeases(toStockLines(quantities));
+        int[] counts = fromDatabase.isEmpty() ? new int[0] : bookRepository.reserveStock(fromDatabase);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+                UUID bookId = fromDatabase.get(i).bookId();
+                return bookRepository.existsById(bookId)
+                        ? "Insufficient stock for book " + bookId
+                        : "Book not found: " + bookId;
             }
-        } else {
-            return "Book not found";
         }
+        changedInDatabase(fromDatabase.stream().map(StockLine::bookId).toList());
+        return "Stock reserved successfully";
+    }
+    
+    // Returns reserved stock, e.g. when an order is cancelled
+    @Transactional
+    public String releaseStock(List<StockLine> lines) {
+        Map<UUID, Integer> quantities = mergeStockLines(lines);
+        if (quantities == null) {
+            return "Invalid stock lines";
+        }
+        List<StockLine> merged = toStockLines(quantities);
+        int[] counts = bookRepository.releaseStock(merged);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+                return "Book not found: " + merged.get(i).bookId();
+            }
+        }
+        changedInDatabase(quantities.keySet());
+        return "Stock released successfully";
+    }
+    
+    // Hot titles - stock is handed out from a node-local lease
+    public boolean enableStockLease(UUID bookId) {
+        return stockLeaseManager.enable(bookId);
+    }
+    
+    public int disableStockLease(UUID bookId) {
+        return stockLeaseManager.disable(bookId);
+    }
+    
+    public Map<String, Object> getStockLeaseMetrics() {
+        return stockLeaseManager.getMetrics();
     }
     
     // Statistics methods
@@ -163,6 +348,145 @@ public class BookService {
         return bookRepository.countAvailableBooks();
     }
     
+    public Map<String, Object> getCatalogCacheMetrics() {
+        return catalogSnapshot.getMetrics();
+    }
+    
+    public Map<String, Object> getFacetMetrics() {
+        return facetIndex.getMetrics();
+    }
+    
+    public Map<String, Object> getAlsoBoughtMetrics() {
+        return alsoBoughtIndex.getMetrics();
+    }
+    
+    public Map<String, Object> getExistenceFilterMetrics() {
+        return existenceFilters.getMetrics(ExistenceFilters.KeySpace.TITLE, ExistenceFilters.KeySpace.TITLE_AUTHOR);
+    }
+    
+    // In-memory read models - kept in step with every write above
+    private void bookChanged(Book written) {
+        titleWritten(written);
+        Optional<Book> book = catalogSnapshot.refresh(written);
+        if (book.isPresent()) {
+            searchIndex.index(book.get());
+            suggestIndex.bookChanged(book.get());
+            coverImageService.schedule(book.get());
+            cartStore.bookChanged(written.getBook_id());
+        } else {
+            searchIndex.remove(written.getBook_id());
+            suggestIndex.bookRemoved(written.getBook_id());
+        }
+    }
+    
+    private void booksImported(List<Book> books) {
+        books.forEach(this::titleWritten);
+        catalogSnapshot.putAll(books);
+        searchIndex.indexAll(books);
+        books.forEach(suggestIndex::bookChanged);
+        books.forEach(coverImageService::schedule);
+    }
+    
+    // Stock and rating summaries are changed with plain SQL, so the snapshot re-reads those books once committed
+    private void changedInDatabase(Collection<UUID> bookIds) {
+        List<UUID> changed = List.copyOf(bookIds);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                changed.forEach(catalogSnapshot::refresh);
+            }
+        });
+    }
+    
+    // Called by ReviewService after it updated a book's rating summary
+    public void ratingChanged(UUID bookId) {
+        changedInDatabase(List.of(bookId));
+    }
+    
+    // Takes what it can from this node's leases and records those sales in the current
+    // transaction; returns the lines left for the database. Every lease is taken before any
+    // sale is recorded, so no lease row is locked while waiting for a refill.
+    private List<StockLine> takeFromLeases(List<StockLine> lines) {
+        List<StockLine> fromDatabase = new ArrayList<>();
+        List<LeasedStockLine> fromLeases = new ArrayList<>();
+        for (StockLine line : lines) {
+            UUID leaseId = stockLeaseManager.take(line.bookId(), line.quantity());
+            if (leaseId != null) {
+                fromLeases.add(new LeasedStockLine(leaseId, line.bookId(), line.quantity()));
+            } else {
+                fromDatabase.add(line);
+            }
+        }
+        if (fromLeases.isEmpty()) {
+            return fromDatabase;
+        }
+        List<LeasedStockLine> recorded = new ArrayList<>();
+        int[] counts = bookRepository.recordLeaseSales(fromLeases);
+        for (int i = 0; i < counts.length; i++) {
+            LeasedStockLine line = fromLeases.get(i);
+            if (counts[i] == 0) {
+                // The lease was returned after the take; its units are back in the row
+                stockLeaseManager.leaseLost(line.bookId(), line.leaseId());
+                fromDatabase.add(new StockLine(line.bookId(), line.quantity()));
+            } else {
+                recorded.add(line);
+            }
+        }
+        leasedStockTaken(recorded);
+        return fromDatabase;
+    }
+    
+    // Units taken from a lease go back to it if the transaction does not commit
+    private void leasedStockTaken(List<LeasedStockLine> taken) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    taken.forEach(line -> stockLeaseManager.putBack(line.bookId(), line.leaseId(), line.quantity()));
+                }
+            }
+        });
+    }
+    
+    private void titleWritten(Book book) {
+        existenceFilters.add(ExistenceFilters.KeySpace.TITLE, book.getTitle());
+        existenceFilters.add(ExistenceFilters.KeySpace.TITLE_AUTHOR, ExistenceFilters.titleAuthor(book.getTitle(), book.getAuthor()));
+    }
+    
+    private void bookDeleted(UUID bookId) {
+        stockLeaseManager.disable(bookId);
+        catalogSnapshot.remove(bookId);
+        searchIndex.remove(bookId);
+        suggestIndex.bookRemoved(bookId);
+        coverImageService.forget(bookId);
+        bookDetailService.evict(bookId);
+        bestSellerLeaderboard.removeBook(bookId);
+        alsoBoughtIndex.removeBook(bookId);
+        cartStore.bookRemoved(bookId);
+    }
+    
+    // Helper methods
+    // Duplicate lines are merged; the TreeMap orders rows so concurrent batches lock them in the same order
+    private Map<UUID, Integer> mergeStockLines(List<StockLine> lines) {
+        if (lines == null || lines.isEmpty()) {
+            return null;
+        }
+        Map<UUID, Integer> quantities = new TreeMap<>();
+        for (StockLine line : lines) {
+            if (line == null || line.bookId() == null || line.quantity() <= 0) {
+                return null;
+            }
+            quantities.merge(line.bookId(), line.quantity(), Integer::sum);
+        }
+        return quantities;
+    }
+    
+    private List<StockLine> toStockLines(Map<UUID, Integer> quantities) {
+        List<StockLine> lines = new ArrayList<>(quantities.size());
+        quantities.forEach((bookId, quantity) -> lines.add(new StockLine(bookId, quantity)));
+        return lines;
+    }
+    
     // Validation methods
     public Boolean validateBookData(Book book) {
         return book.getTitle() != null && !book.getTitle().trim().isEmpty() &&
@@ -0,0 +1,506 @@
+// BookSuggestIndex.java
+package auca.ac.rw.ebook.service;
+
+import auca.ac.rw.ebook.model.Book;
+import auca.ac.rw.ebook.model.Category;
+import auca.ac.rw.ebook.repository.CategoryRepository;
+import auca.ac.rw.ebook.repository.OrderDetailRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// Typeahead over book titles, authors and category names.
+// Keys live in a compressed (radix) trie and every node keeps the top suggestions of its
+// subtree ranked by units sold, so a lookup is a walk down the prefix plus an array copy.
+// Titles and authors are also keyed from each word, so "dune" finds "Children of Dune".
+// Writes patch the trie and recompute the top lists only along the changed path; sales
+// ranks are refreshed by a periodic rebuild. The rebuild reads and builds a new index without
+// the lock; writes made meanwhile are replayed onto it before it is swapped in.
+@Component
+public class BookSuggestIndex {
+
+    public static final int TOP_K = 10;
+
+    // Only the first words of long titles start a key
+    private static final int MAX_WORD_KEYS = 8;
+
+    private static final Comparator<Suggestion> RANKING = Comparator
+            .comparingLong(Suggestion::sales).reversed()
+            .thenComparing(Suggestion::text)
+            .thenComparing(Suggestion::type);
+
+    public record Suggestion(String type, String text, UUID id, long sales) {}
+
+    @Autowired
+    private BookCatalogSnapshot catalogSnapshot;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private OrderDetailRepository orderDetailRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by lock
+    private Node root = new Node("");
+    private Map<UUID, Long> salesByBook = new HashMap<>();
+    private Map<UUID, Suggestion> titles = new HashMap<>();
+    private Map<UUID, String> bookAuthors = new HashMap<>();
+    private Map<UUID, UUID> bookCategories = new HashMap<>();
+    private Map<String, Aggregate> authors = new HashMap<>();
+    private Map<UUID, Aggregate> categories = new HashMap<>();
+
+    // Writes made while a rebuild is loading; replaying one that the rebuild already saw is harmless
+    private List<Consumer<BookSuggestIndex>> pending;
+
+    private static final class Aggregate {
+        String text;
+        long sales;
+        int books;
+        Suggestion current;
+    }
+
+    // Build - also re-run periodically so rankings follow sales
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${ebook.suggest.rebuild-interval-ms:600000}",
+               fixedDelayString = "${ebook.suggest.rebuild-interval-ms:600000}")
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            pending = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            BookSuggestIndex built = new BookSuggestIndex();
+            for (Object[] row : orderDetailRepository.findUnitsSoldPerBook()) {
+                built.salesByBook.put((UUID) row[0], ((Number) row[1]).longValue());
+            }
+            for (Category category : categoryRepository.findAll()) {
+                built.putCategory(category.getCategory_id(), category.getCategory_name());
+            }
+            for (Book book : catalogSnapshot.getAllBooks()) {
+                built.putBook(book);
+            }
+            lock.writeLock().lock();
+            try {
+                pending.forEach(change -> change.accept(built));
+                root = built.root;
+                salesByBook = built.salesByBook;
+                titles = built.titles;
+                bookAuthors = built.bookAuthors;
+                bookCategories = built.bookCategories;
+                authors = built.authors;
+                categories = built.categories;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            lock.writeLock().lock();
+            try {
+                pending = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    // Lookup
+    public List<Suggestion> suggest(String query, int limit) {
+        String prefix = normalize(query);
+        if (prefix.isEmpty()) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            int i = 0;
+            while (i < prefix.length()) {
+                Node child = node.child(prefix.charAt(i));
+                if (child == null) {
+                    return List.of();
+                }
+                int common = commonPrefix(child.label, prefix, i);
+                if (common < child.label.length() && i + common < prefix.length()) {
+                    return List.of();
+                }
+                i += common;
+                node = child;
+            }
+            return List.of(Arrays.copyOf(node.top, Math.min(Math.max(limit, 0), node.top.length)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Incremental maintenance - called from BookService and CategoryService writes
+    public void bookChanged(Book book) {
+        change(index -> {
+            index.removeBook(book.getBook_id());
+            index.putBook(book);
+        });
+    }
+
+    public void bookRemoved(UUID bookId) {
+        change(index -> index.removeBook(bookId));
+    }
+
+    public void categoryChanged(Category category) {
+        change(index -> index.putCategory(category.getCategory_id(), category.getCategory_name()));
+    }
+
+    public void categoryRemoved(UUID categoryId) {
+        change(index -> {
+            Aggregate aggregate = index.categories.remove(categoryId);
+            if (aggregate != null && aggregate.current != null) {
+                index.remove(normalize(aggregate.text), aggregate.current);
+            }
+        });
+    }
+
+    private void change(Consumer<BookSuggestIndex> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(this);
+            if (pending != null) {
+                pending.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Helper methods - callers hold the write lock, or own an index that is not published yet
+    private void putBook(Book book) {
+        UUID bookId = book.getBook_id();
+        String title = book.getTitle();
+        if (bookId == null || title == null || title.isBlank()) {
+            return;
+        }
+        long sales = salesByBook.getOrDefault(bookId, 0L);
+        Suggestion suggestion = new Suggestion("title", title.trim(), bookId, sales);
+        titles.put(bookId, suggestion);
+        for (String key : wordKeys(title)) {
+            insert(key, suggestion);
+        }
+        if (book.getAuthor() != null && !book.getAuthor().isBlank()) {
+            String authorKey = normalize(book.getAuthor());
+            bookAuthors.put(bookId, authorKey);
+            Aggregate author = authors.computeIfAbsent(authorKey, key -> new Aggregate());
+            if (author.text == null) {
+                author.text = book.getAuthor().trim();
+            }
+            author.books++;
+            author.sales += sales;
+            replaceAuthor(author);
+        }
+        if (book.getCategory() != null && book.getCategory().getCategory_id() != null) {
+            UUID categoryId = book.getCategory().getCategory_id();
+            bookCategories.put(bookId, categoryId);
+            Aggregate category = categories.get(categoryId);
+            if (category == null && book.getCategory().getCategory_name() != null) {
+                putCategory(categoryId, book.getCategory().getCategory_name());
+                category = categories.get(categoryId);
+            }
+            if (category != null) {
+                category.books++;
+                category.sales += sales;
+                replace(normalize(category.text), category, "category", categoryId);
+            }
+        }
+    }
+
+    private void removeBook(UUID bookId) {
+        Suggestion title = titles.remove(bookId);
+        if (title == null) {
+            return;
+        }
+        for (String key : wordKeys(title.text())) {
+            remove(key, title);
+        }
+        String authorKey = bookAuthors.remove(bookId);
+        Aggregate author = authorKey != null ? authors.get(authorKey) : null;
+        if (author != null) {
+            author.books--;
+            author.sales -= title.sales();
+            if (author.books == 0) {
+                for (String key : wordKeys(author.text)) {
+                    remove(key, author.current);
+                }
+                authors.remove(authorKey);
+            } else {
+                replaceAuthor(author);
+            }
+        }
+        UUID categoryId = bookCategories.remove(bookId);
+        Aggregate category = categoryId != null ? categories.get(categoryId) : null;
+        if (category != null) {
+            category.books--;
+            category.sales -= title.sales();
+            replace(normalize(category.text), category, "category", categoryId);
+        }
+    }
+
+    private void putCategory(UUID categoryId, String name) {
+        if (categoryId == null || name == null || name.isBlank()) {
+            return;
+        }
+        Aggregate category = categories.computeIfAbsent(categoryId, id -> new Aggregate());
+        if (category.current != null) {
+            remove(normalize(category.text), category.current);
+            category.current = null;
+        }
+        category.text = name.trim();
+        replace(normalize(category.text), category, "category", categoryId);
+    }
+
+    private void replaceAuthor(Aggregate author) {
+        Suggestion previous = author.current;
+        author.current = new Suggestion("author", author.text, null, author.sales);
+        for (String key : wordKeys(author.text)) {
+            if (previous != null) {
+                remove(key, previous);
+            }
+            insert(key, author.current);
+        }
+    }
+
+    private void replace(String key, Aggregate aggregate, String type, UUID id) {
+        if (aggregate.current != null) {
+            remove(key, aggregate.current);
+        }
+        aggregate.current = new Suggestion(type, aggregate.text, id, aggregate.sales);
+        insert(key, aggregate.current);
+    }
+
+    // Trie operations
+    private void insert(String key, Suggestion suggestion) {
+        if (key.isEmpty()) {
+            return;
+        }
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int i = 0;
+        while (i < key.length()) {
+            Node child = node.child(key.charAt(i));
+            if (child == null) {
+                child = new Node(key.substring(i));
+                node.addChild(child);
+                i = key.length();
+            } else {
+                int common = commonPrefix(child.label, key, i);
+                if (common < child.label.length()) {
+                    // Split the edge so the key ends or branches at the new middle node
+                    Node middle = new Node(child.label.substring(0, common));
+                    node.replaceChild(middle);
+                    child.label = child.label.substring(common);
+                    middle.addChild(child);
+                    middle.top = child.top;
+                    child = middle;
+                }
+                i += common;
+            }
+            node = child;
+            path.add(node);
+        }
+        node.terminals.add(suggestion);
+        for (Node onPath : path) {
+            offer(onPath, suggestion);
+        }
+    }
+
+    private void remove(String key, Suggestion suggestion) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int i = 0;
+        while (i < key.length()) {
+            Node child = node.child(key.charAt(i));
+            if (child == null || !key.startsWith(child.label, i)) {
+                return;
+            }
+            i += child.label.length();
+            node = child;
+            path.add(node);
+        }
+        if (!node.terminals.remove(suggestion)) {
+            return;
+        }
+        // Drop empty leaves and merge single-child nodes to keep the trie compressed
+        for (int depth = path.size() - 1; depth > 0; depth--) {
+            Node current = path.get(depth);
+            Node parent = path.get(depth - 1);
+            if (current.terminals.isEmpty() && current.children.length == 0) {
+                parent.removeChild(current);
+                path.remove(depth);
+            } else if (current.terminals.isEmpty() && current.children.length == 1) {
+                Node only = current.children[0];
+                only.label = current.label + only.label;
+                parent.replaceChild(only);
+                path.remove(depth);
+            } else {
+                break;
+            }
+        }
+        // Only nodes that listed the removed suggestion need their top list rebuilt
+        for (int depth = path.size() - 1; depth >= 0; depth--) {
+            Node onPath = path.get(depth);
+            if (indexOf(onPath.top, suggestion) >= 0) {
+                recompute(onPath);
+            }
+        }
+    }
+
+    // Inserting can only push the new suggestion into a top list, never pull another one up
+    private static void offer(Node node, Suggestion suggestion) {
+        Suggestion[] top = node.top;
+        if (indexOf(top, suggestion) >= 0) {
+            return;
+        }
+        int position = 0;
+        while (position < top.length && RANKING.compare(top[position], suggestion) <= 0) {
+            position++;
+        }
+        if (position == TOP_K) {
+            return;
+        }
+        Suggestion[] updated = new Suggestion[Math.min(top.length + 1, TOP_K)];
+        System.arraycopy(top, 0, updated, 0, position);
+        updated[position] = suggestion;
+        System.arraycopy(top, position, updated, position + 1, updated.length - position - 1);
+        node.top = updated;
+    }
+
+    // A node's top list is the best of its own terminals and its children's top lists
+    private static void recompute(Node node) {
+        Set<Suggestion> candidates = new LinkedHashSet<>(node.terminals);
+        for (Node child : node.children) {
+            candidates.addAll(Arrays.asList(child.top));
+        }
+        Suggestion[] sorted = candidates.toArray(new Suggestion[0]);
+        Arrays.sort(sorted, RANKING);
+        node.top = sorted.length > TOP_K ? Arrays.copyOf(sorted, TOP_K) : sorted;
+    }
+
+    private static int indexOf(Suggestion[] top, Suggestion suggestion) {
+        for (int i = 0; i < top.length; i++) {
+            if (top[i].equals(suggestion)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int commonPrefix(String label, String key, int offset) {
+        int max = Math.min(label.length(), key.length() - offset);
+        int i = 0;
+        while (i < max && label.charAt(i) == key.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    // Keys starting at each word: "children of dune", "of dune", "dune"
+    private static List<String> wordKeys(String text) {
+        String normalized = normalize(text);
+        if (normalized.isEmpty()) {
+            return List.of();
+        }
+        List<String> keys = new ArrayList<>();
+        keys.add(normalized);
+        int from = 0;
+        while (keys.size() < MAX_WORD_KEYS) {
+            int space = normalized.indexOf(' ', from);
+            if (space < 0) {
+                break;
+            }
+            keys.add(normalized.substring(space + 1));
+            from = space + 1;
+        }
+        return keys;
+    }
+
+    // Lower case, accents stripped, whitespace collapsed
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String stripped = Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+        return stripped.toLowerCase(Locale.ROOT).trim().replaceAll("\\s+", " ");
+    }
+
+    private static final class Node {
+        private static final Node[] NO_CHILDREN = new Node[0];
+        private static final Suggestion[] NO_SUGGESTIONS = new Suggestion[0];
+
+        String label;
+        // Sorted by the first char of the label
+        Node[] children = NO_CHILDREN;
+        final List<Suggestion> terminals = new ArrayList<>(1);
+        Suggestion[] top = NO_SUGGESTIONS;
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        Node child(char first) {
+            int index = indexOf(first);
+            return index >= 0 ? children[index] : null;
+        }
+
+        void addChild(Node child) {
+            int index = -indexOf(child.label.charAt(0)) - 1;
+            Node[] grown = new Node[children.length + 1];
+            System.arraycopy(children, 0, grown, 0, index);
+            grown[index] = child;
+            System.arraycopy(children, index, grown, index + 1, children.length - index);
+            children = grown;
+        }
+
+        void replaceChild(Node child) {
+            children[indexOf(child.label.charAt(0))] = child;
+        }
+
+        void removeChild(Node child) {
+            int index = indexOf(child.label.charAt(0));
+            Node[] shrunk = new Node[children.length - 1];
+            System.arraycopy(children, 0, shrunk, 0, index);
+            System.arraycopy(children, index + 1, shrunk, index, children.length - index - 1);
+            children = shrunk;
+        }
+
+        private int indexOf(char first) {
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char candidate = children[mid].label.charAt(0);
+                if (candidate < first) {
+                    low = mid + 1;
+                } else if (candidate > first) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+    }
+}
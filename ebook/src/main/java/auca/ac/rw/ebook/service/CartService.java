@@ -1,14 +1,23 @@
 // CartService.java
 package auca.ac.rw.ebook.service;
 
+import auca.ac.rw.ebook.dto.CartContents;
+import auca.ac.rw.ebook.dto.CartItemView;
+import auca.ac.rw.ebook.dto.CartLine;
+import auca.ac.rw.ebook.dto.CartOperation;
+import auca.ac.rw.ebook.dto.CartSummary;
 import auca.ac.rw.ebook.model.Cart;
 import auca.ac.rw.ebook.repository.CartRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -18,125 +27,154 @@ public class CartService {
     @Autowired
     private CartRepository cartRepository;
     
+    @Autowired
+    private CartStore cartStore;
+    
     // CRUD Operations
     public String saveCartItem(Cart cart) {
-        // Check if item already exists in cart
-        Optional<Cart> existingCartItem = cartRepository.findByUserIdAndBookId(
-            cart.getUser().getUser_id(), cart.getBook().getBook_id());
-        
-        if (existingCartItem.isPresent()) {
-            // Update quantity if item exists
-            Cart existingItem = existingCartItem.get();
-            existingItem.setQuantity(existingItem.getQuantity() + cart.getQuantity());
-            existingItem.setAdded_at(LocalDateTime.now());
-            cartRepository.save(existingItem);
-            return "Cart item quantity updated successfully";
-        } else {
-            // Add new item to cart
-            cart.setAdded_at(LocalDateTime.now());
-            cartRepository.save(cart);
-            return "Cart item saved successfully";
+        if (!validateCartItem(cart) || cart.getUser().getUser_id() == null || cart.getBook().getBook_id() == null) {
+            return "Invalid cart item";
         }
+        return addToCart(cart.getUser().getUser_id(), cart.getBook().getBook_id(), cart.getQuantity());
     }
     
-    public List<Cart> getAllCartItems() {
-        return cartRepository.findAll();
+    // Endpoints that read the cart table for one user write that user's pending changes first.
+    // Listings over all users read the table as of the last scheduled flush.
+    public List<CartItemView> getAllCartItems() {
+        return cartRepository.findAllViews();
     }
     
     public Optional<Cart> getCartItemById(UUID id) {
+        Optional<CartLine> line = findLine(id);
+        if (line.isEmpty()) {
+            return Optional.empty();
+        }
+        cartStore.flush(line.get().userId());
         return cartRepository.findById(id);
     }
     
+    // Only the quantity of an existing line can be changed; it keeps its user, book and added_at
     public String updateCartItem(Cart cart) {
-        if (cartRepository.existsById(cart.getCart_id())) {
-            cart.setAdded_at(LocalDateTime.now());
-            cartRepository.save(cart);
-            return "Cart item updated successfully";
-        } else {
+        Optional<CartLine> line = findLine(cart.getCart_id());
+        if (line.isEmpty() || cart.getQuantity() == null) {
             return "Cart item not found";
         }
+        CartStore.Result result = cartStore.setQuantity(line.get().userId(), line.get().bookId(), cart.getQuantity());
+        return isFound(result) ? "Cart item updated successfully" : "Cart item not found";
     }
     
     public String deleteCartItem(UUID id) {
-        if (cartRepository.existsById(id)) {
-            cartRepository.deleteById(id);
+        Optional<CartLine> line = findLine(id);
+        if (line.isPresent() && cartStore.remove(line.get().userId(), line.get().bookId()) == CartStore.Result.REMOVED) {
             return "Cart item deleted successfully";
         } else {
             return "Cart item not found";
         }
     }
     
-    // Custom business logic methods
-    public List<Cart> getCartItemsByUserId(UUID userId) {
-        return cartRepository.findByUserId(userId);
+    // Custom business logic methods - served from the cart store
+    public List<CartItemView> getCartItemsByUserId(UUID userId) {
+        return cartStore.items(userId);
     }
     
     public String clearUserCart(UUID userId) {
-        List<Cart> userCartItems = cartRepository.findByUserId(userId);
-        cartRepository.deleteAll(userCartItems);
+        cartStore.clear(userId);
         return "User cart cleared successfully";
     }
     
     public String removeCartItem(UUID userId, UUID bookId) {
-        cartRepository.deleteByUserIdAndBookId(userId, bookId);
+        cartStore.remove(userId, bookId);
         return "Cart item removed successfully";
     }
     
     public String updateCartItemQuantity(UUID userId, UUID bookId, Integer newQuantity) {
-        Optional<Cart> cartItem = cartRepository.findByUserIdAndBookId(userId, bookId);
-        if (cartItem.isPresent()) {
-            Cart item = cartItem.get();
-            item.setQuantity(newQuantity);
-            item.setAdded_at(LocalDateTime.now());
-            cartRepository.save(item);
-            return "Cart item quantity updated successfully";
-        } else {
-            return "Cart item not found";
+        if (newQuantity == null) {
+            return "Invalid quantity";
         }
+        CartStore.Result result = cartStore.setQuantity(userId, bookId, newQuantity);
+        return isFound(result) ? "Cart item quantity updated successfully" : "Cart item not found";
     }
     
     // existsBy... methods
     public Boolean checkCartItemExists(UUID userId, UUID bookId) {
-        return cartRepository.existsByUserIdAndBookId(userId, bookId);
+        return cartStore.contains(userId, bookId);
     }
     
     public Boolean checkUserHasCart(UUID userId) {
-        return cartRepository.existsByUserId(userId);
+        return cartStore.hasItems(userId);
     }
     
     // Sorting and Pagination
-    public Page<Cart> getCartItemsByUserIdWithPagination(UUID userId, Pageable pageable) {
-        return cartRepository.findByUserId(userId, pageable);
+    public Page<CartItemView> getCartItemsByUserIdWithPagination(UUID userId, Pageable pageable) {
+        cartStore.flush(userId);
+        return cartRepository.findViewsByUserId(userId, pageable);
     }
     
     public Page<Cart> getAllCartItemsWithPagination(Pageable pageable) {
         return cartRepository.findAll(pageable);
     }
     
-    // Statistics and calculations
+    // Statistics and calculations - kept per cart by the store, nothing is summed here
+    public CartSummary getCartSummary(UUID userId) {
+        return cartStore.summary(userId);
+    }
+    
     public Integer getTotalItemsInCart(UUID userId) {
-        Integer totalItems = cartRepository.countTotalItemsInCart(userId);
-        return totalItems != null ? totalItems : 0;
+        return cartStore.summary(userId).totalItems();
     }
     
-    public Double calculateCartTotal(UUID userId) {
-        Double cartTotal = cartRepository.calculateCartTotal(userId);
-        return cartTotal != null ? cartTotal : 0.0;
+    public BigDecimal calculateCartTotal(UUID userId) {
+        return cartStore.summary(userId).totalPrice();
     }
     
     public List<Cart> getUserCartItemsWithMinimumQuantity(UUID userId, Integer minQuantity) {
+        cartStore.flush(userId);
         return cartRepository.findUserCartItemsWithMinimumQuantity(userId, minQuantity);
     }
     
-    public List<Cart> getUserCartSortedByDate(UUID userId) {
-        return cartRepository.findUserCartByDateDesc(userId);
+    // Newest first; lines from before added_at was recorded go last
+    public List<CartItemView> getUserCartSortedByDate(UUID userId) {
+        List<CartItemView> items = new ArrayList<>(cartStore.items(userId));
+        items.sort(Comparator.comparing(CartItemView::addedAt, Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder())).reversed());
+        return items;
+    }
+    
+    public CartContents getCartContents(UUID userId) {
+        return cartStore.contents(userId);
+    }
+    
+    // Offline cart sync - every operation is checked before any is applied
+    public String syncCart(UUID userId, List<CartOperation> operations) {
+        if (operations == null || operations.isEmpty()) {
+            return "Invalid cart operations";
+        }
+        for (CartOperation operation : operations) {
+            if (!validateCartOperation(operation)) {
+                return "Invalid cart operation: " + operation;
+            }
+        }
+        return switch (cartStore.apply(userId, operations)) {
+            case USER_NOT_FOUND -> "User not found";
+            case BOOK_NOT_FOUND -> "Book not found";
+            default -> "Cart synced successfully";
+        };
+    }
+    
+    public Map<String, Object> getCartStoreMetrics() {
+        return cartStore.getMetrics();
     }
     
     // Business logic methods
     public String addToCart(UUID userId, UUID bookId, Integer quantity) {
-        // This would require BookService dependency to check stock
-        // For now, just return a placeholder response
-        return "Add to cart functionality - implement with BookService dependency";
+        if (quantity == null || quantity <= 0) {
+            return "Invalid quantity";
+        }
+        return switch (cartStore.add(userId, bookId, quantity)) {
+            case CREATED -> "Cart item saved successfully";
+            case UPDATED -> "Cart item quantity updated successfully";
+            case BOOK_NOT_FOUND -> "Book not found";
+            default -> "User not found";
+        };
     }
     
     // Validation methods
@@ -146,4 +184,28 @@ public class CartService {
                cart.getQuantity() != null && 
                cart.getQuantity() > 0;
     }
+    
+    public Boolean validateCartOperation(CartOperation operation) {
+        if (operation == null || operation.op() == null || operation.bookId() == null) {
+            return false;
+        }
+        return switch (operation.op()) {
+            case ADD -> operation.quantity() != null && operation.quantity() > 0;
+            case SET -> operation.quantity() != null && operation.quantity() >= 0;
+            case REMOVE -> true;
+        };
+    }
+    
+    // Helper methods
+    // Resolved by the cart store, so lines not written yet are found by their cart_id too
+    private Optional<CartLine> findLine(UUID cartId) {
+        if (cartId == null) {
+            return Optional.empty();
+        }
+        return cartStore.line(cartId);
+    }
+    
+    private static boolean isFound(CartStore.Result result) {
+        return result == CartStore.Result.UPDATED || result == CartStore.Result.REMOVED;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,860 @@
+// CartStore.java
+package auca.ac.rw.ebook.service;
+
+import auca.ac.rw.ebook.dto.BookSummary;
+import auca.ac.rw.ebook.dto.CartContents;
+import auca.ac.rw.ebook.dto.CartItemView;
+import auca.ac.rw.ebook.dto.CartLine;
+import auca.ac.rw.ebook.dto.CartOperation;
+import auca.ac.rw.ebook.dto.CartSummary;
+import auca.ac.rw.ebook.dto.UserSummary;
+import auca.ac.rw.ebook.model.Book;
+import auca.ac.rw.ebook.repository.CartRepository;
+import auca.ac.rw.ebook.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+// Per-user carts held in process. A cart is loaded from the database on first use; from then
+// on reads and changes are served here and changed lines are written back by a scheduled
+// flush, many users per transaction and one JDBC batch per statement kind, and once more on
+// shutdown. added_at is set when a line is created and kept through quantity changes.
+// Carts with nothing left to write are dropped after idle-seconds and reloaded when needed.
+// Adding to a cart that is not loaded is a single upsert and does not load it. Lines that were
+// only added to since the last flush are written as increments, everything else as the
+// quantity held here; both rely on the one-line-per-(user, book) index.
+// Each cart keeps its item count and total in cents, adjusted on every line change and
+// re-priced when a book in it is written, so the header badge never sums anything.
+@Component
+public class CartStore {
+
+    private static final Logger log = LoggerFactory.getLogger(CartStore.class);
+
+    public enum Result {
+        CREATED, UPDATED, REMOVED, USER_NOT_FOUND, BOOK_NOT_FOUND, LINE_NOT_FOUND
+    }
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookCatalogSnapshot catalogSnapshot;
+
+    @Value("${ebook.cart.flush-batch-size:500}")
+    private int flushBatchSize;
+
+    @Value("${ebook.cart.idle-seconds:1800}")
+    private long idleSeconds;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<UUID, UserCart> carts = new ConcurrentHashMap<>();
+
+    // Users whose cart is being loaded, or added to directly, while it is not in the map.
+    // Other callers for the same user wait on the future instead of inside the map's locks.
+    private final Map<UUID, CompletableFuture<Void>> cartWork = new ConcurrentHashMap<>();
+
+    // cart_id -> user of every line in a loaded cart, including lines not written yet
+    private final Map<UUID, UUID> lineOwners = new ConcurrentHashMap<>();
+
+    // Users whose cart has changes the database has not seen yet
+    private final Set<UUID> dirtyUsers = ConcurrentHashMap.newKeySet();
+
+    // One flush at a time, so a cart is never evicted while the flush is writing its lines
+    private final Object flushLock = new Object();
+
+    // Metrics
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong directAdds = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private final AtomicLong discardedLines = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong mergedDuplicates = new AtomicLong();
+    private volatile long lastFlushMillis;
+
+    private final class UserCart {
+        final UserSummary user;
+        // bookId -> line, in the order the lines were added
+        final Map<UUID, CartLine> lines = new LinkedHashMap<>();
+        // Changes since the last flush: lines to write as they are, increments of lines that
+        // were only added to, and books whose row goes first
+        final Set<UUID> changedBooks = new HashSet<>();
+        final Map<UUID, Integer> addedBooks = new HashMap<>();
+        final Set<UUID> removedBooks = new HashSet<>();
+        // Summary - lines count once their book is in the catalog, at the unit price noted here
+        int itemCount;
+        long totalCents;
+        final Map<UUID, Long> unitCents = new HashMap<>();
+        // Catalog version the loaded lines were priced at, until checked after the cart is published
+        final long pricedAt;
+        volatile boolean priceChecked;
+        volatile long lastAccess;
+        boolean evicted;
+        // Held while the cart's pending changes are taken and written, so writes of one cart
+        // commit in the order they were taken
+        final ReentrantLock writing = new ReentrantLock();
+
+        UserCart(UserSummary user, long pricedAt) {
+            this.user = user;
+            this.pricedAt = pricedAt;
+        }
+
+        void put(CartLine line) {
+            replaced(lines.put(line.bookId(), line), line);
+            addedBooks.remove(line.bookId());
+            changedBooks.add(line.bookId());
+        }
+
+        void add(CartLine line, int quantity) {
+            replaced(lines.put(line.bookId(), line), line);
+            if (!changedBooks.contains(line.bookId())) {
+                addedBooks.merge(line.bookId(), quantity, Integer::sum);
+            }
+        }
+
+        CartLine remove(UUID bookId) {
+            CartLine line = lines.remove(bookId);
+            if (line != null) {
+                replaced(line, null);
+                changedBooks.remove(bookId);
+                addedBooks.remove(bookId);
+                removedBooks.add(bookId);
+            }
+            return line;
+        }
+
+        CartLine lineById(UUID cartId) {
+            for (CartLine line : lines.values()) {
+                if (line.cartId().equals(cartId)) {
+                    return line;
+                }
+            }
+            return null;
+        }
+
+        // Keeps the summary and the cart_id index in step with a line change
+        void replaced(CartLine previous, CartLine current) {
+            counted(previous, current);
+            if (previous != null && (current == null || !previous.cartId().equals(current.cartId()))) {
+                lineOwners.remove(previous.cartId(), user.userId());
+            }
+            if (current != null) {
+                lineOwners.put(current.cartId(), user.userId());
+            }
+        }
+
+        void unindex() {
+            lines.values().forEach(line -> lineOwners.remove(line.cartId(), user.userId()));
+        }
+
+        // Takes the previous line out of the summary and puts the current one in at today's price
+        void counted(CartLine previous, CartLine current) {
+            if (previous != null) {
+                Long cents = unitCents.remove(previous.bookId());
+                if (cents != null) {
+                    itemCount -= previous.quantity();
+                    totalCents -= cents * previous.quantity();
+                }
+            }
+            if (current != null) {
+                Optional<Book> book = catalogSnapshot.getBook(current.bookId());
+                if (book.isPresent()) {
+                    long cents = cents(book.get().getPrice());
+                    unitCents.put(current.bookId(), cents);
+                    itemCount += current.quantity();
+                    totalCents += cents * current.quantity();
+                }
+            }
+        }
+
+        CartSummary summary() {
+            return new CartSummary(itemCount, BigDecimal.valueOf(totalCents, 2));
+        }
+
+        boolean isDirty() {
+            return !changedBooks.isEmpty() || !addedBooks.isEmpty() || !removedBooks.isEmpty();
+        }
+
+        Map<UUID, CartLine> linesOf(Set<UUID> bookIds) {
+            Map<UUID, CartLine> held = new HashMap<>();
+            for (UUID bookId : bookIds) {
+                held.put(bookId, lines.get(bookId));
+            }
+            return held;
+        }
+    }
+
+    // What one flush writes for one cart
+    private record Pending(UserCart cart, List<CartLine> removed, List<CartLine> set, List<CartLine> added) {
+        int size() {
+            return removed.size() + set.size() + added.size();
+        }
+    }
+
+    // The flush commits on its own, independent of whatever request triggered it
+    public CartStore(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    // Read operations
+    // Lines whose book is gone from the catalog are left out
+    public List<CartItemView> items(UUID userId) {
+        UserCart cart = cart(userId);
+        if (cart == null) {
+            return List.of();
+        }
+        List<CartLine> lines;
+        synchronized (cart) {
+            lines = List.copyOf(cart.lines.values());
+        }
+        return itemsOf(cart, lines);
+    }
+
+    public boolean contains(UUID userId, UUID bookId) {
+        Boolean contains = read(userId, cart -> cart.lines.containsKey(bookId));
+        return Boolean.TRUE.equals(contains);
+    }
+
+    public boolean hasItems(UUID userId) {
+        Boolean hasItems = read(userId, cart -> !cart.lines.isEmpty());
+        return Boolean.TRUE.equals(hasItems);
+    }
+
+    // Items and totals are read in one hold of the cart, so a concurrent change shows in both or neither
+    public CartContents contents(UUID userId) {
+        CartContents contents = read(userId, cart -> {
+            CartSummary summary = cart.summary();
+            return new CartContents(itemsOf(cart, cart.lines.values()), summary.totalItems(), summary.totalPrice());
+        });
+        return contents != null ? contents : new CartContents(List.of(), 0, BigDecimal.valueOf(0, 2));
+    }
+
+    // A line by its cart_id. Lines of loaded carts, written or not, are found through the index;
+    // any other line is looked up in the cart table, which holds all of a cart that is not
+    // loaded. Either way the answer is the line as the cart holds it now.
+    public Optional<CartLine> line(UUID cartId) {
+        UUID userId = lineOwners.get(cartId);
+        if (userId == null) {
+            Optional<CartLine> stored = cartRepository.findLineById(cartId);
+            if (stored.isEmpty()) {
+                return Optional.empty();
+            }
+            userId = stored.get().userId();
+        }
+        return Optional.ofNullable(read(userId, cart -> cart.lineById(cartId)));
+    }
+
+    public CartSummary summary(UUID userId) {
+        CartSummary summary = read(userId, UserCart::summary);
+        return summary != null ? summary : new CartSummary(0, BigDecimal.valueOf(0, 2));
+    }
+
+    // Write operations
+    public Result add(UUID userId, UUID bookId, int quantity) {
+        if (catalogSnapshot.getBook(bookId).isEmpty()) {
+            return Result.BOOK_NOT_FOUND;
+        }
+        while (true) {
+            UserCart cart = carts.get(userId);
+            if (cart == null) {
+                // A load of this cart waits until the row is written
+                Result[] written = new Result[1];
+                if (whileNotLoaded(userId, () -> written[0] = addToDatabase(userId, bookId, quantity))) {
+                    return written[0];
+                }
+                continue;
+            }
+            synchronized (cart) {
+                if (!cart.evicted) {
+                    cart.lastAccess = System.currentTimeMillis();
+                    Result result = addLine(cart, bookId, quantity);
+                    dirtyUsers.add(userId);
+                    return result;
+                }
+            }
+        }
+    }
+
+    // A quantity of zero or less removes the line
+    public Result setQuantity(UUID userId, UUID bookId, int quantity) {
+        Result result = update(userId, cart -> {
+            CartLine line = cart.lines.get(bookId);
+            if (line == null) {
+                return Result.LINE_NOT_FOUND;
+            }
+            if (quantity <= 0) {
+                cart.remove(bookId);
+                return Result.REMOVED;
+            }
+            cart.put(withQuantity(line, quantity));
+            return Result.UPDATED;
+        });
+        return result != null ? result : Result.USER_NOT_FOUND;
+    }
+
+    public Result remove(UUID userId, UUID bookId) {
+        Result result = update(userId, cart -> cart.remove(bookId) != null ? Result.REMOVED : Result.LINE_NOT_FOUND);
+        return result != null ? result : Result.USER_NOT_FOUND;
+    }
+
+    public void clear(UUID userId) {
+        update(userId, cart -> {
+            for (UUID bookId : List.copyOf(cart.lines.keySet())) {
+                cart.remove(bookId);
+            }
+            return Result.REMOVED;
+        });
+    }
+
+    // Applies every operation or none. The changes, together with anything still pending for
+    // the cart, are written in one transaction before this returns; if that fails the lines the
+    // sync changed are put back and the exception is rethrown. The cart's monitor is only held
+    // while the operations are applied, so reads and single-line changes go on during the write;
+    // other syncs and the flush of this cart wait for it. Books are checked up front so a bad
+    // line rejects the whole sync.
+    public Result apply(UUID userId, List<CartOperation> operations) {
+        for (CartOperation operation : operations) {
+            if (operation.op() != CartOperation.Type.REMOVE && catalogSnapshot.getBook(operation.bookId()).isEmpty()) {
+                return Result.BOOK_NOT_FOUND;
+            }
+        }
+        while (true) {
+            UserCart cart = cart(userId);
+            if (cart == null) {
+                return Result.USER_NOT_FOUND;
+            }
+            cart.writing.lock();
+            try {
+                Set<UUID> books = new HashSet<>();
+                operations.forEach(operation -> books.add(operation.bookId()));
+                Map<UUID, CartLine> before;
+                Map<UUID, CartLine> after;
+                Pending pending;
+                synchronized (cart) {
+                    if (cart.evicted) {
+                        continue;
+                    }
+                    before = cart.linesOf(books);
+                    for (CartOperation operation : operations) {
+                        switch (operation.op()) {
+                            case ADD -> addLine(cart, operation.bookId(), operation.quantity());
+                            case SET -> setLine(cart, operation.bookId(), operation.quantity());
+                            case REMOVE -> cart.remove(operation.bookId());
+                        }
+                    }
+                    after = cart.linesOf(books);
+                    pending = takePending(cart);
+                }
+                if (pending != null) {
+                    try {
+                        writeInTransaction(List.of(pending));
+                    } catch (RuntimeException e) {
+                        undo(cart, before, after);
+                        requeue(pending);
+                        failedFlushes.incrementAndGet();
+                        throw e;
+                    }
+                }
+                return Result.UPDATED;
+            } finally {
+                cart.writing.unlock();
+            }
+        }
+    }
+
+    // Called after a book was written; carts holding it are re-totalled at its current price
+    public void bookChanged(UUID bookId) {
+        for (UserCart cart : carts.values()) {
+            synchronized (cart) {
+                CartLine line = cart.lines.get(bookId);
+                if (line != null) {
+                    cart.counted(line, line);
+                }
+            }
+        }
+    }
+
+    // Called after a book was deleted; its cart rows went with it
+    public void bookRemoved(UUID bookId) {
+        for (UUID userId : carts.keySet()) {
+            update(userId, cart -> cart.remove(bookId));
+        }
+    }
+
+    // Called after a user was deleted; their cart rows went with them
+    public void userRemoved(UUID userId) {
+        UserCart cart = carts.remove(userId);
+        if (cart != null) {
+            synchronized (cart) {
+                cart.evicted = true;
+                cart.unindex();
+            }
+        }
+        dirtyUsers.remove(userId);
+    }
+
+    // Write-behind
+    @Scheduled(fixedDelayString = "${ebook.cart.flush-interval-ms:2000}")
+    public void flush() {
+        synchronized (flushLock) {
+            long start = System.nanoTime();
+            List<Pending> batch = new ArrayList<>();
+            int rows = 0;
+            for (UUID userId : List.copyOf(dirtyUsers)) {
+                dirtyUsers.remove(userId);
+                UserCart cart = carts.get(userId);
+                if (cart == null) {
+                    continue;
+                }
+                // A sync is writing this cart; whatever it leaves pending is picked up next time
+                if (!cart.writing.tryLock()) {
+                    dirtyUsers.add(userId);
+                    continue;
+                }
+                Pending pending = takePending(cart);
+                if (pending == null) {
+                    cart.writing.unlock();
+                    continue;
+                }
+                batch.add(pending);
+                rows += pending.size();
+                if (rows >= flushBatchSize) {
+                    writeAndRelease(batch);
+                    batch = new ArrayList<>();
+                    rows = 0;
+                }
+            }
+            writeAndRelease(batch);
+            evictIdle();
+            lastFlushMillis = (System.nanoTime() - start) / 1_000_000;
+        }
+    }
+
+    // Writes one user's pending changes now, for reads that go to the cart table
+    public void flush(UUID userId) {
+        UserCart cart = carts.get(userId);
+        if (cart == null) {
+            return;
+        }
+        cart.writing.lock();
+        Pending pending = takePending(cart);
+        if (pending == null) {
+            cart.writing.unlock();
+            return;
+        }
+        writeAndRelease(List.of(pending));
+    }
+
+    // Nothing changed in a cart is lost on a regular shutdown
+    @PreDestroy
+    public void flushAll() {
+        flush();
+    }
+
+    // Duplicate lines left from before the index are merged once at startup
+    @EventListener(ApplicationReadyEvent.class)
+    public void enforceOneLinePerBook() {
+        Integer merged = transactionTemplate.execute(status -> cartRepository.enforceOneLinePerBook());
+        mergedDuplicates.addAndGet(merged != null ? merged : 0);
+    }
+
+    // Metrics
+    public Map<String, Object> getMetrics() {
+        int lines = 0;
+        for (UserCart cart : carts.values()) {
+            synchronized (cart) {
+                lines += cart.lines.size();
+            }
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("carts", carts.size());
+        metrics.put("lines", lines);
+        metrics.put("dirtyCarts", dirtyUsers.size());
+        metrics.put("loads", loads.get());
+        metrics.put("directAdds", directAdds.get());
+        metrics.put("flushes", flushes.get());
+        metrics.put("rowsWritten", rowsWritten.get());
+        metrics.put("failedFlushes", failedFlushes.get());
+        metrics.put("discardedLines", discardedLines.get());
+        metrics.put("evictions", evictions.get());
+        metrics.put("mergedDuplicates", mergedDuplicates.get());
+        metrics.put("lastFlushMillis", lastFlushMillis);
+        metrics.put("timestamp", LocalDateTime.now());
+        return metrics;
+    }
+
+    // Helper methods
+    private List<CartItemView> itemsOf(UserCart cart, Collection<CartLine> lines) {
+        List<CartItemView> items = new ArrayList<>(lines.size());
+        for (CartLine line : lines) {
+            Optional<Book> book = catalogSnapshot.getBook(line.bookId());
+            if (book.isPresent()) {
+                Book b = book.get();
+                items.add(new CartItemView(line.cartId(), cart.user,
+                        BookSummary.of(b.getBook_id(), b.getTitle(), b.getAuthor(), b.getPrice()),
+                        line.quantity(), line.addedAt()));
+            }
+        }
+        return items;
+    }
+
+    // Returns null when the user does not exist
+    private UserCart cart(UUID userId) {
+        UserCart cart = carts.get(userId);
+        while (cart == null) {
+            UserCart[] loaded = new UserCart[1];
+            if (whileNotLoaded(userId, () -> {
+                loaded[0] = load(userId);
+                if (loaded[0] != null) {
+                    carts.put(userId, loaded[0]);
+                }
+            })) {
+                if (loaded[0] == null) {
+                    return null;
+                }
+                cart = loaded[0];
+            } else {
+                cart = carts.get(userId);
+            }
+        }
+        if (!cart.priceChecked) {
+            checkPrices(cart);
+        }
+        cart.lastAccess = System.currentTimeMillis();
+        return cart;
+    }
+
+    // bookChanged only reaches carts already in the map. A book written while a cart was being
+    // loaded shows up as a newer catalog version, and then the whole cart is priced again.
+    private void checkPrices(UserCart cart) {
+        synchronized (cart) {
+            if (!cart.priceChecked) {
+                if (cart.pricedAt != catalogSnapshot.getVersion()) {
+                    for (CartLine line : cart.lines.values()) {
+                        cart.counted(line, line);
+                    }
+                }
+                cart.priceChecked = true;
+            }
+        }
+    }
+
+    private Result addLine(UserCart cart, UUID bookId, int quantity) {
+        CartLine line = cart.lines.get(bookId);
+        if (line == null) {
+            cart.add(new CartLine(UUID.randomUUID(), cart.user.userId(), bookId, quantity, LocalDateTime.now()), quantity);
+            return Result.CREATED;
+        }
+        cart.add(withQuantity(line, line.quantity() + quantity), quantity);
+        return Result.UPDATED;
+    }
+
+    // Unlike setQuantity, creates the line when the cart does not have it
+    private void setLine(UserCart cart, UUID bookId, int quantity) {
+        CartLine line = cart.lines.get(bookId);
+        if (quantity <= 0) {
+            cart.remove(bookId);
+        } else if (line == null) {
+            cart.put(new CartLine(UUID.randomUUID(), cart.user.userId(), bookId, quantity, LocalDateTime.now()));
+        } else {
+            cart.put(withQuantity(line, quantity));
+        }
+    }
+
+    // Runs database work for a user whose cart is not in the map, one caller per user at a time.
+    // Returns false without running it when the cart is in the map by the time it is this
+    // caller's turn.
+    private boolean whileNotLoaded(UUID userId, Runnable work) {
+        while (true) {
+            if (carts.containsKey(userId)) {
+                return false;
+            }
+            CompletableFuture<Void> claim = new CompletableFuture<>();
+            CompletableFuture<Void> running = cartWork.putIfAbsent(userId, claim);
+            if (running != null) {
+                running.join();
+                continue;
+            }
+            try {
+                if (carts.containsKey(userId)) {
+                    return false;
+                }
+                work.run();
+                return true;
+            } finally {
+                cartWork.remove(userId, claim);
+                claim.complete(null);
+            }
+        }
+    }
+
+    private UserCart load(UUID userId) {
+        Optional<UserSummary> user = userRepository.findSummaryById(userId);
+        if (user.isEmpty()) {
+            return null;
+        }
+        UserCart cart = new UserCart(user.get(), catalogSnapshot.getVersion());
+        cart.lastAccess = System.currentTimeMillis();
+        for (CartLine line : cartRepository.findLinesByUserId(userId)) {
+            cart.lines.put(line.bookId(), line);
+            cart.replaced(null, line);
+        }
+        loads.incrementAndGet();
+        return cart;
+    }
+
+    // The insert fails on the user's foreign key when there is no such user
+    private Result addToDatabase(UUID userId, UUID bookId, int quantity) {
+        try {
+            Boolean inserted = cartRepository.addToCart(userId, bookId, quantity);
+            directAdds.incrementAndGet();
+            return Boolean.TRUE.equals(inserted) ? Result.CREATED : Result.UPDATED;
+        } catch (DataIntegrityViolationException e) {
+            return catalogSnapshot.getBook(bookId).isPresent() ? Result.USER_NOT_FOUND : Result.BOOK_NOT_FOUND;
+        }
+    }
+
+    private <T> T read(UUID userId, Function<UserCart, T> reader) {
+        UserCart cart = cart(userId);
+        if (cart == null) {
+            return null;
+        }
+        synchronized (cart) {
+            return reader.apply(cart);
+        }
+    }
+
+    // Retries on a freshly loaded cart if this one was evicted in between
+    private <T> T update(UUID userId, Function<UserCart, T> change) {
+        while (true) {
+            UserCart cart = cart(userId);
+            if (cart == null) {
+                return null;
+            }
+            synchronized (cart) {
+                if (!cart.evicted) {
+                    T result = change.apply(cart);
+                    if (cart.isDirty()) {
+                        dirtyUsers.add(userId);
+                    }
+                    return result;
+                }
+            }
+        }
+    }
+
+    private Pending takePending(UserCart cart) {
+        synchronized (cart) {
+            if (cart.evicted || !cart.isDirty()) {
+                return null;
+            }
+            UUID userId = cart.user.userId();
+            List<CartLine> removed = new ArrayList<>(cart.removedBooks.size());
+            for (UUID bookId : cart.removedBooks) {
+                removed.add(new CartLine(null, userId, bookId, 0, null));
+            }
+            List<CartLine> set = new ArrayList<>(cart.changedBooks.size());
+            for (UUID bookId : cart.changedBooks) {
+                set.add(cart.lines.get(bookId));
+            }
+            // The line's own added_at goes with the increment in case the row is not there yet
+            List<CartLine> added = new ArrayList<>(cart.addedBooks.size());
+            cart.addedBooks.forEach((bookId, quantity) -> added.add(withQuantity(cart.lines.get(bookId), quantity)));
+            cart.removedBooks.clear();
+            cart.changedBooks.clear();
+            cart.addedBooks.clear();
+            return new Pending(cart, removed, set, added);
+        }
+    }
+
+    private void writeAndRelease(List<Pending> batch) {
+        try {
+            write(batch);
+        } finally {
+            batch.forEach(pending -> pending.cart().writing.unlock());
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            writeInTransaction(batch);
+        } catch (DataIntegrityViolationException e) {
+            // Most likely a user or book deleted under a pending line - narrow it down to that line
+            if (batch.size() == 1) {
+                writeLineByLine(batch.get(0));
+                return;
+            }
+            for (Pending pending : batch) {
+                write(List.of(pending));
+            }
+        } catch (RuntimeException e) {
+            failedFlushes.incrementAndGet();
+            batch.forEach(this::requeue);
+        }
+    }
+
+    // Each line in its own transaction: lines the database refuses are discarded, the others
+    // are written, or queued again if the write failed for another reason
+    private void writeLineByLine(Pending pending) {
+        List<Pending> lines = new ArrayList<>(pending.size());
+        pending.removed().forEach(line -> lines.add(new Pending(pending.cart(), List.of(line), List.of(), List.of())));
+        pending.set().forEach(line -> lines.add(new Pending(pending.cart(), List.of(), List.of(line), List.of())));
+        pending.added().forEach(line -> lines.add(new Pending(pending.cart(), List.of(), List.of(), List.of(line))));
+        for (Pending line : lines) {
+            try {
+                writeInTransaction(List.of(line));
+            } catch (DataIntegrityViolationException e) {
+                discard(line, e);
+            } catch (RuntimeException e) {
+                failedFlushes.incrementAndGet();
+                requeue(line);
+            }
+        }
+    }
+
+    // Removals go first, so a line removed and added again ends up as a fresh row
+    private void writeInTransaction(List<Pending> batch) {
+        List<CartLine> removed = new ArrayList<>();
+        List<CartLine> set = new ArrayList<>();
+        List<CartLine> added = new ArrayList<>();
+        for (Pending pending : batch) {
+            removed.addAll(pending.removed());
+            set.addAll(pending.set());
+            added.addAll(pending.added());
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            cartRepository.removeLines(removed);
+            cartRepository.setLines(set);
+            cartRepository.addLines(added);
+        });
+        flushes.incrementAndGet();
+        rowsWritten.addAndGet(removed.size() + set.size() + added.size());
+    }
+
+    // Puts back the lines a failed sync changed. A line changed again since, by a request that ran
+    // while the sync was writing, is newer than the sync and stays.
+    private void undo(UserCart cart, Map<UUID, CartLine> before, Map<UUID, CartLine> after) {
+        synchronized (cart) {
+            if (cart.evicted) {
+                return;
+            }
+            before.forEach((bookId, line) -> {
+                CartLine current = cart.lines.get(bookId);
+                if (current != after.get(bookId) || current == line) {
+                    return;
+                }
+                if (line != null) {
+                    cart.lines.put(bookId, line);
+                } else {
+                    cart.lines.remove(bookId);
+                }
+                cart.replaced(current, line);
+            });
+        }
+    }
+
+    // Puts back what a failed flush took. Increments cannot be replayed safely on top of later
+    // changes, so every book it touched is written again as the quantity held now.
+    private void requeue(Pending pending) {
+        UserCart cart = pending.cart();
+        synchronized (cart) {
+            if (cart.evicted) {
+                return;
+            }
+            Set<UUID> books = new HashSet<>();
+            pending.removed().forEach(line -> books.add(line.bookId()));
+            pending.set().forEach(line -> books.add(line.bookId()));
+            pending.added().forEach(line -> books.add(line.bookId()));
+            for (UUID bookId : books) {
+                if (cart.lines.containsKey(bookId)) {
+                    cart.addedBooks.remove(bookId);
+                    cart.changedBooks.add(bookId);
+                } else {
+                    cart.removedBooks.add(bookId);
+                }
+            }
+            dirtyUsers.add(cart.user.userId());
+        }
+    }
+
+    // The database refused a line; it is taken out of the cart so the cart matches the table
+    private void discard(Pending line, DataIntegrityViolationException e) {
+        UserCart cart = line.cart();
+        UUID bookId = Stream.of(line.removed(), line.set(), line.added())
+                .flatMap(List::stream).findFirst().map(CartLine::bookId).orElseThrow();
+        synchronized (cart) {
+            CartLine held = cart.lines.remove(bookId);
+            if (held != null) {
+                cart.replaced(held, null);
+            }
+            cart.changedBooks.remove(bookId);
+            cart.addedBooks.remove(bookId);
+        }
+        discardedLines.incrementAndGet();
+        log.warn("Discarded cart line of user {} for book {}: {}", cart.user.userId(), bookId,
+                e.getMostSpecificCause().getMessage());
+    }
+
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleSeconds * 1000;
+        for (UserCart cart : carts.values()) {
+            if (cart.lastAccess < cutoff) {
+                synchronized (cart) {
+                    // A cart being written is not dirty any more but its rows are not there yet
+                    if (!cart.evicted && !cart.isDirty() && !cart.writing.isLocked() && cart.lastAccess < cutoff) {
+                        cart.evicted = true;
+                        cart.unindex();
+                        carts.remove(cart.user.userId(), cart);
+                        evictions.incrementAndGet();
+                    }
+                }
+            }
+        }
+    }
+
+    private static long cents(BigDecimal price) {
+        return price != null ? price.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue() : 0;
+    }
+
+    private static CartLine withQuantity(CartLine line, int quantity) {
+        return new CartLine(line.cartId(), line.userId(), line.bookId(), quantity, line.addedAt());
+    }
+}
@@ -1,26 +1,71 @@
 // CategoryService.java
 package auca.ac.rw.ebook.service;
 
+import auca.ac.rw.ebook.dto.CategoryBookCount;
+import auca.ac.rw.ebook.dto.EntityVersion;
 import auca.ac.rw.ebook.model.Category;
 import auca.ac.rw.ebook.repository.CategoryRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
+// Reads are served from an in-memory copy of the categories table, loaded on first use
+// and replaced as a whole after every write - the table is tiny and read-mostly.
+// Book and in-stock counts per category come from the catalog snapshot, which adjusts
+// them on every BookService write.
 @Service
 public class CategoryService {
     
     @Autowired
     private CategoryRepository categoryRepository;
     
+    @Autowired
+    private BookSuggestIndex suggestIndex;
+    
+    @Autowired
+    private BookCatalogSnapshot catalogSnapshot;
+    
+    private final Object writeLock = new Object();
+    
+    // null until the first load from the database
+    private volatile Categories categories;
+    
+    private record Categories(Map<UUID, Category> byId, Map<String, Category> byName, List<Category> all,
+                              EntityVersion version) {
+        
+        // Same tag as a count plus newest updated_at over the table
+        static Categories of(Collection<Category> rows) {
+            Map<UUID, Category> byId = new HashMap<>();
+            Map<String, Category> byName = new HashMap<>();
+            LocalDateTime newest = null;
+            for (Category category : rows) {
+                byId.put(category.getCategory_id(), category);
+                byName.put(category.getCategory_name(), category);
+                if (newest == null || (category.getUpdated_at() != null && category.getUpdated_at().isAfter(newest))) {
+                    newest = category.getUpdated_at();
+                }
+            }
+            List<Category> all = new ArrayList<>(rows);
+            all.sort(Comparator.comparing(Category::getCategory_name, Comparator.nullsLast(Comparator.naturalOrder())));
+            return new Categories(byId, byName, List.copyOf(all), new EntityVersion((long) all.size(), newest));
+        }
+    }
+    
     // CRUD Operations
     public String saveCategory(Category category) {
-        if (!categoryRepository.existsByCategoryName(category.getCategory_name())) {
-            categoryRepository.save(category);
+        if (!checkCategoryExists(category.getCategory_name())) {
+            categoryWritten(categoryRepository.save(category));
             return "Category saved successfully";
         } else {
             return "Category with this name already exists";
@@ -28,16 +73,20 @@ public class CategoryService {
     }
     
     public List<Category> getAllCategories() {
-        return categoryRepository.findAll();
+        return categories().all();
+    }
+    
+    public EntityVersion getAllCategoriesVersion() {
+        return categories().version();
     }
     
     public Optional<Category> getCategoryById(UUID id) {
-        return categoryRepository.findById(id);
+        return Optional.ofNullable(categories().byId().get(id));
     }
     
     public String updateCategory(Category category) {
         if (categoryRepository.existsById(category.getCategory_id())) {
-            categoryRepository.save(category);
+            categoryWritten(categoryRepository.save(category));
             return "Category updated successfully";
         } else {
             return "Category not found";
@@ -51,6 +100,7 @@ public class CategoryService {
                 return "Cannot delete category: It has associated books";
             }
             categoryRepository.deleteById(id);
+            categoryRemoved(id);
             return "Category deleted successfully";
         } else {
             return "Category not found";
@@ -59,7 +109,7 @@ public class CategoryService {
     
     // findBy... methods
     public Optional<Category> getCategoryByName(String name) {
-        return categoryRepository.findByCategoryName(name);
+        return Optional.ofNullable(categories().byName().get(name));
     }
     
     public List<Category> searchCategoriesByName(String name) {
@@ -68,7 +118,7 @@ public class CategoryService {
     
     // existsBy... methods
     public Boolean checkCategoryExists(String name) {
-        return categoryRepository.existsByCategoryName(name);
+        return name != null && categories().byName().containsKey(name);
     }
     
     // Sorting and Pagination
@@ -82,15 +132,60 @@ public class CategoryService {
     
     // Business logic methods
     public Boolean checkCategoryHasBooks(UUID categoryId) {
-        return categoryRepository.hasBooks(categoryId);
+        return catalogSnapshot.countBooksInCategory(categoryId) > 0;
+    }
+    
+    public List<CategoryBookCount> getCategoryBookCounts() {
+        List<Category> all = categories().all();
+        List<CategoryBookCount> counts = new ArrayList<>(all.size());
+        for (Category category : all) {
+            UUID id = category.getCategory_id();
+            counts.add(new CategoryBookCount(id, category.getCategory_name(),
+                    catalogSnapshot.countBooksInCategory(id), catalogSnapshot.countInStockBooksInCategory(id)));
+        }
+        return counts;
     }
     
     public Long getTotalCategoriesCount() {
-        return categoryRepository.count();
+        return (long) categories().all().size();
     }
     
     // Validation methods
     public Boolean validateCategoryName(String categoryName) {
         return categoryName != null && !categoryName.trim().isEmpty() && categoryName.length() >= 2;
     }
+    
+    // Helper methods
+    private Categories categories() {
+        Categories current = categories;
+        if (current == null) {
+            synchronized (writeLock) {
+                current = categories;
+                if (current == null) {
+                    current = Categories.of(categoryRepository.findAll());
+                    categories = current;
+                }
+            }
+        }
+        return current;
+    }
+    
+    private void categoryWritten(Category category) {
+        synchronized (writeLock) {
+            Map<UUID, Category> rows = new LinkedHashMap<>(categories().byId());
+            rows.put(category.getCategory_id(), category);
+            categories = Categories.of(rows.values());
+        }
+        suggestIndex.categoryChanged(category);
+        catalogSnapshot.categoryChanged(category);
+    }
+    
+    private void categoryRemoved(UUID id) {
+        synchronized (writeLock) {
+            Map<UUID, Category> rows = new LinkedHashMap<>(categories().byId());
+            rows.remove(id);
+            categories = Categories.of(rows.values());
+        }
+        suggestIndex.categoryRemoved(id);
+    }
 }
\ No newline at end of file
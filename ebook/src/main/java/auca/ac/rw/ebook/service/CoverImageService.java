@@ -0,0 +1,340 @@
+// CoverImageService.java
+package auca.ac.rw.ebook.service;
+
+import auca.ac.rw.ebook.model.Book;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Cover thumbnails, generated once per source image on a small bounded executor.
+// Files are content-addressed by the SHA-256 of the source cover, so an unchanged cover is
+// never re-rendered and books sharing a cover share thumbnails. The hash doubles as a
+// strong ETag; the request thread never decodes or scales images.
+@Service
+public class CoverImageService {
+
+    public enum Size {
+        SMALL(96), MEDIUM(240), LARGE(480), ORIGINAL(0);
+
+        private final int width;
+
+        Size(int width) {
+            this.width = width;
+        }
+
+        public static Optional<Size> parse(String value) {
+            try {
+                return Optional.of(valueOf(value.trim().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                return Optional.empty();
+            }
+        }
+    }
+
+    // A cover ready to send; etag is null when the original is sent because rendering is pending
+    public record Cover(Path path, String etag, String contentType) {}
+
+    private record CoverEntry(String coverImage, Path source, long sourceSize, long sourceModified, String sha256) {}
+
+    @Autowired
+    private BookCatalogSnapshot catalogSnapshot;
+
+    @Autowired
+    private FileStorage fileStorage;
+
+    private final Path cacheDir;
+
+    private final ThreadPoolExecutor executor;
+
+    // Bounds how many warm-up tasks sit in the queue at once, leaving the rest of it for requests
+    private final Semaphore warmUpPermits;
+    private volatile boolean warmingUp;
+
+    private final Map<UUID, CoverEntry> entries = new ConcurrentHashMap<>();
+    private final Set<UUID> pending = ConcurrentHashMap.newKeySet();
+
+    // Metrics
+    private final AtomicLong rendered = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong thumbnailsServed = new AtomicLong();
+    private final AtomicLong originalsServed = new AtomicLong();
+
+    public CoverImageService(@Value("${ebook.covers.cache-dir:storage/covers}") String cacheDir,
+                             @Value("${ebook.covers.threads:2}") int threads,
+                             @Value("${ebook.covers.queue-size:1000}") int queueSize) {
+        this.cacheDir = Paths.get(cacheDir).toAbsolutePath().normalize();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "cover-thumbnails-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.warmUpPermits = new Semaphore(Math.max(1, queueSize / 2));
+    }
+
+    // Warm up every existing cover from its own thread, which waits for room in the queue
+    // instead of having most of the catalog rejected
+    @EventListener(ApplicationReadyEvent.class)
+    public void generateAll() {
+        Thread thread = new Thread(this::warmUp, "cover-warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Called from BookService after a book was written
+    public void schedule(Book book) {
+        UUID bookId = book.getBook_id();
+        String coverImage = book.getCover_image();
+        if (coverImage == null || coverImage.isBlank()) {
+            entries.remove(bookId);
+            return;
+        }
+        submit(bookId, coverImage, null);
+    }
+
+    public void forget(UUID bookId) {
+        entries.remove(bookId);
+    }
+
+    // Returns the thumbnail if it is ready, otherwise the original cover and schedules rendering
+    public Optional<Cover> findCover(UUID bookId, Size size) {
+        Optional<Book> book = catalogSnapshot.getBook(bookId);
+        if (book.isEmpty()) {
+            return Optional.empty();
+        }
+        CoverEntry entry = entries.get(bookId);
+        if (entry != null && entry.coverImage().equals(book.get().getCover_image()) && isCurrent(entry)) {
+            Path path = size == Size.ORIGINAL ? entry.source() : thumbnailPath(entry.sha256(), size);
+            if (Files.isRegularFile(path)) {
+                if (size == Size.ORIGINAL) {
+                    originalsServed.incrementAndGet();
+                    return Optional.of(new Cover(path, etag(entry.sha256(), size), contentType(path)));
+                }
+                thumbnailsServed.incrementAndGet();
+                return Optional.of(new Cover(path, etag(entry.sha256(), size), "image/jpeg"));
+            }
+        }
+        schedule(book.get());
+        Optional<Path> source = fileStorage.resolve(book.get().getCover_image());
+        source.ifPresent(path -> originalsServed.incrementAndGet());
+        return source.map(path -> new Cover(path, null, contentType(path)));
+    }
+
+    // Metrics
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("cacheDir", cacheDir.toString());
+        metrics.put("coversIndexed", entries.size());
+        metrics.put("pending", pending.size());
+        metrics.put("queued", executor.getQueue().size());
+        metrics.put("warmingUp", warmingUp);
+        metrics.put("rendered", rendered.get());
+        metrics.put("reused", reused.get());
+        metrics.put("rejected", rejected.get());
+        metrics.put("failures", failures.get());
+        metrics.put("thumbnailsServed", thumbnailsServed.get());
+        metrics.put("originalsServed", originalsServed.get());
+        return metrics;
+    }
+
+    // Helper methods
+    private void warmUp() {
+        warmingUp = true;
+        try {
+            for (Book book : catalogSnapshot.getAllBooks()) {
+                String coverImage = book.getCover_image();
+                if (coverImage == null || coverImage.isBlank()) {
+                    continue;
+                }
+                warmUpPermits.acquire();
+                if (executor.isShutdown()) {
+                    return;
+                }
+                submit(book.getBook_id(), coverImage, warmUpPermits);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            warmingUp = false;
+        }
+    }
+
+    // permits, when given, gets its permit back once the task has run or was not queued
+    private void submit(UUID bookId, String coverImage, Semaphore permits) {
+        if (!pending.add(bookId)) {
+            release(permits);
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(bookId, coverImage);
+                } finally {
+                    pending.remove(bookId);
+                    release(permits);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Queue is full - the cover is generated when it is first requested
+            pending.remove(bookId);
+            rejected.incrementAndGet();
+            release(permits);
+        }
+    }
+
+    private static void release(Semaphore permits) {
+        if (permits != null) {
+            permits.release();
+        }
+    }
+
+    // Run on the executor
+    private void generate(UUID bookId, String coverImage) {
+        Optional<Path> source = fileStorage.resolve(coverImage);
+        if (source.isEmpty()) {
+            entries.remove(bookId);
+            return;
+        }
+        try {
+            long size = Files.size(source.get());
+            long modified = Files.getLastModifiedTime(source.get()).toMillis();
+            CoverEntry current = entries.get(bookId);
+            if (current != null && current.source().equals(source.get())
+                    && current.sourceSize() == size && current.sourceModified() == modified) {
+                return;
+            }
+            String sha256 = sha256(source.get());
+            BufferedImage image = null;
+            for (Size thumbnail : Size.values()) {
+                if (thumbnail == Size.ORIGINAL) {
+                    continue;
+                }
+                Path target = thumbnailPath(sha256, thumbnail);
+                if (Files.isRegularFile(target)) {
+                    reused.incrementAndGet();
+                    continue;
+                }
+                if (image == null) {
+                    image = ImageIO.read(source.get().toFile());
+                    if (image == null) {
+                        throw new IOException("Unsupported image format: " + source.get());
+                    }
+                }
+                write(scale(image, thumbnail.width), target);
+                rendered.incrementAndGet();
+            }
+            entries.put(bookId, new CoverEntry(coverImage, source.get(), size, modified, sha256));
+        } catch (IOException | RuntimeException e) {
+            failures.incrementAndGet();
+        }
+    }
+
+    private boolean isCurrent(CoverEntry entry) {
+        try {
+            return Files.size(entry.source()) == entry.sourceSize()
+                    && Files.getLastModifiedTime(entry.source()).toMillis() == entry.sourceModified();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage image, int width) {
+        int targetWidth = Math.min(width, image.getWidth());
+        int targetHeight = Math.max(1, (int) Math.round((double) image.getHeight() * targetWidth / image.getWidth()));
+        BufferedImage scaled = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, targetWidth, targetHeight, Color.WHITE, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    // Written to a temporary file first so readers never see a half-written thumbnail
+    private static void write(BufferedImage image, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temporary = Files.createTempFile(target.getParent(), "thumbnail", ".tmp");
+        try {
+            if (!ImageIO.write(image, "jpg", temporary.toFile())) {
+                throw new IOException("No JPEG writer available");
+            }
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private Path thumbnailPath(String sha256, Size size) {
+        return cacheDir.resolve(sha256.substring(0, 2)).resolve(sha256 + "-" + size.width + ".jpg");
+    }
+
+    private static String etag(String sha256, Size size) {
+        return "\"" + sha256 + "-" + size.name().toLowerCase(Locale.ROOT) + "\"";
+    }
+
+    private static String contentType(Path path) {
+        try {
+            String type = Files.probeContentType(path);
+            return type != null ? type : "application/octet-stream";
+        } catch (IOException e) {
+            return "application/octet-stream";
+        }
+    }
+
+    private static String sha256(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream in = new DigestInputStream(Files.newInputStream(path), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
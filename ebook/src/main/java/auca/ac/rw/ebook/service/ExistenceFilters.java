@@ -0,0 +1,271 @@
+// ExistenceFilters.java
+package auca.ac.rw.ebook.service;
+
+import auca.ac.rw.ebook.repository.BookRepository;
+import auca.ac.rw.ebook.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+// One Bloom filter per key space in front of the existsBy... queries. "Not in the filter"
+// is a definite no and skips the database; a hit is confirmed with the query.
+// Keys are added after every write and never taken out, so deletes and renames only leave
+// false positives behind until the next rebuild. Each rebuild sizes the filters for twice
+// the current row count at the configured false-positive rate, capped at max-bytes each.
+// Until the first build every check goes to the database.
+// The filters only see this node's writes, so they answer lookups; inserts check the table
+// and rely on its constraints.
+@Component
+public class ExistenceFilters {
+
+    public enum KeySpace {
+        EMAIL,
+        PHONE,
+        TITLE,
+        TITLE_AUTHOR
+    }
+
+    // Room for growth between rebuilds
+    private static final int HEADROOM = 2;
+    private static final long MIN_KEYS = 1024;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Value("${ebook.existence-filter.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    @Value("${ebook.existence-filter.max-bytes:16777216}")
+    private long maxBytes;
+
+    private final Map<KeySpace, Slot> slots = new EnumMap<>(KeySpace.class);
+
+    // Metrics
+    private volatile long rebuilds;
+    private volatile long lastRebuildMillis;
+
+    public ExistenceFilters() {
+        for (KeySpace space : KeySpace.values()) {
+            slots.put(space, new Slot());
+        }
+    }
+
+    // Build
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${ebook.existence-filter.rebuild-interval-ms:3600000}",
+               initialDelayString = "${ebook.existence-filter.rebuild-interval-ms:3600000}")
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        long start = System.nanoTime();
+
+        long users = userRepository.count();
+        Filter emails = begin(KeySpace.EMAIL, users);
+        Filter phones = begin(KeySpace.PHONE, users);
+        try (Stream<Object[]> rows = userRepository.streamEmailsAndPhones()) {
+            rows.forEach(row -> {
+                emails.put(key(row[0]));
+                phones.put(key(row[1]));
+            });
+        }
+        finish(KeySpace.EMAIL, emails);
+        finish(KeySpace.PHONE, phones);
+
+        long books = bookRepository.count();
+        Filter titles = begin(KeySpace.TITLE, books);
+        Filter titleAuthors = begin(KeySpace.TITLE_AUTHOR, books);
+        try (Stream<Object[]> rows = bookRepository.streamTitlesAndAuthors()) {
+            rows.forEach(row -> {
+                titles.put(key(row[0]));
+                titleAuthors.put(titleAuthor(row[0], row[1]));
+            });
+        }
+        finish(KeySpace.TITLE, titles);
+        finish(KeySpace.TITLE_AUTHOR, titleAuthors);
+
+        lastRebuildMillis = (System.nanoTime() - start) / 1_000_000;
+        rebuilds++;
+    }
+
+    // Called once a row with this key has been written
+    public void add(KeySpace space, Object value) {
+        Slot slot = slots.get(space);
+        // building is read first: once it is null again, current already points at the new filter
+        Filter building = slot.building;
+        Filter current = slot.current;
+        String key = key(value);
+        if (current != null) {
+            current.put(key);
+        }
+        if (building != null && building != current) {
+            building.put(key);
+        }
+    }
+
+    // Answers a definite "no" from the filter, everything else with the query
+    public Boolean exists(KeySpace space, Object value, Supplier<Boolean> query) {
+        Slot slot = slots.get(space);
+        slot.checks.incrementAndGet();
+        Filter current = slot.current;
+        if (current != null && !current.mightContain(key(value))) {
+            slot.definiteNegatives.incrementAndGet();
+            return false;
+        }
+        Boolean exists = query.get();
+        if (current != null && !Boolean.TRUE.equals(exists)) {
+            slot.falsePositives.incrementAndGet();
+        }
+        return exists;
+    }
+
+    // Key for the TITLE_AUTHOR space
+    public static String titleAuthor(Object title, Object author) {
+        return key(title) + '\u0000' + key(author);
+    }
+
+    // Metrics
+    public Map<String, Object> getMetrics(KeySpace... spaces) {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        for (KeySpace space : spaces) {
+            metrics.put(space.name().toLowerCase(), slots.get(space).getMetrics());
+        }
+        metrics.put("rebuilds", rebuilds);
+        metrics.put("lastRebuildMillis", lastRebuildMillis);
+        return metrics;
+    }
+
+    // Helper methods
+    // Writes that land while the scan runs go into both filters; the scan sees everything committed before it
+    private Filter begin(KeySpace space, long rows) {
+        Filter filter = new Filter(Math.max(rows * HEADROOM, MIN_KEYS), falsePositiveRate, maxBytes * 8);
+        slots.get(space).building = filter;
+        return filter;
+    }
+
+    private void finish(KeySpace space, Filter filter) {
+        Slot slot = slots.get(space);
+        slot.current = filter;
+        slot.building = null;
+    }
+
+    // The repositories match null with IS NULL, so null is a key of its own
+    private static String key(Object value) {
+        return String.valueOf(value);
+    }
+
+    private static final class Slot {
+        volatile Filter current;
+        volatile Filter building;
+
+        final AtomicLong checks = new AtomicLong();
+        final AtomicLong definiteNegatives = new AtomicLong();
+        final AtomicLong falsePositives = new AtomicLong();
+
+        Map<String, Object> getMetrics() {
+            Filter filter = current;
+            long negatives = definiteNegatives.get();
+            long misses = falsePositives.get();
+            Map<String, Object> metrics = new LinkedHashMap<>();
+            metrics.put("ready", filter != null);
+            metrics.put("expectedKeys", filter != null ? filter.expectedKeys : 0);
+            metrics.put("keysAdded", filter != null ? filter.keys.get() : 0);
+            metrics.put("bytes", filter != null ? filter.bits / 8 : 0);
+            metrics.put("hashFunctions", filter != null ? filter.hashes : 0);
+            metrics.put("estimatedFalsePositiveRate", filter != null ? filter.estimatedFalsePositiveRate() : 1.0);
+            metrics.put("checks", checks.get());
+            metrics.put("answeredWithoutQuery", negatives);
+            metrics.put("falsePositives", misses);
+            // Share of absent keys the filter failed to rule out
+            metrics.put("observedFalsePositiveRate", negatives + misses > 0 ? (double) misses / (negatives + misses) : 0.0);
+            return metrics;
+        }
+    }
+
+    // Bit array with k probes from two 64-bit hashes (h1 + i * h2). Bits are set with CAS,
+    // so puts from request threads and the rebuild never lose each other's bits.
+    private static final class Filter {
+        final AtomicLongArray words;
+        final long bits;
+        final int hashes;
+        final long expectedKeys;
+        final AtomicLong keys = new AtomicLong();
+
+        Filter(long expectedKeys, double falsePositiveRate, long maxBits) {
+            double ln2 = Math.log(2);
+            long wanted = (long) Math.ceil(-expectedKeys * Math.log(falsePositiveRate) / (ln2 * ln2));
+            long words = Math.max(1, (Math.min(wanted, maxBits) + 63) / 64);
+            this.words = new AtomicLongArray((int) Math.min(words, Integer.MAX_VALUE - 8));
+            this.bits = this.words.length() * 64L;
+            this.hashes = (int) Math.max(1, Math.min(16, Math.round((double) bits / expectedKeys * ln2)));
+            this.expectedKeys = expectedKeys;
+        }
+
+        void put(String key) {
+            long h1 = hash(key);
+            long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = ((h1 + i * h2) & Long.MAX_VALUE) % bits;
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long value = words.get(word);
+                while ((value & mask) == 0 && !words.compareAndSet(word, value, value | mask)) {
+                    value = words.get(word);
+                }
+            }
+            keys.incrementAndGet();
+        }
+
+        boolean mightContain(String key) {
+            long h1 = hash(key);
+            long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = ((h1 + i * h2) & Long.MAX_VALUE) % bits;
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // (set bits / all bits) ^ k - follows the actual fill, including stale keys
+        double estimatedFalsePositiveRate() {
+            long set = 0;
+            for (int i = 0; i < words.length(); i++) {
+                set += Long.bitCount(words.get(i));
+            }
+            return Math.pow((double) set / bits, hashes);
+        }
+
+        // FNV-1a over the chars, finished with the murmur3 mixer
+        private static long hash(String key) {
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < key.length(); i++) {
+                h ^= key.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            return mix(h);
+        }
+
+        private static long mix(long h) {
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb93e53a87ec5L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+// FileStorage.java
+package auca.ac.rw.ebook.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+// Local storage directory behind Book.file_url and Book.cover_image.
+// A stored location may be a relative path or a URL; only its path is used, and anything
+// that resolves outside the directory (through "..", absolute paths or symlinks) is ignored.
+@Component
+public class FileStorage {
+
+    private final Path root;
+
+    public FileStorage(@Value("${ebook.storage.dir:storage/books}") String storageDir) {
+        this.root = Paths.get(storageDir).toAbsolutePath().normalize();
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public Optional<Path> resolve(String location) {
+        if (location == null || location.isBlank()) {
+            return Optional.empty();
+        }
+        try {
+            String relative = location.trim();
+            try {
+                URI uri = URI.create(relative);
+                if (uri.getScheme() != null && uri.getPath() != null) {
+                    relative = uri.getPath();
+                }
+            } catch (IllegalArgumentException e) {
+                // Not a URI - use it as a plain relative path
+            }
+            while (relative.startsWith("/")) {
+                relative = relative.substring(1);
+            }
+            Path realRoot = root.toRealPath();
+            Path file = realRoot.resolve(relative).normalize();
+            if (!file.startsWith(realRoot) || !Files.isRegularFile(file)) {
+                return Optional.empty();
+            }
+            file = file.toRealPath();
+            return file.startsWith(realRoot) ? Optional.of(file) : Optional.empty();
+        } catch (IOException | RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+}
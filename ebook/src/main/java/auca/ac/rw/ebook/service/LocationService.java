@@ -1,5 +1,6 @@
 package auca.ac.rw.ebook.service;
 
+import auca.ac.rw.ebook.dto.EntityVersion;
 import auca.ac.rw.ebook.model.Location;
 import auca.ac.rw.ebook.model.ELocationType;
 import auca.ac.rw.ebook.repository.LocationRepository;
@@ -105,6 +106,10 @@ public class LocationService {
         return locationRepository.findAllProvinces();
     }
     
+    public EntityVersion getProvincesVersion() {
+        return locationRepository.findProvincesVersion();
+    }
+    
     public List<Location> getDistrictsByProvince(String provinceCode) {
         return locationRepository.findDistrictsByProvinceCode(provinceCode);
     }
@@ -0,0 +1,53 @@
+// NdjsonExporter.java
+package auca.ac.rw.ebook.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+// Writes a repository stream as newline-delimited JSON, one row per line.
+// The persistence context is cleared every batch so entities already written can be
+// collected; heap use stays flat however many rows the stream yields. Streams of views
+// are preferred: they load nothing the export does not print.
+@Component
+public class NdjsonExporter {
+
+    public static final String MEDIA_TYPE = "application/x-ndjson";
+
+    // Keep in step with the fetch size hint on the streaming repository queries
+    public static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Must run inside a read-only transaction so the JDBC driver honours the fetch size
+    public long export(Stream<?> rows, OutputStream out) throws IOException {
+        long written = 0;
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            Iterator<?> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                objectMapper.writeValue(generator, iterator.next());
+                generator.writeRaw('\n');
+                if (++written % BATCH_SIZE == 0) {
+                    generator.flush();
+                    entityManager.clear();
+                }
+            }
+            generator.flush();
+        } finally {
+            rows.close();
+        }
+        return written;
+    }
+}
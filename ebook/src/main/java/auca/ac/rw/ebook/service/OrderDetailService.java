@@ -1,11 +1,14 @@
 // OrderDetailService.java
 package auca.ac.rw.ebook.service;
 
+import auca.ac.rw.ebook.dto.BookSale;
 import auca.ac.rw.ebook.model.OrderDetail;
 import auca.ac.rw.ebook.repository.OrderDetailRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -15,10 +18,21 @@ public class OrderDetailService {
     @Autowired
     private OrderDetailRepository orderDetailRepository;
     
+    @Autowired
+    private BookDetailService bookDetailService;
+    
+    @Autowired
+    private BestSellerLeaderboard bestSellerLeaderboard;
+    
+    @Autowired
+    private BookCatalogSnapshot catalogSnapshot;
+    
     // CRUD Operations
     public String saveOrderDetail(OrderDetail orderDetail) {
         if (validateOrderDetail(orderDetail)) {
-            orderDetailRepository.save(orderDetail);
+            OrderDetail saved = orderDetailRepository.save(orderDetail);
+            bookDetailService.evict(bookIdOf(orderDetail));
+            bestSellerLeaderboard.recordSales(salesOf(List.of(saved)));
             return "Order detail saved successfully";
         } else {
             return "Invalid order detail data";
@@ -36,7 +50,12 @@ public class OrderDetailService {
     public String updateOrderDetail(OrderDetail orderDetail) {
         if (orderDetailRepository.existsById(orderDetail.getDetail_id())) {
             if (validateOrderDetail(orderDetail)) {
-                orderDetailRepository.save(orderDetail);
+                List<BookSale> previous = orderDetailRepository.findSalesByDetailIdIn(List.of(orderDetail.getDetail_id()));
+                OrderDetail saved = orderDetailRepository.save(orderDetail);
+                previous.forEach(sale -> bookDetailService.evict(sale.bookId()));
+                bookDetailService.evict(bookIdOf(orderDetail));
+                bestSellerLeaderboard.removeSales(previous);
+                bestSellerLeaderboard.recordSales(salesOf(List.of(saved)));
                 return "Order detail updated successfully";
             } else {
                 return "Invalid order detail data";
@@ -48,7 +67,10 @@ public class OrderDetailService {
     
     public String deleteOrderDetail(UUID id) {
         if (orderDetailRepository.existsById(id)) {
+            List<BookSale> previous = orderDetailRepository.findSalesByDetailIdIn(List.of(id));
             orderDetailRepository.deleteById(id);
+            previous.forEach(sale -> bookDetailService.evict(sale.bookId()));
+            bestSellerLeaderboard.removeSales(previous);
             return "Order detail deleted successfully";
         } else {
             return "Order detail not found";
@@ -83,8 +105,22 @@ public class OrderDetailService {
         return orderDetailRepository.findOrderDetailsByOrderIdSortedByPrice(orderId);
     }
     
+    // Rows of [Book, units sold] from the in-memory leaderboard; no query on the request path
     public List<Object[]> getBestSellingBooks() {
-        return orderDetailRepository.findBestSellingBooks();
+        return getBestSellingBooks(BestSellerLeaderboard.Window.ALL_TIME, BestSellerLeaderboard.MAX_LIMIT);
+    }
+    
+    public List<Object[]> getBestSellingBooks(BestSellerLeaderboard.Window window, int limit) {
+        List<BestSellerLeaderboard.Entry> top = bestSellerLeaderboard.top(window, limit);
+        List<Object[]> result = new ArrayList<>(top.size());
+        for (BestSellerLeaderboard.Entry entry : top) {
+            catalogSnapshot.getBook(entry.bookId()).ifPresent(book -> result.add(new Object[] {book, entry.units()}));
+        }
+        return result;
+    }
+    
+    public Map<String, Object> getBestSellerMetrics() {
+        return bestSellerLeaderboard.getMetrics();
     }
     
     public List<OrderDetail> getOrderDetailsByUserId(UUID userId) {
@@ -92,8 +128,7 @@ public class OrderDetailService {
     }
     
     public Integer getTotalQuantitySoldForBook(UUID bookId) {
-        Integer totalSold = orderDetailRepository.getTotalQuantitySoldForBook(bookId);
-        return totalSold != null ? totalSold : 0;
+        return (int) bestSellerLeaderboard.unitsSold(bookId);
     }
     
     // Batch operations
@@ -105,7 +140,9 @@ public class OrderDetailService {
                     return "Invalid order detail in the list";
                 }
             }
-            orderDetailRepository.saveAll(orderDetails);
+            List<OrderDetail> saved = orderDetailRepository.saveAll(orderDetails);
+            orderDetails.forEach(orderDetail -> bookDetailService.evict(bookIdOf(orderDetail)));
+            bestSellerLeaderboard.recordSales(salesOf(saved));
             return "All order details saved successfully";
         } catch (Exception e) {
             return "Error saving order details: " + e.getMessage();
@@ -114,8 +151,11 @@ public class OrderDetailService {
     
     public String deleteOrderDetailsByOrderId(UUID orderId) {
         try {
+            List<BookSale> previous = orderDetailRepository.findSalesByOrderId(orderId);
             List<OrderDetail> orderDetails = orderDetailRepository.findByOrderId(orderId);
             orderDetailRepository.deleteAll(orderDetails);
+            orderDetails.forEach(orderDetail -> bookDetailService.evict(bookIdOf(orderDetail)));
+            bestSellerLeaderboard.removeSales(previous);
             return "All order details for order " + orderId + " deleted successfully";
         } catch (Exception e) {
             return "Error deleting order details: " + e.getMessage();
@@ -144,4 +184,13 @@ public class OrderDetailService {
         }
         return 0.0;
     }
+    
+    // Re-read with the order date, which the client usually does not send
+    private List<BookSale> salesOf(List<OrderDetail> saved) {
+        return orderDetailRepository.findSalesByDetailIdIn(saved.stream().map(OrderDetail::getDetail_id).toList());
+    }
+    
+    private static UUID bookIdOf(OrderDetail orderDetail) {
+        return orderDetail.getBook() != null ? orderDetail.getBook().getBook_id() : null;
+    }
 }
\ No newline at end of file
@@ -1,14 +1,28 @@
 // OrderService.java
 package auca.ac.rw.ebook.service;
 
+import auca.ac.rw.ebook.dto.BookSale;
+import auca.ac.rw.ebook.dto.CursorPage;
+import auca.ac.rw.ebook.dto.OrderView;
+import auca.ac.rw.ebook.dto.PageCursor;
 import auca.ac.rw.ebook.model.Order;
 import auca.ac.rw.ebook.model.EOrderStatus;
+import auca.ac.rw.ebook.repository.OrderDetailRepository;
 import auca.ac.rw.ebook.repository.OrderRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import java.time.LocalDateTime;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -19,6 +33,29 @@ public class OrderService {
     @Autowired
     private OrderRepository orderRepository;
     
+    @Autowired
+    private OrderDetailRepository orderDetailRepository;
+    
+    @Autowired
+    private BestSellerLeaderboard bestSellerLeaderboard;
+    
+    @Autowired
+    private AlsoBoughtIndex alsoBoughtIndex;
+    
+    @Autowired
+    private BookDetailService bookDetailService;
+    
+    @Autowired
+    private NdjsonExporter ndjsonExporter;
+    
+    private final TransactionTemplate transactionTemplate;
+    
+    // Status changes lock the order row, so two requests completing the same order cannot
+    // both count its basket. Programmatic because the workflow methods call updateOrderStatus directly.
+    public OrderService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+    
     // CRUD Operations
     public String saveOrder(Order order) {
         if (!validateOrder(order)) {
@@ -33,8 +70,8 @@ public class OrderService {
         return "Order saved successfully";
     }
     
-    public List<Order> getAllOrders() {
-        return orderRepository.findAll();
+    public List<OrderView> getAllOrders() {
+        return orderRepository.findAllViews();
     }
     
     public Optional<Order> getOrderById(UUID id) {
@@ -46,17 +83,28 @@ public class OrderService {
             return "Invalid order data";
         }
         
-        if (orderRepository.existsById(order.getOrder_id())) {
+        return transactionTemplate.execute(status -> {
+            if (orderRepository.lockById(order.getOrder_id()).isEmpty()) {
+                return "Order not found";
+            }
+            EOrderStatus previous = orderRepository.findStatusById(order.getOrder_id());
             orderRepository.save(order);
+            basketStatusChanged(order.getOrder_id(), previous, order.getStatus());
             return "Order updated successfully";
-        } else {
-            return "Order not found";
-        }
+        });
     }
     
     public String deleteOrder(UUID id) {
         if (orderRepository.existsById(id)) {
+            // The order lines go with the order, so they leave the leaderboard too
+            List<BookSale> sales = orderDetailRepository.findSalesByOrderId(id);
+            EOrderStatus status = orderRepository.findStatusById(id);
             orderRepository.deleteById(id);
+            bestSellerLeaderboard.removeSales(sales);
+            if (AlsoBoughtIndex.counts(status)) {
+                alsoBoughtIndex.removeBasket(id, sales.stream().map(BookSale::bookId).toList());
+            }
+            sales.forEach(sale -> bookDetailService.evict(sale.bookId()));
             return "Order deleted successfully";
         } else {
             return "Order not found";
@@ -64,20 +112,20 @@ public class OrderService {
     }
     
     // findBy... methods
-    public List<Order> getOrdersByUserId(UUID userId) {
-        return orderRepository.findByUserId(userId);
+    public List<OrderView> getOrdersByUserId(UUID userId) {
+        return orderRepository.findViewsByUserId(userId);
     }
     
-    public List<Order> getOrdersByStatus(EOrderStatus status) {
-        return orderRepository.findByStatus(status);
+    public List<OrderView> getOrdersByStatus(EOrderStatus status) {
+        return orderRepository.findViewsByStatus(status);
     }
     
-    public List<Order> getOrdersByDateRange(LocalDateTime startDate, LocalDateTime endDate) {
-        return orderRepository.findByOrderDateBetween(startDate, endDate);
+    public List<OrderView> getOrdersByDateRange(LocalDateTime startDate, LocalDateTime endDate) {
+        return orderRepository.findViewsByOrderDateBetween(startDate, endDate);
     }
     
-    public List<Order> getOrdersByTotalAmountGreaterThan(Double amount) {
-        return orderRepository.findByTotalAmountGreaterThan(amount);
+    public List<OrderView> getOrdersByTotalAmountGreaterThan(Double amount) {
+        return orderRepository.findViewsByTotalAmountGreaterThan(amount);
     }
     
     public Optional<Order> getOrderByUserIdAndStatus(UUID userId, EOrderStatus status) {
@@ -94,27 +142,58 @@ public class OrderService {
     }
     
     // Sorting and Pagination
-    public Page<Order> getOrdersByUserIdWithPagination(UUID userId, Pageable pageable) {
-        return orderRepository.findByUserId(userId, pageable);
+    public Page<OrderView> getOrdersByUserIdWithPagination(UUID userId, Pageable pageable) {
+        return orderRepository.findViewsByUserId(userId, pageable);
+    }
+    
+    public Page<OrderView> getOrdersByStatusWithPagination(EOrderStatus status, Pageable pageable) {
+        return orderRepository.findViewsByStatus(status, pageable);
+    }
+    
+    public Page<OrderView> getOrdersByDateRangeWithPagination(LocalDateTime startDate, LocalDateTime endDate, Pageable pageable) {
+        return orderRepository.findViewsByOrderDateBetween(startDate, endDate, pageable);
     }
     
-    public Page<Order> getOrdersByStatusWithPagination(EOrderStatus status, Pageable pageable) {
-        return orderRepository.findByStatus(status, pageable);
+    public Page<OrderView> getAllOrdersWithPagination(Pageable pageable) {
+        return orderRepository.findAllViews(pageable);
     }
     
-    public Page<Order> getOrdersByDateRangeWithPagination(LocalDateTime startDate, LocalDateTime endDate, Pageable pageable) {
-        return orderRepository.findByOrderDateBetween(startDate, endDate, pageable);
+    // Streaming export - returns the number of rows written
+    @Transactional(readOnly = true)
+    public long exportOrders(OutputStream out) throws IOException {
+        return ndjsonExporter.export(orderRepository.streamAllForExport(), out);
     }
     
-    public Page<Order> getAllOrdersWithPagination(Pageable pageable) {
-        return orderRepository.findAll(pageable);
+    // Keyset pagination - cursor is null for the first page. Orders without a date follow the
+    // dated ones, so a page that runs out of dated rows is filled from the undated ones
+    public CursorPage<OrderView> getOrdersAfter(String cursor, int size) {
+        Limit limit = Limit.of(size + 1);
+        PageCursor after = cursor != null ? PageCursor.decode(cursor) : null;
+        boolean dated = after == null || after.sortKeyAsDateTime() != null;
+        List<OrderView> rows;
+        if (after == null) {
+            rows = orderRepository.findFirstByDateKeyset(limit);
+        } else if (dated) {
+            rows = orderRepository.findNextByDateKeyset(after.sortKeyAsDateTime(), after.id(), limit);
+        } else {
+            rows = orderRepository.findNextUndatedKeyset(after.id(), limit);
+        }
+        if (dated && rows.size() <= size) {
+            rows = new ArrayList<>(rows);
+            rows.addAll(orderRepository.findFirstUndatedKeyset(Limit.of(size + 1 - rows.size())));
+        }
+        return CursorPage.of(rows, size, order -> PageCursor.of(order.orderDate(), order.orderId()));
     }
     
     // Business logic methods
     public String updateOrderStatus(UUID orderId, EOrderStatus newStatus) {
-        Optional<Order> orderOpt = orderRepository.findById(orderId);
-        if (orderOpt.isPresent()) {
-            Order order = orderOpt.get();
+        return transactionTemplate.execute(status -> {
+            if (orderRepository.lockById(orderId).isEmpty()) {
+                return "Order not found";
+            }
+            // Read under the lock: a concurrent change of the same order has committed by now
+            EOrderStatus previous = orderRepository.findStatusById(orderId);
+            Order order = orderRepository.findById(orderId).orElseThrow();
             order.setStatus(newStatus);
             
             // Update order date if completing the order
@@ -123,10 +202,9 @@ public class OrderService {
             }
             
             orderRepository.save(order);
+            basketStatusChanged(orderId, previous, newStatus);
             return "Order status updated successfully";
-        } else {
-            return "Order not found";
-        }
+        });
     }
     
     public Double calculateRevenueBetweenDates(LocalDateTime startDate, LocalDateTime endDate) {
@@ -135,15 +213,15 @@ public class OrderService {
     }
     
     // FIXED: Changed parameter name to match repository method
-    public List<Order> getOrdersByProvince(String provinceName) {
+    public List<OrderView> getOrdersByProvince(String provinceName) {
         return orderRepository.findOrdersByProvince(provinceName);
     }
     
-    public List<Order> getUserOrdersSortedByDate(UUID userId) {
+    public List<OrderView> getUserOrdersSortedByDate(UUID userId) {
         return orderRepository.findUserOrdersByDateDesc(userId);
     }
     
-    public List<Order> getPendingOrdersOlderThan(LocalDateTime date) {
+    public List<OrderView> getPendingOrdersOlderThan(LocalDateTime date) {
         return orderRepository.findPendingOrdersOlderThan(date);
     }
     
@@ -210,4 +288,26 @@ public class OrderService {
             return "Error updating multiple order statuses: " + e.getMessage();
         }
     }
+    
+    // Helper methods
+    // An order enters or leaves the also-bought matrix when it moves in or out of a counted
+    // status. Called under the order's row lock; the matrix changes once the status committed.
+    private void basketStatusChanged(UUID orderId, EOrderStatus previous, EOrderStatus current) {
+        boolean counted = AlsoBoughtIndex.counts(previous);
+        boolean counts = AlsoBoughtIndex.counts(current);
+        if (counted == counts) {
+            return;
+        }
+        List<UUID> bookIds = orderDetailRepository.findBookIdsByOrderId(orderId);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                if (counts) {
+                    alsoBoughtIndex.addBasket(orderId, bookIds);
+                } else {
+                    alsoBoughtIndex.removeBasket(orderId, bookIds);
+                }
+            }
+        });
+    }
 }
\ No newline at end of file
@@ -1,15 +1,23 @@
 // PaymentService.java
 package auca.ac.rw.ebook.service;
 
+import auca.ac.rw.ebook.dto.CursorPage;
+import auca.ac.rw.ebook.dto.PageCursor;
+import auca.ac.rw.ebook.dto.PaymentView;
 import auca.ac.rw.ebook.model.Payment;
 import auca.ac.rw.ebook.model.EPaymentStatus;
 import auca.ac.rw.ebook.model.EPaymentMethod;
 import auca.ac.rw.ebook.repository.PaymentRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -20,6 +28,9 @@ public class PaymentService {
     @Autowired
     private PaymentRepository paymentRepository;
     
+    @Autowired
+    private NdjsonExporter ndjsonExporter;
+    
     // CRUD Operations
     public String savePayment(Payment payment) {
         payment.setPayment_date(LocalDateTime.now());
@@ -30,8 +41,8 @@ public class PaymentService {
         return "Payment saved successfully";
     }
     
-    public List<Payment> getAllPayments() {
-        return paymentRepository.findAll();
+    public List<PaymentView> getAllPayments() {
+        return paymentRepository.findAllViews();
     }
     
     public Optional<Payment> getPaymentById(UUID id) {
@@ -57,12 +68,12 @@ public class PaymentService {
     }
     
     // findBy... methods
-    public List<Payment> getPaymentsByUserId(UUID userId) {
-        return paymentRepository.findByUserId(userId);
+    public List<PaymentView> getPaymentsByUserId(UUID userId) {
+        return paymentRepository.findViewsByUserId(userId);
     }
     
-    public List<Payment> getPaymentsByStatus(EPaymentStatus status) {
-        return paymentRepository.findByStatus(status);
+    public List<PaymentView> getPaymentsByStatus(EPaymentStatus status) {
+        return paymentRepository.findViewsByStatus(status);
     }
     
     public List<Payment> getPaymentsByMethod(EPaymentMethod method) {
@@ -91,8 +102,8 @@ public class PaymentService {
     }
     
     // Sorting and Pagination
-    public Page<Payment> getPaymentsByUserIdWithPagination(UUID userId, Pageable pageable) {
-        return paymentRepository.findByUserId(userId, pageable);
+    public Page<PaymentView> getPaymentsByUserIdWithPagination(UUID userId, Pageable pageable) {
+        return paymentRepository.findViewsByUserId(userId, pageable);
     }
     
     public Page<Payment> getPaymentsByStatusWithPagination(EPaymentStatus status, Pageable pageable) {
@@ -107,6 +118,33 @@ public class PaymentService {
         return paymentRepository.findAll(pageable);
     }
     
+    // Streaming export - returns the number of rows written
+    @Transactional(readOnly = true)
+    public long exportPayments(OutputStream out) throws IOException {
+        return ndjsonExporter.export(paymentRepository.streamAllForExport(), out);
+    }
+    
+    // Keyset pagination - cursor is null for the first page. Payments without a date follow the
+    // dated ones, so a page that runs out of dated rows is filled from the undated ones
+    public CursorPage<PaymentView> getPaymentsByUserIdAfter(UUID userId, String cursor, int size) {
+        Limit limit = Limit.of(size + 1);
+        PageCursor after = cursor != null ? PageCursor.decode(cursor) : null;
+        boolean dated = after == null || after.sortKeyAsDateTime() != null;
+        List<PaymentView> rows;
+        if (after == null) {
+            rows = paymentRepository.findFirstByUserIdKeyset(userId, limit);
+        } else if (dated) {
+            rows = paymentRepository.findNextByUserIdKeyset(userId, after.sortKeyAsDateTime(), after.id(), limit);
+        } else {
+            rows = paymentRepository.findNextUndatedByUserIdKeyset(userId, after.id(), limit);
+        }
+        if (dated && rows.size() <= size) {
+            rows = new ArrayList<>(rows);
+            rows.addAll(paymentRepository.findFirstUndatedByUserIdKeyset(userId, Limit.of(size + 1 - rows.size())));
+        }
+        return CursorPage.of(rows, size, payment -> PageCursor.of(payment.paymentDate(), payment.paymentId()));
+    }
+    
     // Business logic methods
     public String processPayment(UUID paymentId) {
         Optional<Payment> paymentOpt = paymentRepository.findById(paymentId);
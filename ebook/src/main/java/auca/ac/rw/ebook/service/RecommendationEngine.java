@@ -0,0 +1,456 @@
+// RecommendationEngine.java
+package auca.ac.rw.ebook.service;
+
+import auca.ac.rw.ebook.repository.ReviewRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// "Recommended for you" from review ratings. A biased matrix factorization
+// (rating ~ mean + user bias + book bias + user factors . book factors) is trained with
+// SGD over flat float arrays. Each epoch is split across the fork/join pool without
+// locks: two threads rarely touch the same user or book, and a lost update only costs a
+// little accuracy. After training every user's top N unrated books is scored once, so a
+// request is a map lookup and never reaches the database.
+// Retrained on the scheduler pool, first right after startup.
+@Component
+public class RecommendationEngine {
+
+    public static final int MAX_LIMIT = 50;
+
+    public record Entry(UUID bookId, float predictedRating) {}
+
+    @Autowired
+    private ReviewRepository reviewRepository;
+
+    @Value("${ebook.recommendations.factors:32}")
+    private int factors;
+
+    @Value("${ebook.recommendations.epochs:20}")
+    private int epochs;
+
+    @Value("${ebook.recommendations.learning-rate:0.01}")
+    private float learningRate;
+
+    @Value("${ebook.recommendations.regularization:0.05}")
+    private float regularization;
+
+    private volatile Model model = new Model(Map.of(), new UUID[0], new int[0], new float[0], new int[0], new int[1], new int[0]);
+
+    // Books reviewed after the current model read its ratings, hidden from that user until a model
+    // that includes them is published. A review written while a training runs may or may not be in
+    // what it read, so it goes to both sets and the newer one takes over on publish.
+    private final Object reviewedLock = new Object();
+    private volatile Map<UUID, Set<UUID>> reviewedSinceTraining = new ConcurrentHashMap<>();
+    private Map<UUID, Set<UUID>> reviewedDuringTraining;
+
+    // Metrics
+    private volatile long trainings;
+    private volatile long lastTrainingMillis;
+    private volatile long lastRatings;
+    private volatile double lastTrainingRmse;
+
+    // Per user u, the book ids at top[u * MAX_LIMIT ..] best first, counts[u] of them valid,
+    // and the rated book ids at rated[userStarts[u] .. userStarts[u + 1])
+    private record Model(Map<UUID, Integer> users, UUID[] books, int[] top, float[] scores, int[] counts,
+                         int[] userStarts, int[] rated) {}
+
+    // Training
+    @Scheduled(fixedDelayString = "${ebook.recommendations.retrain-interval-ms:21600000}")
+    public void train() {
+        long start = System.nanoTime();
+        synchronized (reviewedLock) {
+            reviewedDuringTraining = new ConcurrentHashMap<>();
+        }
+        Ratings ratings = new Ratings();
+        Model trained;
+        try {
+            reviewRepository.forEachRating(ratings::add);
+            Factors fitted = fit(ratings);
+            trained = recommend(ratings, fitted);
+            lastTrainingRmse = fitted != null ? fitted.rmse(ratings) : 0;
+        } catch (RuntimeException e) {
+            synchronized (reviewedLock) {
+                reviewedDuringTraining = null;
+            }
+            throw e;
+        }
+        synchronized (reviewedLock) {
+            model = trained;
+            reviewedSinceTraining = reviewedDuringTraining;
+            reviewedDuringTraining = null;
+        }
+        lastRatings = ratings.count;
+        lastTrainingMillis = (System.nanoTime() - start) / 1_000_000;
+        trainings++;
+    }
+
+    // Called after a review is written so the book drops out of that user's list right away
+    public void reviewed(UUID userId, UUID bookId) {
+        synchronized (reviewedLock) {
+            reviewedSinceTraining.computeIfAbsent(userId, key -> ConcurrentHashMap.newKeySet()).add(bookId);
+            if (reviewedDuringTraining != null) {
+                reviewedDuringTraining.computeIfAbsent(userId, key -> ConcurrentHashMap.newKeySet()).add(bookId);
+            }
+        }
+    }
+
+    // Queries - empty for users without ratings in the current model
+    public List<Entry> top(UUID userId) {
+        Model current = model;
+        Integer user = current.users().get(userId);
+        if (user == null) {
+            return List.of();
+        }
+        Set<UUID> hidden = reviewedSinceTraining.getOrDefault(userId, Set.of());
+        int offset = user * MAX_LIMIT;
+        List<Entry> entries = new ArrayList<>(current.counts()[user]);
+        for (int j = 0; j < current.counts()[user]; j++) {
+            UUID bookId = current.books()[current.top()[offset + j]];
+            if (!hidden.contains(bookId)) {
+                float predicted = Math.max(1f, Math.min(5f, current.scores()[offset + j]));
+                entries.add(new Entry(bookId, predicted));
+            }
+        }
+        return entries;
+    }
+
+    // Books the user has rated, as far as the engine knows; empty for users it has not seen
+    public Set<UUID> rated(UUID userId) {
+        Model current = model;
+        Set<UUID> rated = new HashSet<>(reviewedSinceTraining.getOrDefault(userId, Set.of()));
+        Integer user = current.users().get(userId);
+        if (user != null) {
+            for (int r = current.userStarts()[user]; r < current.userStarts()[user + 1]; r++) {
+                rated.add(current.books()[current.rated()[r]]);
+            }
+        }
+        return rated;
+    }
+
+    // Metrics
+    public Map<String, Object> getMetrics() {
+        Model current = model;
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("users", current.users().size());
+        metrics.put("books", current.books().length);
+        metrics.put("ratings", lastRatings);
+        metrics.put("factors", factors);
+        metrics.put("epochs", epochs);
+        metrics.put("trainingRmse", lastTrainingRmse);
+        metrics.put("trainings", trainings);
+        metrics.put("lastTrainingMillis", lastTrainingMillis);
+        return metrics;
+    }
+
+    // Helper methods
+    private Factors fit(Ratings ratings) {
+        int n = ratings.count;
+        if (n == 0) {
+            return null;
+        }
+        Factors fitted = new Factors(ratings, factors);
+        Random random = new Random(42);
+        int[] order = new int[n];
+        for (int t = 0; t < n; t++) {
+            order[t] = t;
+        }
+        int grain = Math.max(1024, n / (ForkJoinPool.getCommonPoolParallelism() * 4));
+        float rate = learningRate;
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            for (int t = n - 1; t > 0; t--) {
+                int swap = random.nextInt(t + 1);
+                int held = order[t];
+                order[t] = order[swap];
+                order[swap] = held;
+            }
+            ForkJoinPool.commonPool().invoke(new SgdTask(fitted, ratings, order, 0, n, grain, rate, regularization));
+            rate *= 0.95f;
+        }
+        return fitted;
+    }
+
+    private Model recommend(Ratings ratings, Factors fitted) {
+        int users = ratings.users.size();
+        int[] top = new int[users * MAX_LIMIT];
+        float[] scores = new float[users * MAX_LIMIT];
+        int[] counts = new int[users];
+        // User -> rated books, so already rated books can be skipped while scoring
+        int[] userStarts = new int[users + 1];
+        for (int t = 0; t < ratings.count; t++) {
+            userStarts[ratings.userIndex[t] + 1]++;
+        }
+        for (int u = 0; u < users; u++) {
+            userStarts[u + 1] += userStarts[u];
+        }
+        int[] rated = new int[ratings.count];
+        int[] fill = Arrays.copyOf(userStarts, users);
+        for (int t = 0; t < ratings.count; t++) {
+            rated[fill[ratings.userIndex[t]]++] = ratings.bookIndex[t];
+        }
+        if (fitted != null) {
+            int grain = Math.max(1, users / (ForkJoinPool.getCommonPoolParallelism() * 16));
+            ForkJoinPool.commonPool().invoke(new TopTask(fitted, userStarts, rated, top, scores, counts, 0, users, grain));
+        }
+        return new Model(ratings.users, ratings.books.toArray(new UUID[0]), top, scores, counts, userStarts, rated);
+    }
+
+    // Ratings as parallel primitive arrays with dense user and book indexes
+    private static final class Ratings {
+        private final Map<UUID, Integer> users = new HashMap<>();
+        private final Map<UUID, Integer> bookIds = new HashMap<>();
+        private final List<UUID> books = new ArrayList<>();
+        private int[] userIndex = new int[1024];
+        private int[] bookIndex = new int[1024];
+        private byte[] values = new byte[1024];
+        private int count;
+
+        void add(UUID userId, UUID bookId, int rating) {
+            if (count == values.length) {
+                userIndex = Arrays.copyOf(userIndex, count * 2);
+                bookIndex = Arrays.copyOf(bookIndex, count * 2);
+                values = Arrays.copyOf(values, count * 2);
+            }
+            userIndex[count] = users.computeIfAbsent(userId, key -> users.size());
+            Integer book = bookIds.get(bookId);
+            if (book == null) {
+                book = books.size();
+                bookIds.put(bookId, book);
+                books.add(bookId);
+            }
+            bookIndex[count] = book;
+            values[count] = (byte) rating;
+            count++;
+        }
+    }
+
+    // Model parameters; user u's factors are userFactors[u * k .. u * k + k)
+    private static final class Factors {
+        private final int k;
+        private final float mean;
+        private final float[] userBias;
+        private final float[] bookBias;
+        private final float[] userFactors;
+        private final float[] bookFactors;
+
+        Factors(Ratings ratings, int k) {
+            this.k = k;
+            long sum = 0;
+            for (int t = 0; t < ratings.count; t++) {
+                sum += ratings.values[t];
+            }
+            mean = (float) sum / ratings.count;
+            userBias = new float[ratings.users.size()];
+            bookBias = new float[ratings.books.size()];
+            userFactors = new float[ratings.users.size() * k];
+            bookFactors = new float[ratings.books.size() * k];
+            Random random = new Random(7);
+            float scale = (float) (0.1 / Math.sqrt(k));
+            for (int f = 0; f < userFactors.length; f++) {
+                userFactors[f] = (float) random.nextGaussian() * scale;
+            }
+            for (int f = 0; f < bookFactors.length; f++) {
+                bookFactors[f] = (float) random.nextGaussian() * scale;
+            }
+        }
+
+        float predict(int user, int book) {
+            float dot = 0;
+            int u = user * k;
+            int b = book * k;
+            for (int f = 0; f < k; f++) {
+                dot += userFactors[u + f] * bookFactors[b + f];
+            }
+            return mean + userBias[user] + bookBias[book] + dot;
+        }
+
+        double rmse(Ratings ratings) {
+            double squared = 0;
+            for (int t = 0; t < ratings.count; t++) {
+                double error = ratings.values[t] - predict(ratings.userIndex[t], ratings.bookIndex[t]);
+                squared += error * error;
+            }
+            return Math.sqrt(squared / ratings.count);
+        }
+    }
+
+    // One SGD pass over order[from..to)
+    private static final class SgdTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Factors m;
+        private final Ratings ratings;
+        private final int[] order;
+        private final int from;
+        private final int to;
+        private final int grain;
+        private final float rate;
+        private final float regularization;
+
+        SgdTask(Factors m, Ratings ratings, int[] order, int from, int to, int grain, float rate, float regularization) {
+            this.m = m;
+            this.ratings = ratings;
+            this.order = order;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.rate = rate;
+            this.regularization = regularization;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > grain) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SgdTask(m, ratings, order, from, middle, grain, rate, regularization),
+                          new SgdTask(m, ratings, order, middle, to, grain, rate, regularization));
+                return;
+            }
+            int k = m.k;
+            for (int i = from; i < to; i++) {
+                int t = order[i];
+                int user = ratings.userIndex[t];
+                int book = ratings.bookIndex[t];
+                float error = ratings.values[t] - m.predict(user, book);
+                m.userBias[user] += rate * (error - regularization * m.userBias[user]);
+                m.bookBias[book] += rate * (error - regularization * m.bookBias[book]);
+                int u = user * k;
+                int b = book * k;
+                for (int f = 0; f < k; f++) {
+                    float userFactor = m.userFactors[u + f];
+                    float bookFactor = m.bookFactors[b + f];
+                    m.userFactors[u + f] += rate * (error * bookFactor - regularization * userFactor);
+                    m.bookFactors[b + f] += rate * (error * userFactor - regularization * bookFactor);
+                }
+            }
+        }
+    }
+
+    // Scores every unrated book for users[from..to) and keeps the best MAX_LIMIT in a min-heap
+    private static final class TopTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Factors m;
+        private final int[] userStarts;
+        private final int[] rated;
+        private final int[] top;
+        private final float[] scores;
+        private final int[] counts;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        TopTask(Factors m, int[] userStarts, int[] rated, int[] top, float[] scores, int[] counts, int from, int to, int grain) {
+            this.m = m;
+            this.userStarts = userStarts;
+            this.rated = rated;
+            this.top = top;
+            this.scores = scores;
+            this.counts = counts;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > grain) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new TopTask(m, userStarts, rated, top, scores, counts, from, middle, grain),
+                          new TopTask(m, userStarts, rated, top, scores, counts, middle, to, grain));
+                return;
+            }
+            int books = m.bookBias.length;
+            // seen[book] == user + 1 marks the books the current user rated
+            int[] seen = new int[books];
+            int[] heapBooks = new int[MAX_LIMIT];
+            float[] heapScores = new float[MAX_LIMIT];
+            for (int user = from; user < to; user++) {
+                for (int r = userStarts[user]; r < userStarts[user + 1]; r++) {
+                    seen[rated[r]] = user + 1;
+                }
+                int size = 0;
+                for (int book = 0; book < books; book++) {
+                    if (seen[book] == user + 1) {
+                        continue;
+                    }
+                    float score = m.predict(user, book);
+                    if (size < MAX_LIMIT) {
+                        heapBooks[size] = book;
+                        heapScores[size] = score;
+                        siftUp(heapBooks, heapScores, size++);
+                    } else if (score > heapScores[0]) {
+                        heapBooks[0] = book;
+                        heapScores[0] = score;
+                        siftDown(heapBooks, heapScores, size);
+                    }
+                }
+                // Popping the minimum fills the user's slice from the back, leaving it best first
+                int offset = user * MAX_LIMIT;
+                counts[user] = size;
+                while (size > 0) {
+                    size--;
+                    top[offset + size] = heapBooks[0];
+                    scores[offset + size] = heapScores[0];
+                    heapBooks[0] = heapBooks[size];
+                    heapScores[0] = heapScores[size];
+                    siftDown(heapBooks, heapScores, size);
+                }
+            }
+        }
+
+        private static void siftUp(int[] books, float[] scores, int index) {
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (scores[parent] <= scores[index]) {
+                    return;
+                }
+                swap(books, scores, parent, index);
+                index = parent;
+            }
+        }
+
+        private static void siftDown(int[] books, float[] scores, int size) {
+            int index = 0;
+            while (true) {
+                int smallest = index;
+                int left = 2 * index + 1;
+                int right = left + 1;
+                if (left < size && scores[left] < scores[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && scores[right] < scores[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == index) {
+                    return;
+                }
+                swap(books, scores, smallest, index);
+                index = smallest;
+            }
+        }
+
+        private static void swap(int[] books, float[] scores, int a, int b) {
+            int book = books[a];
+            books[a] = books[b];
+            books[b] = book;
+            float score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+        }
+    }
+}
@@ -1,6 +1,10 @@
 // ReviewService.java - COMPLETE FIXED VERSION
 package auca.ac.rw.ebook.service;
 
+import auca.ac.rw.ebook.dto.CursorPage;
+import auca.ac.rw.ebook.dto.PageCursor;
+import auca.ac.rw.ebook.dto.ReviewRating;
+import auca.ac.rw.ebook.dto.ReviewView;
 import auca.ac.rw.ebook.model.Review;
 import auca.ac.rw.ebook.model.User;
 import auca.ac.rw.ebook.model.Book;
@@ -8,10 +12,17 @@ import auca.ac.rw.ebook.repository.ReviewRepository;
 import auca.ac.rw.ebook.repository.UserRepository;
 import auca.ac.rw.ebook.repository.BookRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -27,8 +38,22 @@ public class ReviewService {
 
     @Autowired
     private BookRepository bookRepository;
+
+    @Autowired
+    private BookDetailService bookDetailService;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookCatalogSnapshot catalogSnapshot;
+
+    @Autowired
+    private RecommendationEngine recommendationEngine;
     
     // CRUD Operations - FIXED VERSION
+    // Every write updates the book's rating summary in the same transaction
+    @Transactional
     public String saveReview(Review review) {
         // FIXED: Load actual entities from database
         if (review.getUser() == null || review.getUser().getUser_id() == null) {
@@ -62,6 +87,8 @@ public class ReviewService {
             review.setBook(bookOpt.get());
             review.setCreated_at(LocalDateTime.now());
             reviewRepository.save(review);
+            ratingChanged(bookId, null, review.getRating());
+            recommendationEngine.reviewed(userId, bookId);
             return "Review saved successfully";
         } else {
             return "You have already reviewed this book";
@@ -69,6 +96,7 @@ public class ReviewService {
     }
 
     // NEW: Save review with user and book IDs directly
+    @Transactional
     public String saveReviewWithIds(UUID userId, UUID bookId, Review review) {
         // Validate rating
         if (review.getRating() == null || review.getRating() < 1 || review.getRating() > 5) {
@@ -92,20 +120,23 @@ public class ReviewService {
             review.setBook(bookOpt.get());
             review.setCreated_at(LocalDateTime.now());
             reviewRepository.save(review);
+            ratingChanged(bookId, null, review.getRating());
+            recommendationEngine.reviewed(userId, bookId);
             return "Review saved successfully";
         } else {
             return "You have already reviewed this book";
         }
     }
     
-    public List<Review> getAllReviews() {
-        return reviewRepository.findAll();
+    public List<ReviewView> getAllReviews() {
+        return reviewRepository.findAllViews();
     }
     
     public Optional<Review> getReviewById(UUID id) {
         return reviewRepository.findById(id);
     }
     
+    @Transactional
     public String updateReview(Review review) {
         // FIXED: Load actual entities from database
         if (review.getUser() == null || review.getUser().getUser_id() == null) {
@@ -131,19 +162,30 @@ public class ReviewService {
             return "Book not found with ID: " + bookId;
         }
         
-        if (reviewRepository.existsById(review.getReview_id())) {
+        Optional<ReviewRating> previous = reviewRepository.findRatingForUpdate(review.getReview_id());
+        if (previous.isPresent()) {
             review.setUser(userOpt.get());
             review.setBook(bookOpt.get());
             reviewRepository.save(review);
+            if (previous.get().bookId().equals(bookId)) {
+                ratingChanged(bookId, previous.get().rating(), review.getRating());
+            } else {
+                ratingChanged(previous.get().bookId(), previous.get().rating(), null);
+                ratingChanged(bookId, null, review.getRating());
+                recommendationEngine.reviewed(userId, bookId);
+            }
             return "Review updated successfully";
         } else {
             return "Review not found";
         }
     }
     
+    @Transactional
     public String deleteReview(UUID id) {
-        if (reviewRepository.existsById(id)) {
-            reviewRepository.deleteById(id);
+        Optional<ReviewRating> previous = reviewRepository.findRatingForUpdate(id);
+        if (previous.isPresent()) {
+            reviewRepository.deleteByReviewId(id);
+            ratingChanged(previous.get().bookId(), previous.get().rating(), null);
             return "Review deleted successfully";
         } else {
             return "Review not found";
@@ -151,20 +193,20 @@ public class ReviewService {
     }
     
     // findBy... methods
-    public List<Review> getReviewsByUserId(UUID userId) {
-        return reviewRepository.findByUserId(userId);
+    public List<ReviewView> getReviewsByUserId(UUID userId) {
+        return reviewRepository.findViewsByUserId(userId);
     }
     
-    public List<Review> getReviewsByBookId(UUID bookId) {
-        return reviewRepository.findByBookId(bookId);
+    public List<ReviewView> getReviewsByBookId(UUID bookId) {
+        return reviewRepository.findViewsByBookId(bookId);
     }
     
-    public List<Review> getReviewsByRating(Integer rating) {
-        return reviewRepository.findByRating(rating);
+    public List<ReviewView> getReviewsByRating(Integer rating) {
+        return reviewRepository.findViewsByRating(rating);
     }
     
-    public List<Review> getReviewsByMinimumRating(Integer minRating) {
-        return reviewRepository.findByRatingGreaterThanEqual(minRating);
+    public List<ReviewView> getReviewsByMinimumRating(Integer minRating) {
+        return reviewRepository.findViewsByRatingGreaterThanEqual(minRating);
     }
     
     public Optional<Review> getReviewByUserAndBook(UUID userId, UUID bookId) {
@@ -181,47 +223,95 @@ public class ReviewService {
     }
     
     // Sorting and Pagination
-    public Page<Review> getReviewsByUserIdWithPagination(UUID userId, Pageable pageable) {
-        return reviewRepository.findByUserId(userId, pageable);
+    public Page<ReviewView> getReviewsByUserIdWithPagination(UUID userId, Pageable pageable) {
+        return reviewRepository.findViewsByUserId(userId, pageable);
     }
     
-    public Page<Review> getReviewsByBookIdWithPagination(UUID bookId, Pageable pageable) {
-        return reviewRepository.findByBookId(bookId, pageable);
+    public Page<ReviewView> getReviewsByBookIdWithPagination(UUID bookId, Pageable pageable) {
+        return reviewRepository.findViewsByBookId(bookId, pageable);
     }
     
     public Page<Review> getReviewsByRatingWithPagination(Integer rating, Pageable pageable) {
         return reviewRepository.findByRating(rating, pageable);
     }
     
-    public Page<Review> getAllReviewsWithPagination(Pageable pageable) {
-        return reviewRepository.findAll(pageable);
+    public Page<ReviewView> getAllReviewsWithPagination(Pageable pageable) {
+        return reviewRepository.findAllViews(pageable);
     }
     
-    // Business logic methods
+    // Keyset pagination - cursor is null for the first page. Reviews without a date follow the
+    // dated ones, so a page that runs out of dated rows is filled from the undated ones
+    public CursorPage<ReviewView> getReviewsAfter(String cursor, int size) {
+        Limit limit = Limit.of(size + 1);
+        PageCursor after = cursor != null ? PageCursor.decode(cursor) : null;
+        boolean dated = after == null || after.sortKeyAsDateTime() != null;
+        List<ReviewView> rows;
+        if (after == null) {
+            rows = reviewRepository.findFirstByCreatedAtKeyset(limit);
+        } else if (dated) {
+            rows = reviewRepository.findNextByCreatedAtKeyset(after.sortKeyAsDateTime(), after.id(), limit);
+        } else {
+            rows = reviewRepository.findNextUndatedKeyset(after.id(), limit);
+        }
+        if (dated && rows.size() <= size) {
+            rows = new ArrayList<>(rows);
+            rows.addAll(reviewRepository.findFirstUndatedKeyset(Limit.of(size + 1 - rows.size())));
+        }
+        return CursorPage.of(rows, size, review -> PageCursor.of(review.createdAt(), review.reviewId()));
+    }
+    
+    // Business logic methods - rating summaries are read from the book, not re-aggregated
     public Double calculateAverageRatingForBook(UUID bookId) {
-        Double averageRating = reviewRepository.calculateAverageRatingForBook(bookId);
+        Double averageRating = catalogSnapshot.getBook(bookId).map(Book::getAverage_rating).orElse(null);
         return averageRating != null ? Math.round(averageRating * 10.0) / 10.0 : 0.0; // Round to 1 decimal
     }
     
-    public List<Review> getBookReviewsSorted(UUID bookId) {
+    public List<ReviewView> getBookReviewsSorted(UUID bookId) {
         return reviewRepository.findBookReviewsSortedByRatingAndDate(bookId);
     }
     
     public List<Object[]> getBooksWithAverageRatingAbove(Double minRating) {
-        return reviewRepository.findBooksWithAverageRatingAbove(minRating);
+        return bookRepository.findBooksWithAverageRatingAbove(minRating);
     }
     
     public List<Object[]> getMostReviewedBooks() {
-        return reviewRepository.findMostReviewedBooks();
+        return bookRepository.findMostReviewedBooks();
     }
     
     // Statistics methods
     public Long getReviewsCountForBook(UUID bookId) {
-        return reviewRepository.countReviewsForBook(bookId);
+        return catalogSnapshot.getBook(bookId).map(book -> (long) book.getRating_count()).orElse(0L);
     }
     
+    // Rows of [rating, count], highest rating first, summed from the per-book histograms
     public List<Object[]> getReviewsCountByRating() {
-        return reviewRepository.countReviewsByRating();
+        long[] counts = new long[6];
+        for (Book book : catalogSnapshot.getAllBooks()) {
+            for (int rating = 1; rating <= 5; rating++) {
+                counts[rating] += book.getRatingCount(rating);
+            }
+        }
+        List<Object[]> result = new ArrayList<>(5);
+        for (int rating = 5; rating >= 1; rating--) {
+            if (counts[rating] > 0) {
+                result.add(new Object[] {rating, counts[rating]});
+            }
+        }
+        return result;
+    }
+    
+    // Startup - repairs summaries that drifted through writes made outside this service
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void reconcileRatingSummaries() {
+        if (bookRepository.reconcileRatingSummaries() > 0) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    catalogSnapshot.reload();
+                }
+            });
+        }
     }
     
     // Validation methods
@@ -234,8 +324,13 @@ public class ReviewService {
     }
     
     // Business logic
+    @Transactional
     public String updateReviewRating(UUID reviewId, Integer newRating, String newComment) {
-        Optional<Review> reviewOpt = reviewRepository.findById(reviewId);
+        if (newRating == null || newRating < 1 || newRating > 5) {
+            return "Rating must be between 1 and 5";
+        }
+        Optional<ReviewRating> previous = reviewRepository.findRatingForUpdate(reviewId);
+        Optional<Review> reviewOpt = previous.isPresent() ? reviewRepository.findById(reviewId) : Optional.empty();
         if (reviewOpt.isPresent()) {
             Review review = reviewOpt.get();
             review.setRating(newRating);
@@ -244,9 +339,31 @@ public class ReviewService {
             }
             review.setCreated_at(LocalDateTime.now());
             reviewRepository.save(review);
+            ratingChanged(previous.get().bookId(), previous.get().rating(), newRating);
             return "Review updated successfully";
         } else {
             return "Review not found";
         }
     }
+    
+    // Called before a user is deleted: the cascade removes their reviews without going
+    // through this service, so their ratings leave the book summaries here first
+    @Transactional
+    public void removeUserRatings(UUID userId) {
+        for (ReviewRating rating : reviewRepository.findRatingsByUserIdForUpdate(userId)) {
+            ratingChanged(rating.bookId(), rating.rating(), null);
+        }
+    }
+    
+    // Helper methods
+    // The summary row is updated in the caller's transaction; the catalog and the
+    // book page cache pick up the new values once it commits
+    private void ratingChanged(UUID bookId, Integer removedRating, Integer addedRating) {
+        if (bookId == null) {
+            return;
+        }
+        bookRepository.applyRatingChange(bookId, removedRating, addedRating);
+        bookService.ratingChanged(bookId);
+        bookDetailService.evict(bookId);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,503 @@
+// StockLeaseManager.java
+package auca.ac.rw.ebook.service;
+
+import auca.ac.rw.ebook.repository.BookRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Node-local stock leases for high-demand titles.
+// For a leased book this node moves a block of units out of books.stock_quantity in one
+// statement and hands them out from memory, so buyers only touch the book row once per block.
+// The same statement records the block in stock_leases, and every unit handed out is recorded
+// in stock_lease_sales by the buyer's own transaction, so what a lease still holds is always
+// known in the database. Unsold units go back to the row when the lease expires, when leasing
+// is switched off and on shutdown; leases left behind by a node that died are reclaimed by
+// the sweep of any node once they are past their expiry.
+//
+// Which books are leased is kept in stock_lease_books. Each node loads it at startup and on
+// every sweep, so leasing switched on or off anywhere reaches all nodes and outlives a restart.
+//
+// Blocks are taken and returned on one lease thread over a small pool of its own. Buyers wait
+// for a refill without holding a lock and without needing a second connection from the pool
+// their transaction already holds one of.
+@Component
+public class StockLeaseManager {
+
+    private static final Logger log = LoggerFactory.getLogger(StockLeaseManager.class);
+
+    // The block currently handed out: the lease row it belongs to and the units left locally.
+    // Swapped as a whole so a take always knows which lease its units came from.
+    private record Block(UUID leaseId, int remaining) {
+        static final Block EMPTY = new Block(null, 0);
+    }
+
+    private record Returned(UUID bookId, int units) {}
+
+    private static final class Lease {
+        final UUID bookId;
+        final AtomicReference<Block> block = new AtomicReference<>(Block.EMPTY);
+        volatile long expiresAt;
+        volatile boolean closed;
+        // Guarded by the lease; at most one refill in flight
+        CompletableFuture<Integer> refill;
+
+        Lease(UUID bookId) {
+            this.bookId = bookId;
+        }
+    }
+
+    // The CTE locks the book row, caps the block at what is left and records it as a new lease
+    private static final String TAKE_BLOCK_SQL =
+            "WITH block AS (SELECT book_id, LEAST(GREATEST(stock_quantity, 0), ?) AS units FROM books WHERE book_id = ? FOR UPDATE), " +
+            "taken AS (UPDATE books b SET stock_quantity = b.stock_quantity - block.units, updated_at = now() FROM block " +
+            "WHERE b.book_id = block.book_id AND block.units > 0 RETURNING block.units), " +
+            "lease AS (INSERT INTO stock_leases (lease_id, node_id, book_id, units, expires_at) " +
+            "SELECT ?, ?, ?, units, now() + ? * interval '1 second' FROM taken) " +
+            "SELECT units FROM taken";
+
+    // Refilling a live lease only moves units if its row is still there. A row reclaimed by
+    // another node's sweep is not recreated: its unsold units are already back on the book.
+    // Returns the units moved and what the row had available, so a lost lease can be told
+    // from a sold-out book.
+    private static final String RENEW_BLOCK_SQL =
+            "WITH block AS (SELECT book_id, LEAST(GREATEST(stock_quantity, 0), ?) AS units FROM books WHERE book_id = ? FOR UPDATE), " +
+            "renewed AS (UPDATE stock_leases l SET units = l.units + block.units, expires_at = now() + ? * interval '1 second' " +
+            "FROM block WHERE l.lease_id = ? AND block.units > 0 RETURNING block.units), " +
+            "taken AS (UPDATE books b SET stock_quantity = b.stock_quantity - renewed.units, updated_at = now() FROM renewed " +
+            "WHERE b.book_id = ? RETURNING renewed.units) " +
+            "SELECT COALESCE((SELECT units FROM taken), 0) AS taken, COALESCE((SELECT units FROM block), 0) AS available";
+
+    // Returning is three statements in one transaction: the delete waits for buyers still
+    // recording sales against the lease, and the next statement sees what they committed
+    private static final String DELETE_LEASE_SQL =
+            "DELETE FROM stock_leases WHERE lease_id = ? RETURNING book_id, units";
+
+    private static final String DELETE_SALES_SQL =
+            "WITH sold AS (DELETE FROM stock_lease_sales WHERE lease_id = ? RETURNING units) SELECT COALESCE(SUM(units), 0) FROM sold";
+
+    private static final String RETURN_UNITS_SQL =
+            "UPDATE books SET stock_quantity = stock_quantity + ?, updated_at = now() WHERE book_id = ?";
+
+    // Setting the stock outright ends every lease on the book, on any node, under the row lock
+    private static final String LOCK_BOOK_SQL =
+            "SELECT book_id FROM books WHERE book_id = ? FOR UPDATE";
+
+    private static final String DELETE_BOOK_LEASES_SQL =
+            "DELETE FROM stock_leases WHERE book_id = ? RETURNING lease_id";
+
+    private static final String DELETE_LEASE_SALES_SQL =
+            "DELETE FROM stock_lease_sales WHERE lease_id = ?";
+
+    private static final String SET_STOCK_SQL =
+            "UPDATE books SET stock_quantity = ?, updated_at = now() WHERE book_id = ?";
+
+    private static final String ENABLE_SQL =
+            "INSERT INTO stock_lease_books (book_id, enabled_at) VALUES (?, now()) ON CONFLICT (book_id) DO NOTHING";
+
+    private static final String DISABLE_SQL =
+            "DELETE FROM stock_lease_books WHERE book_id = ?";
+
+    // Rows of books deleted without going through disable() are left out
+    private static final String LEASED_BOOKS_SQL =
+            "SELECT l.book_id FROM stock_lease_books l JOIN books b ON b.book_id = l.book_id";
+
+    private static final String STALE_LEASES_SQL =
+            "SELECT lease_id FROM stock_leases WHERE node_id = ? OR expires_at < now() - ? * interval '1 second'";
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookCatalogSnapshot catalogSnapshot;
+
+    @Value("${ebook.stock-lease.block-size:50}")
+    private int blockSize;
+
+    @Value("${ebook.stock-lease.ttl-seconds:30}")
+    private long ttlSeconds;
+
+    @Value("${ebook.stock-lease.refill-timeout-ms:5000}")
+    private long refillTimeoutMs;
+
+    // Identifies this node's rows; set it per host so a restarted node reclaims its own leases
+    // right away instead of after they expire
+    @Value("${ebook.stock-lease.node-id:${random.uuid}}")
+    private String nodeId;
+
+    private final HikariDataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService leaseThread;
+
+    private final Map<UUID, Lease> leases = new ConcurrentHashMap<>();
+
+    // Metrics
+    private final AtomicLong localTakes = new AtomicLong();
+    private final AtomicLong blocksTaken = new AtomicLong();
+    private final AtomicLong unitsReturned = new AtomicLong();
+    private final AtomicLong unitsReclaimed = new AtomicLong();
+    private final AtomicLong refillTimeouts = new AtomicLong();
+    private final AtomicLong oversoldLeases = new AtomicLong();
+
+    public StockLeaseManager(DataSourceProperties dataSourceProperties,
+                             @Value("${ebook.stock-lease.pool-size:2}") int poolSize) {
+        this.dataSource = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        this.dataSource.setPoolName("stock-lease");
+        this.dataSource.setMaximumPoolSize(poolSize);
+        this.dataSource.setMinimumIdle(0);
+        this.dataSource.setAutoCommit(false);
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        this.leaseThread = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-lease");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Loads the leased books; leases of this node's previous run, and of nodes that died, go
+    // back to the book rows
+    @EventListener(ApplicationReadyEvent.class)
+    public void reclaimOnStartup() {
+        leaseThread.execute(this::loadLeasedBooks);
+        leaseThread.execute(this::reclaimStale);
+    }
+
+    // Lease management - enabling only records the book; the first buyer takes a block
+    public boolean enable(UUID bookId) {
+        if (!bookRepository.existsById(bookId)) {
+            return false;
+        }
+        CompletableFuture.runAsync(() -> {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(ENABLE_SQL, bookId));
+            leases.computeIfAbsent(bookId, Lease::new);
+        }, leaseThread).join();
+        return true;
+    }
+
+    // Returns the units this node still held; other nodes return theirs on their next sweep
+    public int disable(UUID bookId) {
+        return CompletableFuture.supplyAsync(() -> {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(DISABLE_SQL, bookId));
+            return release(bookId);
+        }, leaseThread).join();
+    }
+
+    public boolean isLeased(UUID bookId) {
+        return leases.containsKey(bookId);
+    }
+
+    // Hands out units from the local lease and returns the lease they came from, which the
+    // caller records as a sale in its transaction. Waits for a refill when the lease runs dry.
+    // Returns null when the book is not leased or the lease cannot cover the quantity; the
+    // caller then uses the regular database path, which tells a missing book from a sold-out one.
+    public UUID take(UUID bookId, int quantity) {
+        Lease lease = leases.get(bookId);
+        if (lease == null) {
+            return null;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(refillTimeoutMs);
+        while (!lease.closed) {
+            Block block = lease.block.get();
+            if (block.leaseId() != null && block.remaining() >= quantity) {
+                if (lease.block.compareAndSet(block, new Block(block.leaseId(), block.remaining() - quantity))) {
+                    localTakes.incrementAndGet();
+                    return block.leaseId();
+                }
+                continue;
+            }
+            CompletableFuture<Integer> refill;
+            synchronized (lease) {
+                if (lease.refill == null) {
+                    int units = Math.max(blockSize, quantity - block.remaining());
+                    lease.refill = CompletableFuture.supplyAsync(() -> refill(lease, units), leaseThread);
+                }
+                refill = lease.refill;
+            }
+            int taken;
+            try {
+                taken = refill.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                refillTimeouts.incrementAndGet();
+                return null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                return null;
+            }
+            if (taken == 0) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    // Gives back units taken for a transaction that did not commit. Units of a lease that has
+    // been returned since are already back in the row, as their sale was never recorded.
+    public void putBack(UUID bookId, UUID leaseId, int quantity) {
+        Lease lease = leases.get(bookId);
+        if (lease == null) {
+            return;
+        }
+        while (true) {
+            Block block = lease.block.get();
+            if (!leaseId.equals(block.leaseId())
+                    || lease.block.compareAndSet(block, new Block(leaseId, block.remaining() + quantity))) {
+                return;
+            }
+        }
+    }
+
+    // The lease row is gone, e.g. reclaimed by another node's sweep: start a new lease
+    public void leaseLost(UUID bookId, UUID leaseId) {
+        Lease lease = leases.get(bookId);
+        if (lease != null) {
+            leaseThread.execute(() -> {
+                if (leaseId.equals(lease.block.get().leaseId())) {
+                    returnLease(lease);
+                }
+            });
+        }
+    }
+
+    // Sets a book's stock outright; false when there is no such book. Runs on the lease thread,
+    // so this node cannot refill in between, and locks the book row first, so no other node can.
+    // Every lease on the book is ended in the same transaction without giving anything back,
+    // as its unsold units are part of what the new figure replaces. Buyers that find the local
+    // lease empty queue a refill behind this, so refills resume only once it has committed.
+    public boolean overwriteStock(UUID bookId, int stock) {
+        Lease lease = leases.get(bookId);
+        Boolean written = CompletableFuture.supplyAsync(() -> {
+            if (lease != null) {
+                lease.block.set(Block.EMPTY);
+            }
+            return transactionTemplate.execute(status -> {
+                if (jdbcTemplate.queryForList(LOCK_BOOK_SQL, UUID.class, bookId).isEmpty()) {
+                    return false;
+                }
+                for (UUID leaseId : jdbcTemplate.queryForList(DELETE_BOOK_LEASES_SQL, UUID.class, bookId)) {
+                    jdbcTemplate.update(DELETE_LEASE_SALES_SQL, leaseId);
+                }
+                jdbcTemplate.update(SET_STOCK_SQL, stock, bookId);
+                return true;
+            });
+        }, leaseThread).join();
+        if (Boolean.TRUE.equals(written)) {
+            catalogSnapshot.refresh(bookId);
+            return true;
+        }
+        return false;
+    }
+
+    // Expiry - unsold units go back to the row; the book stays leased and the next buyer takes
+    // a fresh block. Leases of other nodes that stopped renewing them are reclaimed here too.
+    @Scheduled(fixedDelayString = "${ebook.stock-lease.sweep-interval-ms:5000}")
+    public void expireLeases() {
+        long now = System.currentTimeMillis();
+        for (Lease lease : leases.values()) {
+            if (lease.expiresAt <= now && lease.block.get().leaseId() != null) {
+                leaseThread.execute(() -> {
+                    if (lease.expiresAt <= System.currentTimeMillis()) {
+                        returnLease(lease);
+                    }
+                });
+            }
+        }
+        leaseThread.execute(this::loadLeasedBooks);
+        leaseThread.execute(this::reclaimStale);
+    }
+
+    // Gives back what this node holds; the books stay leased for the other nodes and the restart
+    @PreDestroy
+    public void returnAll() {
+        CompletableFuture.runAsync(() -> {
+            for (UUID bookId : List.copyOf(leases.keySet())) {
+                release(bookId);
+            }
+        }, leaseThread).join();
+        leaseThread.shutdown();
+        dataSource.close();
+    }
+
+    // Metrics
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        Map<UUID, Integer> held = new LinkedHashMap<>();
+        leases.forEach((bookId, lease) -> held.put(bookId, lease.block.get().remaining()));
+        metrics.put("nodeId", nodeId);
+        metrics.put("leasedBooks", held);
+        metrics.put("blockSize", blockSize);
+        metrics.put("ttlSeconds", ttlSeconds);
+        metrics.put("localTakes", localTakes.get());
+        metrics.put("blocksTaken", blocksTaken.get());
+        metrics.put("unitsReturned", unitsReturned.get());
+        metrics.put("unitsReclaimed", unitsReclaimed.get());
+        metrics.put("refillTimeouts", refillTimeouts.get());
+        metrics.put("oversoldLeases", oversoldLeases.get());
+        metrics.put("timestamp", LocalDateTime.now());
+        return metrics;
+    }
+
+    // Helper methods - everything below runs on the lease thread, so refills and returns of a
+    // lease never overlap
+    private int refill(Lease lease, int units) {
+        try {
+            if (lease.closed) {
+                return 0;
+            }
+            Block block = lease.block.get();
+            UUID leaseId = block.leaseId();
+            int taken = leaseId != null ? renewBlock(lease, leaseId, units) : -1;
+            if (taken < 0) {
+                // No live lease, or its row was reclaimed: whatever is left locally was given back
+                // by the reclaim, so it is dropped and a new lease is started
+                lease.block.set(Block.EMPTY);
+                block = Block.EMPTY;
+                leaseId = UUID.randomUUID();
+                taken = takeBlock(lease, leaseId, units);
+            }
+            if (taken == 0) {
+                return 0;
+            }
+            while (!lease.block.compareAndSet(block, new Block(leaseId, block.remaining() + taken))) {
+                block = lease.block.get();
+            }
+            lease.expiresAt = System.currentTimeMillis() + ttlSeconds * 1000;
+            blocksTaken.incrementAndGet();
+            catalogSnapshot.refresh(lease.bookId);
+            return taken;
+        } finally {
+            synchronized (lease) {
+                lease.refill = null;
+            }
+        }
+    }
+
+    private int takeBlock(Lease lease, UUID leaseId, int units) {
+        Integer taken = transactionTemplate.execute(status -> {
+            List<Integer> rows = jdbcTemplate.queryForList(TAKE_BLOCK_SQL, Integer.class,
+                    units, lease.bookId, leaseId, nodeId, lease.bookId, ttlSeconds);
+            return rows.isEmpty() ? 0 : rows.get(0);
+        });
+        return taken != null ? taken : 0;
+    }
+
+    // Returns -1 when the lease row is gone
+    private int renewBlock(Lease lease, UUID leaseId, int units) {
+        Integer taken = transactionTemplate.execute(status -> {
+            Map<String, Object> row = jdbcTemplate.queryForMap(RENEW_BLOCK_SQL,
+                    units, lease.bookId, ttlSeconds, leaseId, lease.bookId);
+            int moved = ((Number) row.get("taken")).intValue();
+            int available = ((Number) row.get("available")).intValue();
+            return moved == 0 && available > 0 ? -1 : moved;
+        });
+        return taken != null ? taken : 0;
+    }
+
+    // Ends the current lease: buyers start a new one, and what the old one did not sell goes back
+    private int returnLease(Lease lease) {
+        Block block = lease.block.getAndSet(Block.EMPTY);
+        if (block.leaseId() == null) {
+            return 0;
+        }
+        int returned = returnUnsold(block.leaseId());
+        unitsReturned.addAndGet(returned);
+        return returned;
+    }
+
+    // Picks up books leased on other nodes and lets go of the ones disabled there
+    private void loadLeasedBooks() {
+        Set<UUID> leased = new HashSet<>(jdbcTemplate.queryForList(LEASED_BOOKS_SQL, UUID.class));
+        leased.forEach(bookId -> leases.computeIfAbsent(bookId, Lease::new));
+        for (UUID bookId : List.copyOf(leases.keySet())) {
+            if (!leased.contains(bookId)) {
+                release(bookId);
+            }
+        }
+    }
+
+    private int release(UUID bookId) {
+        Lease lease = leases.remove(bookId);
+        if (lease == null) {
+            return 0;
+        }
+        lease.closed = true;
+        return returnLease(lease);
+    }
+
+    private void reclaimStale() {
+        List<UUID> stale = jdbcTemplate.queryForList(STALE_LEASES_SQL, UUID.class, nodeId, ttlSeconds);
+        List<UUID> own = new ArrayList<>();
+        leases.values().forEach(lease -> own.add(lease.block.get().leaseId()));
+        for (UUID leaseId : stale) {
+            if (!own.contains(leaseId)) {
+                try {
+                    unitsReclaimed.addAndGet(returnUnsold(leaseId));
+                } catch (IllegalStateException e) {
+                    oversoldLeases.incrementAndGet();
+                    log.error("Stock lease not reclaimed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Deletes the lease row and its sales and puts the units it did not sell back on the book
+    private int returnUnsold(UUID leaseId) {
+        Returned returned = transactionTemplate.execute(status -> {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(DELETE_LEASE_SQL, leaseId);
+            if (rows.isEmpty()) {
+                return null;
+            }
+            UUID bookId = (UUID) rows.get(0).get("book_id");
+            int units = ((Number) rows.get(0).get("units")).intValue();
+            Long sold = jdbcTemplate.queryForObject(DELETE_SALES_SQL, Long.class, leaseId);
+            int unsold = units - (sold != null ? sold.intValue() : 0);
+            if (unsold < 0) {
+                // More sold than the lease ever held; rolled back so the rows stay for inspection
+                throw new IllegalStateException("Stock lease " + leaseId + " for book " + bookId
+                        + " sold " + sold + " units but held " + units);
+            }
+            if (unsold > 0) {
+                jdbcTemplate.update(RETURN_UNITS_SQL, unsold, bookId);
+            }
+            return new Returned(bookId, unsold);
+        });
+        if (returned == null) {
+            return 0;
+        }
+        if (returned.units() > 0) {
+            catalogSnapshot.refresh(returned.bookId());
+        }
+        return returned.units();
+    }
+}
@@ -1,6 +1,7 @@
 // UserService.java - Fix the update method
 package auca.ac.rw.ebook.service;
 
+import auca.ac.rw.ebook.model.Book;
 import auca.ac.rw.ebook.model.User;
 import auca.ac.rw.ebook.model.EUserRole;
 import auca.ac.rw.ebook.model.Location;
@@ -10,9 +11,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -23,12 +29,32 @@ public class UserService {
 
     @Autowired
     private LocationRepository locationRepository;
+
+    @Autowired
+    private RecommendationEngine recommendationEngine;
+
+    @Autowired
+    private BookCatalogSnapshot catalogSnapshot;
+
+    @Autowired
+    private BestSellerLeaderboard bestSellerLeaderboard;
+
+    @Autowired
+    private ExistenceFilters existenceFilters;
+    
+    @Autowired
+    private CartStore cartStore;
+    
+    @Autowired
+    private ReviewService reviewService;
     
     // CRUD Operations
     public String saveUser(User user) {
         return saveUserWithLocation(user, null);
     }
 
+    // Checked against the table, not the existence filter, which is only a hint for lookups;
+    // a duplicate that slips in between the check and the insert fails on the unique email
     public String saveUserWithLocation(User user, UUID locationId) {
         if (!userRepository.existsByEmail(user.getEmail())) {
             // Set created date
@@ -44,7 +70,7 @@ public class UserService {
                 }
             }
             
-            userRepository.save(user);
+            userWritten(userRepository.save(user));
             return "User saved successfully";
         } else {
             return "User with this email already exists";
@@ -78,7 +104,7 @@ public class UserService {
                 existingUser.setLocation(user.getLocation());
             }
             
-            userRepository.save(existingUser);
+            userWritten(userRepository.save(existingUser));
             return "User updated successfully";
         } else {
             return "User not found";
@@ -108,7 +134,7 @@ public class UserService {
                 existingUser.setRole(userUpdates.getRole());
             }
             
-            userRepository.save(existingUser);
+            userWritten(userRepository.save(existingUser));
             return "User updated successfully";
         } else {
             return "User not found";
@@ -144,9 +170,12 @@ public class UserService {
         return userRepository.findById(id);
     }
     
+    @Transactional
     public String deleteUser(UUID id) {
         if (userRepository.existsById(id)) {
+            reviewService.removeUserRatings(id);
             userRepository.deleteById(id);
+            cartStore.userRemoved(id);
             return "User deleted successfully";
         } else {
             return "User not found";
@@ -176,11 +205,11 @@ public class UserService {
     
     // existsBy... methods
     public Boolean checkUserExistsByEmail(String email) {
-        return userRepository.existsByEmail(email);
+        return existenceFilters.exists(ExistenceFilters.KeySpace.EMAIL, email, () -> userRepository.existsByEmail(email));
     }
     
     public Boolean checkUserExistsByPhone(String phone) {
-        return userRepository.existsByPhone(phone);
+        return existenceFilters.exists(ExistenceFilters.KeySpace.PHONE, phone, () -> userRepository.existsByPhone(phone));
     }
     
     public Boolean validateUserCredentials(String email, String password) {
@@ -230,6 +259,38 @@ public class UserService {
         }
     }
     
+    // Recommended for you - the user's precomputed list, topped up with best sellers
+    // for users without ratings; served from memory only
+    public List<Book> getRecommendations(UUID userId, int limit) {
+        Map<UUID, Book> books = new LinkedHashMap<>();
+        for (RecommendationEngine.Entry entry : recommendationEngine.top(userId)) {
+            if (books.size() == limit) {
+                break;
+            }
+            catalogSnapshot.getBook(entry.bookId()).ifPresent(book -> books.put(book.getBook_id(), book));
+        }
+        // Best sellers fill the rest, skipping what the user has already rated
+        Set<UUID> rated = recommendationEngine.rated(userId);
+        for (BestSellerLeaderboard.Entry entry : bestSellerLeaderboard.top(BestSellerLeaderboard.Window.ALL_TIME, BestSellerLeaderboard.MAX_LIMIT)) {
+            if (books.size() == limit) {
+                break;
+            }
+            if (rated.contains(entry.bookId())) {
+                continue;
+            }
+            catalogSnapshot.getBook(entry.bookId()).ifPresent(book -> books.putIfAbsent(book.getBook_id(), book));
+        }
+        return new ArrayList<>(books.values());
+    }
+    
+    public Map<String, Object> getRecommendationMetrics() {
+        return recommendationEngine.getMetrics();
+    }
+    
+    public Map<String, Object> getExistenceFilterMetrics() {
+        return existenceFilters.getMetrics(ExistenceFilters.KeySpace.EMAIL, ExistenceFilters.KeySpace.PHONE);
+    }
+    
     public Long getTotalUsersCount() {
         return userRepository.count();
     }
@@ -262,4 +323,10 @@ public class UserService {
             return "User not found";
         }
     }
+
+    // Helper methods
+    private void userWritten(User user) {
+        existenceFilters.add(ExistenceFilters.KeySpace.EMAIL, user.getEmail());
+        existenceFilters.add(ExistenceFilters.KeySpace.PHONE, user.getPhone());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,209 @@
+// StockReservationConcurrencyTest.java
+package auca.ac.rw.ebook;
+
+import auca.ac.rw.ebook.dto.StockLine;
+import auca.ac.rw.ebook.model.Book;
+import auca.ac.rw.ebook.service.BookService;
+import auca.ac.rw.ebook.service.StockLeaseManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// 500 buyers race for a book with fewer units, half through reserveStock and half through
+// decreaseBookStock, with the book served from the database and from a stock lease.
+// Exactly the available units must be sold and none may be left behind in a lease.
+@SpringBootTest
+class StockReservationConcurrencyTest {
+
+    private static final int BUYERS = 500;
+    private static final int THREADS = 32;
+    private static final int STOCK = 120;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private StockLeaseManager stockLeaseManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private UUID bookId;
+
+    @AfterEach
+    void removeBook() {
+        if (bookId != null) {
+            bookService.disableStockLease(bookId);
+            bookService.deleteBook(bookId);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void sellsExactlyTheAvailableStock(boolean leased) throws Exception {
+        bookId = createBook(STOCK);
+        if (leased) {
+            assertTrue(bookService.enableStockLease(bookId));
+        }
+
+        assertEquals(STOCK, race(BUYERS));
+        if (leased) {
+            assertTrue((Long) bookService.getStockLeaseMetrics().get("localTakes") > 0);
+        }
+        // Whatever a lease still held goes back to the row; it must have sold everything
+        assertEquals(0, bookService.disableStockLease(bookId));
+        assertEquals(0, stock());
+        assertEquals(0, leaseRows());
+    }
+
+    // Units a lease took out of the row before the overwrite must not be sold on top of it
+    @Test
+    void overwrittenStockEndsTheLease() throws Exception {
+        bookId = createBook(STOCK);
+        assertTrue(bookService.enableStockLease(bookId));
+        assertEquals("Book stock decreased successfully", bookService.decreaseBookStock(bookId, 1));
+        assertEquals(1, leaseRows());
+
+        assertEquals("Book stock updated successfully", bookService.updateBookStock(bookId, 30));
+        assertEquals(30, stock());
+        assertEquals(0, leaseRows());
+
+        assertEquals(30, race(100));
+        assertEquals(0, bookService.disableStockLease(bookId));
+        assertEquals(0, stock());
+    }
+
+    // Another node's sweep reclaimed this node's lease; the units it gave back must not also be
+    // sold from what this node still holds locally
+    @Test
+    void reclaimedLeaseIsNotRenewed() throws Exception {
+        bookId = createBook(200);
+        assertTrue(bookService.enableStockLease(bookId));
+        assertEquals("Book stock decreased successfully", bookService.decreaseBookStock(bookId, 1));
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("UPDATE books SET stock_quantity = stock_quantity + 49 WHERE book_id = ?", bookId);
+            jdbcTemplate.update("DELETE FROM stock_lease_sales WHERE lease_id IN (SELECT lease_id FROM stock_leases WHERE book_id = ?)", bookId);
+            jdbcTemplate.update("DELETE FROM stock_leases WHERE book_id = ?", bookId);
+        });
+        assertEquals(199, stock());
+
+        assertEquals("Stock reserved successfully", bookService.reserveStock(List.of(new StockLine(bookId, 50))));
+        assertEquals(149, race(300));
+        assertEquals(0, bookService.disableStockLease(bookId));
+        assertEquals(0, stock());
+    }
+
+    // Leasing switched on or off on another node is picked up by this node's sweep
+    @Test
+    void enablementIsSharedThroughTheDatabase() throws Exception {
+        bookId = createBook(STOCK);
+        assertTrue(bookService.enableStockLease(bookId));
+        assertEquals(1, enabledRows());
+        assertEquals("Book stock decreased successfully", bookService.decreaseBookStock(bookId, 1));
+        assertEquals(1, leaseRows());
+
+        transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.update("DELETE FROM stock_lease_books WHERE book_id = ?", bookId));
+        stockLeaseManager.expireLeases();
+        awaitLeased(false);
+        assertEquals(0, leaseRows());
+        assertEquals(STOCK - 1, stock());
+
+        transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.update("INSERT INTO stock_lease_books (book_id, enabled_at) VALUES (?, now())", bookId));
+        stockLeaseManager.expireLeases();
+        awaitLeased(true);
+        assertEquals(STOCK - 1, race(BUYERS));
+        assertEquals(0, bookService.disableStockLease(bookId));
+        assertEquals(0, enabledRows());
+        assertEquals(0, stock());
+    }
+
+    // The sweep drops the book before it has returned the lease, so also wait for the lease row
+    private void awaitLeased(boolean leased) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while ((stockLeaseManager.isLeased(bookId) != leased || !leased && leaseRows() > 0)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        if (leased) {
+            assertTrue(stockLeaseManager.isLeased(bookId));
+        } else {
+            assertFalse(stockLeaseManager.isLeased(bookId));
+        }
+    }
+
+    private UUID createBook(int stock) {
+        Book book = new Book();
+        book.setTitle("Stress " + UUID.randomUUID());
+        book.setAuthor("Stress Test");
+        book.setPrice(BigDecimal.TEN);
+        book.setStock_quantity(stock);
+        assertEquals("Book saved successfully", bookService.saveBook(book));
+        return book.getBook_id();
+    }
+
+    // Buyers one unit each, half through reserveStock and half through decreaseBookStock.
+    // Returns how many bought; every other buyer must have been told the book is sold out.
+    private int race(int count) throws Exception {
+        ExecutorService buyers = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            boolean reserve = i % 2 == 0;
+            results.add(buyers.submit(() -> {
+                start.await();
+                return reserve
+                        ? bookService.reserveStock(List.of(new StockLine(bookId, 1)))
+                        : bookService.decreaseBookStock(bookId, 1);
+            }));
+        }
+        start.countDown();
+        int sold = 0;
+        int soldOut = 0;
+        for (Future<String> result : results) {
+            String response = result.get(60, TimeUnit.SECONDS);
+            if (response.equals("Stock reserved successfully") || response.equals("Book stock decreased successfully")) {
+                sold++;
+            } else if (response.startsWith("Insufficient stock")) {
+                soldOut++;
+            }
+        }
+        buyers.shutdown();
+        assertEquals(count, sold + soldOut);
+        return sold;
+    }
+
+    private int stock() {
+        return jdbcTemplate.queryForObject("SELECT stock_quantity FROM books WHERE book_id = ?", Integer.class, bookId);
+    }
+
+    private int enabledRows() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM stock_lease_books WHERE book_id = ?", Integer.class, bookId);
+    }
+
+    private int leaseRows() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM stock_leases WHERE book_id = ?", Integer.class, bookId);
+    }
+}
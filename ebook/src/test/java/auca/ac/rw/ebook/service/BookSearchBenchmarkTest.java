@@ -0,0 +1,124 @@
+// BookSearchBenchmarkTest.java
+package auca.ac.rw.ebook.service;
+
+import auca.ac.rw.ebook.model.Book;
+import auca.ac.rw.ebook.repository.BookRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Trigram index against the JPQL queries it replaced, over a synthetic catalog of 100k and 1M books.
+// Opt-in, since it writes the catalog into the configured database and needs a larger heap:
+//   mvn test -Dtest=BookSearchBenchmarkTest -Debook.benchmark=true -DargLine=-Xmx3g
+// Rows are tagged with a "Bench " author prefix and removed afterwards.
+@SpringBootTest
+@EnabledIfSystemProperty(named = "ebook.benchmark", matches = "true")
+class BookSearchBenchmarkTest {
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private static final String[] KEYWORDS = {"Quantum", "quantum", "Garden of", "ight Riv", "Kigali Hills", "Algorithms 9", "zzz"};
+    private static final int RUNS = 5;
+
+    @AfterEach
+    void removeCatalog() {
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update("DELETE FROM books WHERE author LIKE 'Bench %'"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {100_000, 1_000_000})
+    void indexAgainstJpql(int size) {
+        List<Book> books = BookSearchIndexTest.catalog(size, size);
+        for (Book book : books) {
+            book.setAuthor("Bench " + book.getAuthor());
+        }
+        insert(books);
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.execute("ANALYZE books"));
+
+        long buildStart = System.nanoTime();
+        BookSearchIndex index = BookSearchIndexTest.index(books);
+        System.out.printf("%n%,d books: index built in %d ms%n", size, (System.nanoTime() - buildStart) / 1_000_000);
+        System.out.printf("%-14s %-6s %9s %12s %12s%n", "keyword", "query", "matches", "jpql ms", "index ms");
+
+        Set<UUID> catalogIds = new HashSet<>();
+        for (Book book : books) {
+            catalogIds.add(book.getBook_id());
+        }
+        for (String keyword : KEYWORDS) {
+            compare(keyword, "title", catalogIds,
+                    () -> bookRepository.findByTitleContaining(keyword),
+                    () -> index.searchTitle(keyword));
+            compare(keyword, "any", catalogIds,
+                    () -> bookRepository.searchByTitleOrAuthor(keyword),
+                    () -> index.searchTitleOrAuthor(keyword));
+        }
+    }
+
+    private void compare(String keyword, String query, Set<UUID> catalogIds, Supplier<List<Book>> jpql, Supplier<List<UUID>> index) {
+        Set<UUID> expected = new HashSet<>();
+        double[] jpqlMillis = new double[RUNS];
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            List<Book> rows = jpql.get();
+            jpqlMillis[run] = (System.nanoTime() - start) / 1e6;
+            if (run == 0) {
+                for (Book book : rows) {
+                    if (catalogIds.contains(book.getBook_id())) {
+                        expected.add(book.getBook_id());
+                    }
+                }
+            }
+        }
+        Set<UUID> actual = null;
+        double[] indexMillis = new double[RUNS];
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            List<UUID> ids = index.get();
+            indexMillis[run] = (System.nanoTime() - start) / 1e6;
+            actual = new HashSet<>(ids);
+        }
+        assertEquals(expected.size(), actual.size(), query + " " + keyword);
+        assertTrue(expected.equals(actual), query + " " + keyword);
+        System.out.printf("%-14s %-6s %,9d %12.2f %12.3f%n", "\"" + keyword + "\"", query, expected.size(), median(jpqlMillis), median(indexMillis));
+    }
+
+    private void insert(List<Book> books) {
+        String sql = "INSERT INTO books (book_id, title, author, price, stock_quantity) VALUES (?, ?, ?, ?, 0)";
+        int batchSize = 5000;
+        for (int from = 0; from < books.size(); from += batchSize) {
+            List<Object[]> rows = new ArrayList<>(batchSize);
+            for (Book book : books.subList(from, Math.min(from + batchSize, books.size()))) {
+                rows.add(new Object[] {book.getBook_id(), book.getTitle(), book.getAuthor(), book.getPrice()});
+            }
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(sql, rows));
+        }
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
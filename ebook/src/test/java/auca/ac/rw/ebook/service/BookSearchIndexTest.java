@@ -0,0 +1,155 @@
+// BookSearchIndexTest.java
+package auca.ac.rw.ebook.service;
+
+import auca.ac.rw.ebook.model.Book;
+import org.junit.jupiter.api.Test;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BookSearchIndexTest {
+
+    // Synthetic catalog
+    static final String[] WORDS = {
+        "The", "Garden", "of", "Quantum", "Night", "River", "Silent", "Java", "History", "Code",
+        "Empire", "Stars", "Ocean", "Winter", "Machine", "Learning", "Lost", "City", "Dragon", "Light",
+        "Kigali", "Hills", "Shadow", "Algorithms", "Music", "War", "Peace", "Data", "Storm", "Bridge"
+    };
+
+    static Book book(String title, String author) {
+        Book book = new Book();
+        book.setBook_id(UUID.randomUUID());
+        book.setTitle(title);
+        book.setAuthor(author);
+        book.setPrice(BigDecimal.TEN);
+        return book;
+    }
+
+    static List<Book> catalog(int size, long seed) {
+        Random random = new Random(seed);
+        List<Book> books = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int words = 1 + random.nextInt(4);
+            StringBuilder title = new StringBuilder();
+            for (int w = 0; w < words; w++) {
+                String word = WORDS[random.nextInt(WORDS.length)];
+                title.append(w == 0 ? "" : " ").append(random.nextInt(10) == 0 ? word.toUpperCase(Locale.ROOT) : word);
+            }
+            title.append(' ').append(i);
+            String author = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)];
+            books.add(book(title.toString(), author));
+        }
+        return books;
+    }
+
+    static BookSearchIndex index(List<Book> books) {
+        BookSearchIndex index = new BookSearchIndex();
+        index.indexAll(books);
+        return index;
+    }
+
+    // What findByTitleContaining and searchByTitleOrAuthor return, as a linear scan
+    static Set<UUID> scan(List<Book> books, String keyword, boolean includeAuthor) {
+        Set<UUID> result = new HashSet<>();
+        String lower = keyword.toLowerCase(Locale.ROOT);
+        for (Book book : books) {
+            boolean matches = includeAuthor
+                    ? book.getTitle().toLowerCase(Locale.ROOT).contains(lower) || book.getAuthor().toLowerCase(Locale.ROOT).contains(lower)
+                    : book.getTitle().contains(keyword);
+            if (matches) {
+                result.add(book.getBook_id());
+            }
+        }
+        return result;
+    }
+
+    static final String[] KEYWORDS = {
+        "Quantum", "quantum", "QUANTUM", "Garden of", "he", "a", "", " Night", "ight Riv", "12", "Kigali Hills", "zzz", "Algorithms 9"
+    };
+
+    // Tests
+    @Test
+    void titleSearchIsCaseSensitiveLikeTheQueryItReplaced() {
+        Book lower = book("java in action", "Someone");
+        Book upper = book("Java Concurrency", "Someone");
+        BookSearchIndex index = index(List.of(lower, upper));
+
+        assertEquals(List.of(upper.getBook_id()), index.searchTitle("Java"));
+        assertEquals(List.of(lower.getBook_id()), index.searchTitle("java"));
+    }
+
+    @Test
+    void titleOrAuthorSearchIgnoresCase() {
+        Book byTitle = book("Java Concurrency", "Goetz");
+        Book byAuthor = book("Effective Code", "JAVA Team");
+        Book other = book("Dune", "Herbert");
+        BookSearchIndex index = index(List.of(byTitle, byAuthor, other));
+
+        assertEquals(List.of(byTitle.getBook_id(), byAuthor.getBook_id()), index.searchTitleOrAuthor("jaVa"));
+    }
+
+    @Test
+    void keywordIsNotTrimmed() {
+        Book book = book("Night River", "Someone");
+        BookSearchIndex index = index(List.of(book));
+
+        assertEquals(List.of(book.getBook_id()), index.searchTitle(" River"));
+        assertTrue(index.searchTitle(" Night").isEmpty());
+    }
+
+    @Test
+    void exactThenPrefixThenContains() {
+        Book contains = book("The Dune", "A");
+        Book prefix = book("Dune Messiah", "A");
+        Book exact = book("Dune", "A");
+        BookSearchIndex index = index(List.of(contains, prefix, exact));
+
+        assertEquals(List.of(exact.getBook_id(), prefix.getBook_id(), contains.getBook_id()), index.searchTitle("Dune"));
+    }
+
+    @Test
+    void reindexAndRemoveReplaceTheOldDocument() {
+        Book book = book("Old Title", "A");
+        BookSearchIndex index = index(List.of(book));
+
+        book.setTitle("New Title");
+        index.index(book);
+        assertTrue(index.searchTitle("Old").isEmpty());
+        assertEquals(List.of(book.getBook_id()), index.searchTitle("New"));
+
+        index.remove(book.getBook_id());
+        assertTrue(index.searchTitle("Title").isEmpty());
+    }
+
+    @Test
+    void compactionKeepsResults() {
+        List<Book> books = catalog(5000, 7);
+        BookSearchIndex index = index(books);
+        for (Book book : books.subList(0, 3000)) {
+            index.remove(book.getBook_id());
+        }
+        List<Book> live = books.subList(3000, books.size());
+        for (String keyword : KEYWORDS) {
+            assertEquals(scan(live, keyword, false), new HashSet<>(index.searchTitle(keyword)), keyword);
+            assertEquals(scan(live, keyword, true), new HashSet<>(index.searchTitleOrAuthor(keyword)), keyword);
+        }
+    }
+
+    @Test
+    void matchesALinearScanOverASyntheticCatalog() {
+        List<Book> books = catalog(100_000, 42);
+        BookSearchIndex index = index(books);
+        for (String keyword : KEYWORDS) {
+            assertEquals(scan(books, keyword, false), new HashSet<>(index.searchTitle(keyword)), keyword);
+            assertEquals(scan(books, keyword, true), new HashSet<>(index.searchTitleOrAuthor(keyword)), keyword);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+// BookSuggestIndexLatencyTest.java
+package auca.ac.rw.ebook.service;
+
+import auca.ac.rw.ebook.model.Book;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// In-process latency of BookSuggestIndex.suggest() over a synthetic catalog, with and without
+// a thread re-indexing books at the same time. The target is p99 < 2 ms per lookup.
+// Opt-in, since timings depend on the machine:
+//   mvn test -Dtest=BookSuggestIndexLatencyTest -Debook.benchmark=true
+@EnabledIfSystemProperty(named = "ebook.benchmark", matches = "true")
+class BookSuggestIndexLatencyTest {
+
+    private static final int WARM_UP = 50_000;
+    private static final int QUERIES = 200_000;
+    private static final long P99_TARGET_NANOS = 2_000_000;
+
+    @ParameterizedTest
+    @ValueSource(ints = {50_000, 200_000})
+    void p99UnderTwoMilliseconds(int size) throws InterruptedException {
+        List<Book> books = BookSearchIndexTest.catalog(size, size);
+        BookSuggestIndex index = new BookSuggestIndex();
+        for (Book book : books) {
+            index.bookChanged(book);
+        }
+
+        String[] prefixes = prefixes(books, 10_000);
+        assertFalse(index.suggest(prefixes[0], BookSuggestIndex.TOP_K).isEmpty());
+
+        long[] idle = measure(index, prefixes);
+
+        // One writer re-indexing books back to back, taking the write lock each time
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            Random random = new Random(1);
+            while (running.get()) {
+                index.bookChanged(books.get(random.nextInt(books.size())));
+            }
+        });
+        writer.start();
+        long[] busy;
+        try {
+            busy = measure(index, prefixes);
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+
+        assertTrue(percentile(idle, 99) < P99_TARGET_NANOS, "p99 without writes");
+        assertTrue(percentile(busy, 99) < P99_TARGET_NANOS, "p99 with a concurrent writer");
+    }
+
+    // Prefixes of 1 to 6 characters taken from titles and authors, as typed into the search box
+    private static String[] prefixes(List<Book> books, int count) {
+        Random random = new Random(3);
+        String[] prefixes = new String[count];
+        for (int i = 0; i < count; i++) {
+            Book book = books.get(random.nextInt(books.size()));
+            String[] words = (random.nextBoolean() ? book.getTitle() : book.getAuthor()).split(" ");
+            String word = words[random.nextInt(words.length)].toLowerCase(Locale.ROOT);
+            prefixes[i] = word.substring(0, Math.min(word.length(), 1 + random.nextInt(6)));
+        }
+        return prefixes;
+    }
+
+    private static long[] measure(BookSuggestIndex index, String[] prefixes) {
+        for (int i = 0; i < WARM_UP; i++) {
+            index.suggest(prefixes[i % prefixes.length], BookSuggestIndex.TOP_K);
+        }
+        long[] nanos = new long[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            long start = System.nanoTime();
+            index.suggest(prefixes[i % prefixes.length], BookSuggestIndex.TOP_K);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return nanos;
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile / 100 * sorted.length) - 1)];
+    }
+}
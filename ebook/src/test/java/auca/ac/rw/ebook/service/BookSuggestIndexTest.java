@@ -0,0 +1,145 @@
+// BookSuggestIndexTest.java
+package auca.ac.rw.ebook.service;
+
+import auca.ac.rw.ebook.model.Book;
+import auca.ac.rw.ebook.repository.CategoryRepository;
+import auca.ac.rw.ebook.repository.OrderDetailRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static auca.ac.rw.ebook.service.BookSearchIndexTest.book;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BookSuggestIndexTest {
+
+    private final BookCatalogSnapshot catalogSnapshot = mock(BookCatalogSnapshot.class);
+    private final CategoryRepository categoryRepository = mock(CategoryRepository.class);
+    private final OrderDetailRepository orderDetailRepository = mock(OrderDetailRepository.class);
+
+    private BookSuggestIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new BookSuggestIndex();
+        ReflectionTestUtils.setField(index, "catalogSnapshot", catalogSnapshot);
+        ReflectionTestUtils.setField(index, "categoryRepository", categoryRepository);
+        ReflectionTestUtils.setField(index, "orderDetailRepository", orderDetailRepository);
+        when(categoryRepository.findAll()).thenReturn(List.of());
+    }
+
+    @Test
+    void findsTitlesByAnyWord() {
+        Book book = book("Children of Dune", "Frank Herbert");
+        index.bookChanged(book);
+
+        assertEquals(List.of("Children of Dune"), texts("title", "dune"));
+        assertEquals(List.of("Children of Dune"), texts("title", "child"));
+        assertEquals(List.of("Frank Herbert"), texts("author", "herb"));
+    }
+
+    @Test
+    void renamedBookIsOnlyFoundByItsNewTitle() {
+        Book book = book("Children of Dune", "Frank Herbert");
+        index.bookChanged(book);
+
+        book.setTitle("God Emperor");
+        index.bookChanged(book);
+
+        assertEquals(List.of(), texts("title", "dune"));
+        assertEquals(List.of("God Emperor"), texts("title", "emp"));
+        assertEquals(List.of("Frank Herbert"), texts("author", "frank"));
+    }
+
+    @Test
+    void removedBookTakesItsOnlyAuthorWithIt() {
+        Book dune = book("Dune", "Frank Herbert");
+        Book messiah = book("Dune Messiah", "Frank Herbert");
+        Book other = book("Dune Road", "Jane Doe");
+        index.bookChanged(dune);
+        index.bookChanged(messiah);
+        index.bookChanged(other);
+
+        index.bookRemoved(other.getBook_id());
+        assertEquals(List.of("Dune", "Dune Messiah"), texts("title", "dune"));
+        assertEquals(List.of(), texts("author", "jane"));
+
+        // Frank Herbert still has one book left
+        index.bookRemoved(dune.getBook_id());
+        assertEquals(List.of("Dune Messiah"), texts("title", "dune"));
+        assertEquals(List.of("Frank Herbert"), texts("author", "frank"));
+    }
+
+    @Test
+    void ranksBySalesThenText() {
+        Book quiet = book("River Alpha", "Ann Able");
+        Book popular = book("River Zulu", "Ann Able");
+        Book middle = book("River Mike", "Bob Baker");
+        Book unsold = book("River Bravo", "Cid Cole");
+        List<Book> books = List.of(quiet, popular, middle, unsold);
+        when(catalogSnapshot.getAllBooks()).thenReturn(books);
+        when(orderDetailRepository.findUnitsSoldPerBook()).thenReturn(sales(
+                popular.getBook_id(), 40L,
+                middle.getBook_id(), 7L,
+                quiet.getBook_id(), 1L));
+
+        index.rebuild();
+
+        assertEquals(List.of("River Zulu", "River Mike", "River Alpha", "River Bravo"), texts("title", "river"));
+        List<BookSuggestIndex.Suggestion> top = index.suggest("river", 2);
+        assertEquals(2, top.size());
+        assertEquals(40L, top.get(0).sales());
+        // Author sales are the sum of their books
+        BookSuggestIndex.Suggestion author = index.suggest("ann", 1).get(0);
+        assertEquals("Ann Able", author.text());
+        assertEquals(41L, author.sales());
+    }
+
+    // A write that lands while the rebuild is reading must survive the swap
+    @Test
+    void keepsWritesMadeDuringRebuild() {
+        Book existing = book("Ocean Light", "Ann Able");
+        Book added = book("Ocean Storm", "Bob Baker");
+        Book renamed = book("Winter City", "Cid Cole");
+        index.bookChanged(renamed);
+        when(orderDetailRepository.findUnitsSoldPerBook()).thenReturn(List.of());
+        when(catalogSnapshot.getAllBooks()).thenReturn(List.of(existing, renamed));
+        when(categoryRepository.findAll()).thenAnswer(invocation -> {
+            index.bookChanged(added);
+            renamed.setTitle("Winter Bridge");
+            index.bookChanged(renamed);
+            return List.of();
+        });
+
+        index.rebuild();
+
+        assertEquals(List.of("Ocean Light", "Ocean Storm"), texts("title", "ocean"));
+        assertEquals(List.of("Winter Bridge"), texts("title", "winter"));
+        assertEquals(List.of(), texts("title", "city"));
+        assertTrue(index.suggest("bob", 1).stream().anyMatch(s -> s.text().equals("Bob Baker")));
+    }
+
+    private List<String> texts(String type, String prefix) {
+        List<String> texts = new ArrayList<>();
+        for (BookSuggestIndex.Suggestion suggestion : index.suggest(prefix, BookSuggestIndex.TOP_K)) {
+            if (suggestion.type().equals(type)) {
+                texts.add(suggestion.text());
+            }
+        }
+        return texts;
+    }
+
+    private static List<Object[]> sales(Object... idsAndUnits) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < idsAndUnits.length; i += 2) {
+            rows.add(new Object[] {(UUID) idsAndUnits[i], idsAndUnits[i + 1]});
+        }
+        return rows;
+    }
+}